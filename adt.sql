@@ -11,6 +11,18 @@ CREATE OR REPLACE TABLE
         run_identifier VARCHAR(50) ,
         CONSTRAINT PK_xyseries_run PRIMARY KEY (id)
     );
+CREATE OR REPLACE TABLE
+    island_result
+    (
+        id INT NOT NULL AUTO_INCREMENT,
+        gp_run_id INT NOT NULL,
+        island INT NOT NULL,
+        fitness FLOAT(53),
+        fittest_program TEXT,
+        regime_fitness FLOAT(53),
+        fittest_regime_program TEXT,
+        CONSTRAINT PK_island_result PRIMARY KEY (id)
+    );
 CREATE OR REPLACE TABLE
     prediction
     (
@@ -100,6 +112,11 @@ CREATE OR REPLACE TABLE
         fitness_calculations INT,
         in_prediction BIT,
         node_evaluations FLOAT(53),
+        node_budget_exceeded INT,
+        shared_node_fraction FLOAT(53),
+        approximate_rank_correlation FLOAT(53),
+        cost_estimate_correlation FLOAT(53),
+        cost_estimate_error FLOAT(53),
         CONSTRAINT PK_xyseries_training PRIMARY KEY (id)
     );
 CREATE OR REPLACE TABLE
@@ -113,6 +130,15 @@ CREATE OR REPLACE TABLE
         y_actual FLOAT(53),
         CONSTRAINT PK_xyseries_training_data PRIMARY KEY (id)
     );
+CREATE OR REPLACE TABLE
+    adt.training_node_evaluation
+    (
+        id INT NOT NULL AUTO_INCREMENT,
+        training_id INT NOT NULL,
+        primitive VARCHAR(100) NOT NULL,
+        evaluations BIGINT NOT NULL,
+        CONSTRAINT PK_training_node_evaluation PRIMARY KEY (id)
+    );
 CREATE OR REPLACE TABLE
     adt.training_regime_branch
     (
@@ -27,6 +27,7 @@ package com.infoblazer.gp;
 import com.infoblazer.gp.application.gpapp.GpApp;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.CustomScopeConfigurer;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -50,5 +51,12 @@ public class Application {
         new SpringApplicationBuilder(Application.class).headless(false).run(args);
     }
 
+    @Bean
+    public static CustomScopeConfigurer runScopeConfigurer() {
+        CustomScopeConfigurer configurer = new CustomScopeConfigurer();
+        configurer.addScope(RunScope.NAME, new RunScope());
+        return configurer;
+    }
+
 
 }
@@ -24,7 +24,12 @@
 
 package com.infoblazer.gp;
 
+import com.infoblazer.gp.application.fitness.FitnessWorker;
 import com.infoblazer.gp.application.gpapp.GpApp;
+import com.infoblazer.gp.evolution.geneticprogram.IslandCoordinator;
+import com.infoblazer.gp.evolution.geneticprogram.IslandModel;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -32,6 +37,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by David on 9/26/2015.
@@ -39,22 +51,83 @@ import javax.annotation.PostConstruct;
 @Component
 public class Bootstrap {
 
+    private final static Logger logger = Logger.getLogger(Bootstrap.class.getName());
+
     @Value("${applicationName}")
     private String applicationName;
 
     @Value("${trials:#{1}}")
     private int trials;
+    @Value("${parallelTrials:#{1}}") //trials run at the same time, each with its own libraries, evaluator, strategy and random stream
+    private int parallelTrials;
+    @Value("${seed:#{null}}") //seed of the run, trials, islands, workers and operators split their streams from it
+    private Long seed;
 
     @Autowired
     ConfigurableApplicationContext context;
+    @Autowired
+    IslandModel islandModel;
+    @Autowired
+    IslandCoordinator islandCoordinator;
+    @Autowired
+    FitnessWorker fitnessWorker;
     @PostConstruct
     public void init() {
-        for (int i = 0;i<trials;i++) {
-            GpApp app = (GpApp) context.getBean(applicationName);
-
-            app.init();
-            app.runApp();
+        if (fitnessWorker.isWorker()) {
+            fitnessWorker.serve();
+            return;
+        }
+        if (islandCoordinator.isCoordinator()) {
+            for (int i = 0; i < trials; i++) {
+                islandCoordinator.serve(applicationName);
+            }
+            return;
         }
+        SplittableRandom runRandom = GpRandom.seeded(seed);
+        SplittableRandom[] trialRandoms = new SplittableRandom[trials];
+        for (int i = 0; i < trials; i++) {
+            trialRandoms[i] = runRandom.split(); //a trial gets the same stream whether trials run in parallel or not
+        }
+        if (parallelTrials <= 1) {
+            for (int i = 0; i < trials; i++) {
+                runTrial(i, trialRandoms[i]);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelTrials, trials));
+        List<Future<?>> runs = new ArrayList<>();
+        for (int i = 0; i < trials; i++) {
+            final int trial = i;
+            runs.add(executor.submit(() -> runTrial(trial, trialRandoms[trial])));
+        }
+        executor.shutdown();
+        for (Future<?> run : runs) {
+            try {
+                run.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Trial failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Run one trial in its own run scope, so it starts from empty libraries and new operators
+     */
+    private void runTrial(int trial, SplittableRandom random) {
+        RunScope.run("trial-" + trial, () -> GpRandom.runWith(random, () -> {
+            if (islandModel.isRemote()) {
+                islandModel.runRemote(applicationName);
+            } else if (islandModel.isEnabled()) {
+                islandModel.run(applicationName);
+            } else {
+                GpApp app = (GpApp) context.getBean(applicationName);
+                app.init();
+                app.runApp();
+            }
+        }));
     }
 
 }
@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp;
+
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.Scope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spring scope for the state of one GP run: libraries, fitness evaluator, selection strategy and operators, the
+ * genetic program and the app holding the series. A run is bound to the thread that started it with {@link #run}.
+ * Outside a run the beans come from a default run, so a single run behaves as with singletons.
+ */
+public class RunScope implements Scope {
+
+    public static final String NAME = "run";
+
+    private static final RunContext defaultRun = new RunContext("default");
+    private static final ThreadLocal<RunContext> currentRun = new ThreadLocal<RunContext>();
+
+    /**
+     * Run the action in a new run on the current thread. Beans created for it are destroyed when it ends.
+     */
+    public static void run(String runId, Runnable action) {
+        RunContext previous = currentRun.get();
+        RunContext run = new RunContext(runId);
+        currentRun.set(run);
+        try {
+            action.run();
+        } finally {
+            currentRun.set(previous);
+            run.destroy();
+        }
+    }
+
+    /**
+     * @return the action bound to the current thread's run, for handing work of the run to another thread. The run is
+     * not destroyed when the action ends.
+     */
+    public static Runnable inCurrentRun(Runnable action) {
+        RunContext run = currentRun.get();
+        return () -> {
+            RunContext previous = currentRun.get();
+            currentRun.set(run);
+            try {
+                action.run();
+            } finally {
+                currentRun.set(previous);
+            }
+        };
+    }
+
+    private static RunContext current() {
+        RunContext run = currentRun.get();
+        return run == null ? defaultRun : run;
+    }
+
+    @Override
+    public Object get(String name, ObjectFactory<?> objectFactory) {
+        RunContext run = current();
+        Object bean = run.beans.get(name);
+        if (bean == null) {
+            //not computeIfAbsent, creating a bean creates its run scoped dependencies
+            bean = objectFactory.getObject();
+            run.beans.put(name, bean);
+        }
+        return bean;
+    }
+
+    @Override
+    public Object remove(String name) {
+        return current().beans.remove(name);
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback) {
+        current().callbacks.add(callback);
+    }
+
+    @Override
+    public Object resolveContextualObject(String key) {
+        return null;
+    }
+
+    @Override
+    public String getConversationId() {
+        return current().id;
+    }
+
+    private static class RunContext {
+        private final String id;
+        private final Map<String, Object> beans = new ConcurrentHashMap<>();
+        private final List<Runnable> callbacks = new ArrayList<>();
+
+        private RunContext(String id) {
+            this.id = id;
+        }
+
+        private void destroy() {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+            beans.clear();
+        }
+    }
+}
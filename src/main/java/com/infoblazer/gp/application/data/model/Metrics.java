@@ -37,6 +37,11 @@ public class Metrics {
     private Integer regime;
     private Integer fitnessEvaluations;
     private Integer fitnessCalculations;
+    private Integer nodeBudgetExceeded;
+    private Double sharedNodeFraction;
+    private Double approximateRankCorrelation;
+    private Double costEstimateCorrelation;
+    private Double costEstimateError;
     private Double bestFitness;
     private Double medianFitness;
     private Double meanFitness;
@@ -228,6 +233,46 @@ public class Metrics {
         this.fitnessCalculations = fitnessCalculations;
     }
 
+    public Integer getNodeBudgetExceeded() {
+        return this.nodeBudgetExceeded;
+    }
+
+    public void setNodeBudgetExceeded(Integer nodeBudgetExceeded) {
+        this.nodeBudgetExceeded = nodeBudgetExceeded;
+    }
+
+    public Double getSharedNodeFraction() {
+        return this.sharedNodeFraction;
+    }
+
+    public void setSharedNodeFraction(Double sharedNodeFraction) {
+        this.sharedNodeFraction = sharedNodeFraction;
+    }
+
+    public Double getApproximateRankCorrelation() {
+        return this.approximateRankCorrelation;
+    }
+
+    public void setApproximateRankCorrelation(Double approximateRankCorrelation) {
+        this.approximateRankCorrelation = approximateRankCorrelation;
+    }
+
+    public Double getCostEstimateCorrelation() {
+        return this.costEstimateCorrelation;
+    }
+
+    public void setCostEstimateCorrelation(Double costEstimateCorrelation) {
+        this.costEstimateCorrelation = costEstimateCorrelation;
+    }
+
+    public Double getCostEstimateError() {
+        return this.costEstimateError;
+    }
+
+    public void setCostEstimateError(Double costEstimateError) {
+        this.costEstimateError = costEstimateError;
+    }
+
     public Double getMedianAdfNodeCount() {
         return this.medianAdfNodeCount;
     }
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.data.model;
+
+/**
+ * Result of evaluating a program pair at a single position.
+ */
+public class PointPrediction {
+    private final double prediction;
+    private final boolean valid;
+    private final int regime;
+    private final boolean hasRegime;
+
+    public PointPrediction(Number calculated, Integer regime) {
+        this.valid = calculated != null && !Double.isNaN(calculated.doubleValue()) && !Double.isInfinite(calculated.doubleValue());
+        this.prediction = valid ? calculated.doubleValue() : Double.NaN;
+        this.hasRegime = regime != null;
+        this.regime = hasRegime ? regime : -1;
+    }
+
+    /**
+     * @return false if the program failed or returned NaN or infinity at this position
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the predicted value, NaN if not valid
+     */
+    public double getPrediction() {
+        return prediction;
+    }
+
+    /**
+     * @return false if the regime program failed at this position
+     */
+    public boolean hasRegime() {
+        return hasRegime;
+    }
+
+    /**
+     * @return the regime, -1 if there is none
+     */
+    public int getRegime() {
+        return regime;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.data.model.jpa;
+
+import javax.persistence.*;
+
+/**
+ * Fittest programs of one island process, collected by the island coordinator after testing
+ */
+@Entity
+@Table
+public class IslandResult {
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Integer id;
+
+    @Column private Integer gpRunId;
+    @Column private Integer island;
+    @Column private Double fitness;
+    @Column private String fittestProgram;
+    @Column private Double regimeFitness;
+    @Column private String fittestRegimeProgram;
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getGpRunId() {
+        return this.gpRunId;
+    }
+
+    public void setGpRunId(Integer gpRunId) {
+        this.gpRunId = gpRunId;
+    }
+
+    public Integer getIsland() {
+        return this.island;
+    }
+
+    public void setIsland(Integer island) {
+        this.island = island;
+    }
+
+    public Double getFitness() {
+        return this.fitness;
+    }
+
+    public void setFitness(Double fitness) {
+        this.fitness = fitness;
+    }
+
+    public String getFittestProgram() {
+        return this.fittestProgram;
+    }
+
+    public void setFittestProgram(String fittestProgram) {
+        this.fittestProgram = fittestProgram;
+    }
+
+    public Double getRegimeFitness() {
+        return this.regimeFitness;
+    }
+
+    public void setRegimeFitness(Double regimeFitness) {
+        this.regimeFitness = regimeFitness;
+    }
+
+    public String getFittestRegimeProgram() {
+        return this.fittestRegimeProgram;
+    }
+
+    public void setFittestRegimeProgram(String fittestRegimeProgram) {
+        this.fittestRegimeProgram = fittestRegimeProgram;
+    }
+}
@@ -66,6 +66,16 @@ public class Training  extends AbstractFitnessMetrics  implements HasFitnessMetr
     private Boolean inPrediction;
     @Column
     private Double nodeEvaluations;
+    @Column
+    private Integer nodeBudgetExceeded;
+    @Column
+    private Double sharedNodeFraction;
+    @Column
+    private Double approximateRankCorrelation;
+    @Column
+    private Double costEstimateCorrelation;
+    @Column
+    private Double costEstimateError;
 
     public Integer getId() {
         return id;
@@ -147,9 +157,54 @@ public class Training  extends AbstractFitnessMetrics  implements HasFitnessMetr
         this.nodeEvaluations = nodeEvaluations;
     }
 
+    public Integer getNodeBudgetExceeded() {
+        return this.nodeBudgetExceeded;
+    }
+
+    public void setNodeBudgetExceeded(Integer nodeBudgetExceeded) {
+        this.nodeBudgetExceeded = nodeBudgetExceeded;
+    }
+
+    public Double getSharedNodeFraction() {
+        return this.sharedNodeFraction;
+    }
+
+    public void setSharedNodeFraction(Double sharedNodeFraction) {
+        this.sharedNodeFraction = sharedNodeFraction;
+    }
+
+    public Double getApproximateRankCorrelation() {
+        return this.approximateRankCorrelation;
+    }
+
+    public void setApproximateRankCorrelation(Double approximateRankCorrelation) {
+        this.approximateRankCorrelation = approximateRankCorrelation;
+    }
+
+    public Double getCostEstimateCorrelation() {
+        return this.costEstimateCorrelation;
+    }
+
+    public void setCostEstimateCorrelation(Double costEstimateCorrelation) {
+        this.costEstimateCorrelation = costEstimateCorrelation;
+    }
+
+    public Double getCostEstimateError() {
+        return this.costEstimateError;
+    }
+
+    public void setCostEstimateError(Double costEstimateError) {
+        this.costEstimateError = costEstimateError;
+    }
+
     public void addMetrics(Metrics metrics) {
         fitnessEvaluations=metrics.getFitnessEvaluations();
         fitnessCalculations=metrics.getFitnessCalculations();
+        nodeBudgetExceeded=metrics.getNodeBudgetExceeded();
+        sharedNodeFraction=metrics.getSharedNodeFraction();
+        approximateRankCorrelation=metrics.getApproximateRankCorrelation();
+        costEstimateCorrelation=metrics.getCostEstimateCorrelation();
+        costEstimateError=metrics.getCostEstimateError();
 
     }
 }
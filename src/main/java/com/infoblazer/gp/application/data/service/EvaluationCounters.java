@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.data.service;
+
+import com.infoblazer.gp.application.fitness.NodeBudget;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts primitive evaluations per primitive class. Counters are striped so evaluating threads do not contend, and are
+ * summed and reset once per generation.
+ * <p>
+ * Nodes substituted by the linker count as the primitives they replace, so the counts do not change with fastMath or
+ * superinstructions. The same hook charges the node budget; with counting off and no budget it does nothing.
+ */
+@Component
+public class EvaluationCounters {
+
+    private static boolean counting = true;
+
+    private static final Map<Class<?>, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ClassValue<LongAdder> counterByClass = new ClassValue<LongAdder>() {
+        @Override
+        protected LongAdder computeValue(Class<?> type) {
+            return counters.computeIfAbsent(type, t -> new LongAdder());
+        }
+    };
+
+    @Value("${evaluationCounters:#{true}}") //count primitive evaluations per primitive each generation
+    public void setCounting(boolean counting) {
+        EvaluationCounters.counting = counting;
+    }
+
+    public static void dataAccessOperation(Primitive primitive) {
+        dataAccessOperation(primitive.getClass());
+    }
+
+    /**
+     * @param countedAs the primitive class the evaluated node counts as
+     */
+    public static void dataAccessOperation(Class<?> countedAs) {
+        if (counting) {
+            counterByClass.get(countedAs).increment();
+        }
+        if (NodeBudget.isUsed()) {
+            NodeBudget.charge();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return counting;
+    }
+
+    /**
+     * @return evaluations since the last call by primitive simple name, primitives not evaluated are left out
+     */
+    public static Map<String, Long> getAndResetByPrimitive() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<Class<?>, LongAdder> entry : counters.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count > 0) {
+                result.merge(entry.getKey().getSimpleName(), count, Long::sum);
+            }
+        }
+        return result;
+    }
+
+    public static double total(Map<String, Long> byPrimitive) {
+        double total = 0;
+        for (Long count : byPrimitive.values()) {
+            total += count;
+        }
+        return total;
+    }
+}
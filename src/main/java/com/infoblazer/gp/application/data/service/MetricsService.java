@@ -38,6 +38,7 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by David on 9/13/2015.
@@ -59,6 +60,12 @@ public class MetricsService {
     @Autowired
     private TrainingRepository trainingRepository;
     @Autowired
+    private TrainingNodeEvaluationRepository trainingNodeEvaluationRepository;
+    @Autowired
+    private IslandResultRepository islandResultRepository;
+    @Autowired
+    private MetricsWriter metricsWriter;
+    @Autowired
     TrainingResultBranchRepository trainingResultBranchRepository;
     @Autowired
     TrainingRegimeBranchRepository trainingRegimeBranchRepository;
@@ -100,20 +107,45 @@ public class MetricsService {
 
     public void endRun(Integer runId) {
         if (logMetrics) {
-            GPRun xySeriesRun = gpRunRepository.findOne(runId);
-            xySeriesRun.setEndDate(new Date());
-            gpRunRepository.save(xySeriesRun);
+            Date endDate = new Date();
+            metricsWriter.write(() -> {
+                GPRun xySeriesRun = gpRunRepository.findOne(runId);
+                xySeriesRun.setEndDate(endDate);
+                gpRunRepository.save(xySeriesRun);
+                metricsWriter.saved(1);
+            });
 
         }
     }
 
+    /**
+     * record the fittest programs reported by an island process
+     */
+    public void addIslandResult(Integer runId, int island, Double fitness, String fittestProgram, Double regimeFitness,
+                                String fittestRegimeProgram) {
+        if (logMetrics) {
+            IslandResult islandResult = new IslandResult();
+            islandResult.setGpRunId(runId);
+            islandResult.setIsland(island);
+            islandResult.setFitness(validDouble(fitness) ? fitness : null);
+            islandResult.setFittestProgram(fittestProgram);
+            islandResult.setRegimeFitness(validDouble(regimeFitness) ? regimeFitness : null);
+            islandResult.setFittestRegimeProgram(fittestRegimeProgram);
+            metricsWriter.insert(islandResultRepository, islandResult);
+        }
+    }
+
     public void addMetric(Integer metricId) {
 
     }
 
+    /**
+     * @param nodeEvaluations primitive evaluations of the generation, taken from EvaluationCounters when it ended
+     */
     public void addTraining(boolean isPrediction, Integer metricId, int testingGeneration, int generation, Date startTime, Date endTime,
                             XYArray xyArray, XYArray regimeArray, XYSeries targetSeries,
-                            Metrics metrics, Metrics regimeMetrics, AbstractProgram program, AbstractProgram regimeProgram) {
+                            Metrics metrics, Metrics regimeMetrics, AbstractProgram program, AbstractProgram regimeProgram,
+                            Map<String, Long> nodeEvaluations) {
         //add the current xy best regression for a training generation
         if (logMetrics) {
 
@@ -124,54 +156,34 @@ public class MetricsService {
             training.setTrainingStart(startTime);
             training.setTrainingEnd(endTime);
             training.addMetrics(metrics);
-            training.setNodeEvaluations(EvaluationLogger.getAndResetEvaluations());
-
-
-            try {
-                trainingRepository.save(training);
-            } catch (Exception e) {
-                logger.error("Erro saving training. Aborting save metrics ", e);
-                return;
-
+            training.setNodeEvaluations(EvaluationCounters.isEnabled() ? EvaluationCounters.total(nodeEvaluations) : null);
+
+            List<TrainingNodeEvaluation> nodeEvaluationList = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : nodeEvaluations.entrySet()) {
+                TrainingNodeEvaluation nodeEvaluation = new TrainingNodeEvaluation();
+                nodeEvaluation.setPrimitive(entry.getKey());
+                nodeEvaluation.setEvaluations(entry.getValue());
+                nodeEvaluationList.add(nodeEvaluation);
             }
 
             String programString = program.asLanguageString(100);
             TrainingResultBranch trainingResultBranch = new TrainingResultBranch();
-            trainingResultBranch.setTrainingId(training.getId());
             trainingResultBranch.setFittestProgram(programString);
             trainingResultBranch.addMetrics(metrics);
-            //save result training
-            try {
-                trainingResultBranchRepository.save(trainingResultBranch);
-            } catch (Exception e) {
-                logger.error("Erro saving trainingResultBranch " + trainingResultBranch.toString(), e);
-
-            }
 
+            TrainingRegimeBranch trainingRegimeBranch = null;
             if (regimeProgram != null) {
-                TrainingRegimeBranch trainingRegimeBranch = new TrainingRegimeBranch();
-                trainingRegimeBranch.setTrainingId(training.getId());
+                trainingRegimeBranch = new TrainingRegimeBranch();
                 String regimeProgramString = regimeProgram.asLanguageString(100);
                 trainingRegimeBranch.setFittestProgram(regimeProgramString);
                 trainingRegimeBranch.addMetrics(regimeMetrics);
-                //save regime training
-                try {
-                    trainingRegimeBranchRepository.save(trainingRegimeBranch);
-                } catch (Exception e) {
-                    logger.error("Erro saving trainingRegimeBranch " + trainingRegimeBranch.toString(), e);
-                }
-
             }
 
-
-            //save regime training
-
             int pos = 0;
             List<TrainingData> trainingDataList = new ArrayList<>();
             for (Object xVal : xyArray.getxVals()) {
                 if (xVal != null) {
                     TrainingData trainingData = new TrainingData();
-                    trainingData.setTrainingId(training.getId());
                     trainingData.setX((Double) xVal);
                     Double yPredicted = xyArray.getY(pos);
                     if (validDouble(yPredicted)) {
@@ -185,17 +197,71 @@ public class MetricsService {
                 }
                 pos++;
             }
-            if (trainingDataList.size() > 0) {
-                try {
-                    trainingDataRepository.save(trainingDataList);
-                } catch (Exception e) {
-                    logger.error("Erro saving trainingDataRepository ", e);
-                }
+
+            //the rows are built here, the writer saves them once the training has its id
+            final TrainingRegimeBranch regimeBranch = trainingRegimeBranch;
+            metricsWriter.write(() -> saveTraining(training, nodeEvaluationList, trainingResultBranch, regimeBranch, trainingDataList));
+        }
+
+    }
+
+    private void saveTraining(Training training, List<TrainingNodeEvaluation> nodeEvaluationList, TrainingResultBranch trainingResultBranch,
+                              TrainingRegimeBranch trainingRegimeBranch, List<TrainingData> trainingDataList) {
+        try {
+            trainingRepository.save(training);
+            metricsWriter.saved(1);
+        } catch (Exception e) {
+            metricsWriter.failed("training. Aborting save metrics", 1 + nodeEvaluationList.size() + 1 + (trainingRegimeBranch != null ? 1 : 0)
+                    + trainingDataList.size(), e);
+            return;
+
+        }
+
+        for (TrainingNodeEvaluation nodeEvaluation : nodeEvaluationList) {
+            nodeEvaluation.setTrainingId(training.getId());
+        }
+        if (nodeEvaluationList.size() > 0) {
+            try {
+                trainingNodeEvaluationRepository.save(nodeEvaluationList);
+                metricsWriter.saved(nodeEvaluationList.size());
+            } catch (Exception e) {
+                metricsWriter.failed("trainingNodeEvaluationRepository", nodeEvaluationList.size(), e);
             }
+        }
+
+        trainingResultBranch.setTrainingId(training.getId());
+        //save result training
+        try {
+            trainingResultBranchRepository.save(trainingResultBranch);
+            metricsWriter.saved(1);
+        } catch (Exception e) {
+            metricsWriter.failed("trainingResultBranch " + trainingResultBranch.toString(), 1, e);
+
+        }
 
+        if (trainingRegimeBranch != null) {
+            trainingRegimeBranch.setTrainingId(training.getId());
+            //save regime training
+            try {
+                trainingRegimeBranchRepository.save(trainingRegimeBranch);
+                metricsWriter.saved(1);
+            } catch (Exception e) {
+                metricsWriter.failed("trainingRegimeBranch " + trainingRegimeBranch.toString(), 1, e);
+            }
 
         }
 
+        for (TrainingData trainingData : trainingDataList) {
+            trainingData.setTrainingId(training.getId());
+        }
+        if (trainingDataList.size() > 0) {
+            try {
+                trainingDataRepository.save(trainingDataList);
+                metricsWriter.saved(trainingDataList.size());
+            } catch (Exception e) {
+                metricsWriter.failed("trainingDataRepository", trainingDataList.size(), e);
+            }
+        }
     }
 
 
@@ -246,11 +312,7 @@ public class MetricsService {
             predictionData.setPredictionGenerations(predictionGenerations);
             predictionData.addMetrics(metrics);
 
-            try {
-                predictionDataRepository.save(predictionData);
-            } catch (Exception e) {
-                logger.error("Erro saving predictionData ", e);
-            }
+            metricsWriter.insert(predictionDataRepository, predictionData);
 
 
         }
@@ -258,33 +320,28 @@ public class MetricsService {
 
     public void endPrediction(Integer predictionId, Metrics metrics, Metrics regimeMetrics) {
         if (logMetrics) {
-            Prediction prediction = predictionRepository.findOne(predictionId);
-            prediction.addMetrics(metrics);
-            prediction.setPredictionEnd(new Date());
-            try {
-                predictionRepository.save(prediction);
-            } catch (Exception e) {
-                logger.error("Erro saving prediction ", e);
-            }
-
+            Date predictionEnd = new Date();
             PredictionResultBranch predictionResultBranch = new PredictionResultBranch();
-            predictionResultBranch.setPredictionId(prediction.getId());
+            predictionResultBranch.setPredictionId(predictionId);
             predictionResultBranch.addMetrics(metrics);
-            try {
-                predictionResultBranchRepository.save(predictionResultBranch);
-            } catch (Exception e) {
-                logger.error("Erro saving predictionResultBranch ", e);
-            }
-
 
             PredictionRegimeBranch predictionRegimeBranch = new PredictionRegimeBranch();
-            predictionRegimeBranch.setPredictionId(prediction.getId());
+            predictionRegimeBranch.setPredictionId(predictionId);
             predictionRegimeBranch.addMetrics(regimeMetrics);
-            try {
-                predictionRegimeBranchRepository.save(predictionRegimeBranch);
-            } catch (Exception e) {
-                logger.error("Erro saving predictionRegimeBranch ", e);
-            }
+
+            metricsWriter.write(() -> {
+                Prediction prediction = predictionRepository.findOne(predictionId);
+                prediction.addMetrics(metrics);
+                prediction.setPredictionEnd(predictionEnd);
+                try {
+                    predictionRepository.save(prediction);
+                    metricsWriter.saved(1);
+                } catch (Exception e) {
+                    metricsWriter.failed("prediction", 1, e);
+                }
+            });
+            metricsWriter.insert(predictionResultBranchRepository, predictionResultBranch);
+            metricsWriter.insert(predictionRegimeBranchRepository, predictionRegimeBranch);
 
 
         }
@@ -0,0 +1,238 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.data.service;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write behind for the metrics, when asyncMetrics is set. Writes are queued and run in order by a background thread, so
+ * training does not wait on the database. Otherwise each write runs on the calling thread, as before. Consecutive rows
+ * for the same table are saved together. When the queue is full the caller waits, or with metricsQueueTimeout the write
+ * is dropped after the timeout. On shutdown the queue is flushed and the written, failed and dropped counts are logged.
+ */
+@Component
+public class MetricsWriter {
+
+    private final static Logger logger = Logger.getLogger(MetricsWriter.class.getName());
+
+    @Value("${asyncMetrics:#{false}}") //write metrics on a background thread, by default they are written on the calling thread
+    private boolean asyncMetrics;
+    @Value("${metricsQueueSize:#{1000}}") //pending writes before callers wait
+    private int metricsQueueSize;
+    @Value("${metricsBatchSize:#{200}}") //rows of one table saved together
+    private int metricsBatchSize;
+    @Value("${metricsQueueTimeout:#{0}}") //ms to wait for queue space before dropping a write, 0 waits as long as needed
+    private long metricsQueueTimeout;
+    @Value("${metricsFlushTimeout:#{60000}}") //ms to wait for pending writes on shutdown
+    private long metricsFlushTimeout;
+
+    private BlockingQueue<Object> queue;
+    private Thread writer;
+    private volatile boolean closed = false;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (asyncMetrics) {
+            queue = new ArrayBlockingQueue<>(metricsQueueSize);
+            writer = new Thread(this::drain, "metrics-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Run the write after the writes queued before it. It reports the rows it saves or fails to save with saved and failed.
+     */
+    public void write(Runnable write) {
+        enqueue(write);
+    }
+
+    /**
+     * Save the row, together with other rows for the same repository queued next to it
+     */
+    public <T> void insert(JpaRepository<T, Integer> repository, T row) {
+        enqueue(new Row<>(repository, row));
+    }
+
+    /**
+     * Called by writes for the rows they saved
+     */
+    public void saved(int rows) {
+        written.addAndGet(rows);
+    }
+
+    /**
+     * Called by writes that handle a failed save themselves
+     */
+    public void failed(String what, int rows, Exception e) {
+        failed.addAndGet(rows);
+        logger.error("Error saving " + what, e);
+    }
+
+    private void enqueue(Object write) {
+        if (queue == null) {
+            run(write);
+            return;
+        }
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            if (metricsQueueTimeout > 0) {
+                if (!queue.offer(write, metricsQueueTimeout, TimeUnit.MILLISECONDS)) {
+                    dropped.incrementAndGet();
+                }
+            } else {
+                queue.put(write);
+            }
+        } catch (InterruptedException e) {
+            dropped.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<Object> batch = new ArrayList<>();
+        while (true) {
+            Object first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, metricsBatchSize - 1);
+            runBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Run the writes in order, saving runs of rows for the same repository in one call
+     */
+    @SuppressWarnings("unchecked")
+    private void runBatch(List<Object> batch) {
+        JpaRepository<Object, Integer> repository = null;
+        List<Object> rows = new ArrayList<>();
+        for (Object write : batch) {
+            if (write instanceof Row && ((Row) write).repository == repository) {
+                rows.add(((Row) write).row);
+                continue;
+            }
+            saveRows(repository, rows);
+            if (write instanceof Row) {
+                repository = ((Row) write).repository;
+                rows.add(((Row) write).row);
+            } else {
+                repository = null;
+                run(write);
+            }
+        }
+        saveRows(repository, rows);
+    }
+
+    private void saveRows(JpaRepository<Object, Integer> repository, List<Object> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            repository.save(rows);
+            written.addAndGet(rows.size());
+        } catch (Exception e) {
+            failed.addAndGet(rows.size());
+            logger.error("Error saving " + rows.size() + " " + rows.get(0).getClass().getSimpleName() + " rows", e);
+        }
+        rows.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run(Object write) {
+        if (write instanceof Row) {
+            List<Object> rows = new ArrayList<>();
+            rows.add(((Row) write).row);
+            saveRows(((Row) write).repository, rows);
+            return;
+        }
+        try {
+            ((Runnable) write).run();
+        } catch (Exception e) {
+            failed("metrics", 1, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        if (writer != null) {
+            try {
+                writer.join(metricsFlushTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (writer.isAlive()) {
+                logger.error("Metrics writer did not finish within " + metricsFlushTimeout + "ms");
+            }
+            dropped.addAndGet(queue.size());
+        }
+        String report = "Metrics rows: " + written.get() + " written, " + failed.get() + " failed, " + dropped.get() + " dropped";
+        if (failed.get() > 0 || dropped.get() > 0) {
+            logger.warn(report);
+        } else {
+            logger.info(report);
+        }
+    }
+
+    private static class Row<T> {
+        private final JpaRepository<T, Integer> repository;
+        private final T row;
+
+        private Row(JpaRepository<T, Integer> repository, T row) {
+            this.repository = repository;
+            this.row = row;
+        }
+    }
+}
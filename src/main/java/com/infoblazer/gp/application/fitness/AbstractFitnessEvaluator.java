@@ -30,9 +30,11 @@ import com.infoblazer.gp.application.syntheticdata.XYSeries;
 import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
+import com.infoblazer.gp.evolution.linker.ProgramLinker;
 import com.infoblazer.gp.evolution.model.*;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import com.infoblazer.gp.visualization.Chart;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,7 +43,9 @@ import org.springframework.beans.factory.annotation.Value;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 /**
  * Created by David on 8/17/2014.
@@ -55,6 +59,7 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
 
     protected AtomicInteger fitnessEvaluations = new AtomicInteger();
     protected AtomicInteger fitnessCalculations = new AtomicInteger();
+    protected AtomicInteger nodeBudgetExceeded = new AtomicInteger();
 
     @Value("${meanSquaredError:#{false}}")
     protected boolean useMeanSquaredError;
@@ -64,6 +69,8 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
     private Chart chart;
     @Value("${allowTrivialPredictions:#{true}}")
     protected  boolean allowTrivialPredictions;
+    @Value("${nodeBudget:#{null}}") //max node evaluations per fitness call, unlimited if not set
+    protected Long nodeBudget;
     protected XYSeriesSet xySeriesSet = new XYSeriesSet();
 
     protected Integer seriesStart;
@@ -74,6 +81,10 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
     protected ResultLibrary resultLibrary;
     @Autowired
     protected RegimeLibrary regimeLibrary;
+    @Autowired
+    protected ProgramLinker programLinker;
+    @Autowired
+    protected EvaluationCost evaluationCost;
 
     public void setResultLibrary(ResultLibrary resultLibrary) {
         this.resultLibrary = resultLibrary;
@@ -84,6 +95,10 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
         this.regimeLibrary = regimeLibrary;
     }
 
+    public void setEvaluationCost(EvaluationCost evaluationCost) {
+        this.evaluationCost = evaluationCost;
+    }
+
     public XYSeriesSet getXySeriesSet() {
         return xySeriesSet;
     }
@@ -126,6 +141,36 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
     }
 
 
+    @Override
+    public double[] evaluateFitness(List<ResultProducingProgram> resultProducingPrograms, List<RegimeDetectionProgram> regimeDetectionPrograms,
+                                    Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction,
+                                    ForkJoinPool pool) {
+        double[] fitness = new double[resultProducingPrograms.size()];
+        EvaluationCost.Estimate[] estimates = new EvaluationCost.Estimate[fitness.length];
+        double[] costs = new double[fitness.length];
+        for (int i = 0; i < fitness.length; i++) {
+            estimates[i] = evaluationCost.estimate(resultProducingPrograms.get(i), regimeDetectionPrograms.get(i), windowStart, windowEnd);
+            costs[i] = estimates[i].getCost();
+        }
+        IntConsumer evaluation = GpRandom.withStreams("evaluation", fitness.length,
+                pairing -> fitness[pairing] = evaluationCost.measure(estimates[pairing],
+                        () -> evaluateFitness(resultProducingPrograms.get(pairing), regimeDetectionPrograms.get(pairing), windowStart,
+                                windowEnd, maxDepth, direction)));
+        if (pool == null) {
+            for (int i = 0; i < fitness.length; i++) {
+                evaluation.accept(i);
+            }
+        } else {
+            EvaluationScheduler.run(pool, costs, evaluation);
+        }
+        return fitness;
+    }
+
+    @Override
+    public boolean evaluatesInBatches() {
+        return false;
+    }
+
     protected void buildXYSeriesSet(XYSeriesSet xySeriesSet) {
         TimeseriesSet targetTimeseriesSet = xySeriesSet.getTargetTimeseries();
         Timeseries timeseries = targetTimeseriesSet.getTimeseries();
@@ -225,20 +270,20 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
      */
 
 
-    public FitnessEvaluation calculateProgramFitness(Integer windowStart, Integer windowEnd, Integer maxLevel,
-                                                     ResultProducingProgram program, RegimeDetectionProgram regimeDetectionProgram, SelectionStrategy.Direction direction) {
-
-        FitnessEvaluation result = null;
+    /**
+     * Fitness only path, no per point values are kept. Sets the fitness on both programs.
+     */
+    public double calculateProgramFitness(Integer windowStart, Integer windowEnd, Integer maxLevel,
+                                          ResultProducingProgram program, RegimeDetectionProgram regimeDetectionProgram, SelectionStrategy.Direction direction) {
 
-        FitnessEvaluation fitnessEvaluation = evaluate(program, regimeDetectionProgram, windowStart, windowEnd, maxLevel,direction);
-        program.setFitness(fitnessEvaluation.getFitness());
+        double fitness = evaluateFitness(program, regimeDetectionProgram, windowStart, windowEnd, maxLevel, direction);
+        program.setFitness(fitness);
         if (regimeDetectionProgram != null) {
-            regimeDetectionProgram.setFitness(fitnessEvaluation.getFitness());
+            regimeDetectionProgram.setFitness(fitness);
         }
-        result = fitnessEvaluation;
-        logger.trace("returned fitness: " + fitnessEvaluation.getFitness());
+        logger.trace("returned fitness: " + fitness);
 
-        return result;
+        return fitness;
 
     }
 
@@ -398,6 +443,11 @@ public abstract class AbstractFitnessEvaluator implements FitnessEvaluator {
         return fitnessEvaluations.getAndSet(0);
     }
 
+    @Override
+    public Integer getAndResetNodeBudgetExceeded() {
+        return nodeBudgetExceeded.getAndSet(0);
+    }
+
 
     @Override
     public ResultLibrary getResultLibrary() {
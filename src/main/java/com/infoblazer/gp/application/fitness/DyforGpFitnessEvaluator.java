@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.application.fitness;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.data.model.FitnessEvaluation;
 import com.infoblazer.gp.evolution.geneticprogram.PredictionProgram;
 import com.infoblazer.gp.evolution.model.Population;
@@ -35,9 +36,11 @@ import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -45,6 +48,7 @@ import java.util.List;
  * Created by David on 5/31/2014.
  */
 @Component
+@Scope(RunScope.NAME)
 public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements FitnessEvaluator {
 
     private final static Logger logger = Logger.getLogger(DyforGpFitnessEvaluator.class.getName());
@@ -60,8 +64,9 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
     private Integer windowDifference; //20;
     @Value("${startWindowSize:#{null}}")
     private Integer startWindowSize; //80; //smaller of two windows . start of prediction phase. may be same as training window
-    private int currentWindowSmall;
-    private int currentWindowLarge;
+    @Value("${dyforWindows:#{2}}")
+    private int windowCount; //concurrent windows, each windowDifference larger than the previous
+    private volatile int[] currentWindows; //ascending, smallest first. Replaced rather than modified, read while evaluating in parallel
     @Value("${windowSlide:#{1}}")
     private int windowSlide;
 
@@ -89,8 +94,11 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
     public void init() {
         if (startWindowSize != null) { //not a dyfor app
             potentiallyDormantSolutions = new ResultProducingProgram[saveOff];
-            currentWindowSmall = startWindowSize;
-            currentWindowLarge = currentWindowSmall + windowDifference;
+            int[] windows = new int[Math.max(2, windowCount)];
+            for (int k = 0; k < windows.length; k++) {
+                windows[k] = startWindowSize + k * windowDifference;
+            }
+            currentWindows = windows;
         }
     }
 
@@ -106,50 +114,71 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
             fitnessEvaluation.setFitness(Double.POSITIVE_INFINITY);
         }
 
-        Integer windowStart = null;
-        Integer windowEnd = pWindowEnd;
-        int programId = program.getId();
-
-        if ((programId & 1) == 1) {  //ids should be evenly divided between odd and even just about
-            windowStart = windowEnd - currentWindowSmall;
-        } else {
+        int[] windows = currentWindows;
+        return super.evaluate(program, null, windowStart(windows, programWindow(windows, program), pWindowEnd), pWindowEnd, maxDepth, direction);
+    }
 
-            windowStart = windowEnd - currentWindowLarge;
+    @Override
+    public double evaluateFitness(ResultProducingProgram program, RegimeDetectionProgram regimeDetectionProgram,
+                                  Integer pWindowStart, Integer pWindowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+        if (program == null) {
+            logger.error("Attempting to evaluate fitness with a null program");
+            return Double.POSITIVE_INFINITY;
+        }
+        //the windows are suffixes of the largest one, evaluate once and keep every window's fitness
+        int[] windows = currentWindows;
+        int[] windowStarts = new int[windows.length];
+        for (int k = 0; k < windows.length; k++) {
+            windowStarts[k] = windowStart(windows, windows.length - 1 - k, pWindowEnd);
         }
+        double[] suffixFitness = evaluateSuffixWindows(program, null, windowStarts, pWindowEnd, maxDepth, direction);
+        double[] windowFitness = new double[windows.length];
+        for (int k = 0; k < windows.length; k++) {
+            windowFitness[k] = suffixFitness[windows.length - 1 - k];
+        }
+        program.setWindowFitness(windowFitness);
+        return windowFitness[programWindow(windows, program)];
+    }
+
+    /**
+     * Programs are divided between the windows by id. With two windows odd ids use the small window and even ids the large one
+     */
+    private int programWindow(int[] windows, ResultProducingProgram program) {
+        return (program.getId() + 1) % windows.length;
+    }
 
+    private int windowStart(int[] windows, int window, int windowEnd) {
+        int windowStart = windowEnd - windows[window];
 
         if (windowStart < 0) {
             logger.debug("setting window start to 0. Was " + windowStart);
             windowStart = 0;
         }
-        return super.evaluate(program, null, windowStart, windowEnd, maxDepth, direction);
+        return windowStart;
     }
 
-
-    private static ResultProducingProgram findBestSmall(List<ResultProducingProgram> population, SelectionStrategy.Direction direction) {
+    /**
+     * Best program for a window. Programs evaluated on the fitness path carry every window's fitness, so the whole population
+     * is considered. Otherwise only the programs assigned to the window.
+     */
+    private ResultProducingProgram findBest(List<ResultProducingProgram> population, int window, SelectionStrategy.Direction direction) {
         ResultProducingProgram bestSoFar = null;
+        Double bestFitness = null;
 
         for (ResultProducingProgram program : population) {
-            if ((program.getId() & 1) == 1) {
-                Boolean fitter = isFitter(program, bestSoFar, direction);
-                if (fitter != null && fitter) {
-                    bestSoFar = program;
-                }
-
+            double[] windowFitness = program.getWindowFitness();
+            Double fitness;
+            if (windowFitness != null && windowFitness.length == currentWindows.length) {
+                fitness = windowFitness[window];
+            } else if (programWindow(currentWindows, program) == window) {
+                fitness = program.getFitness();
+            } else {
+                continue;
             }
-        }
-        return bestSoFar;
-    }
-
-    private static ResultProducingProgram findBestLarge(List<ResultProducingProgram> population, SelectionStrategy.Direction direction) {
-        ResultProducingProgram bestSoFar = null;
-
-        for (ResultProducingProgram program : population) {
-            if (program.getId() % 2 == 0) { //small programs only
-                Boolean fitter = isFitter(program, bestSoFar, direction);
-                if (fitter != null && fitter) {
-                    bestSoFar = program;
-                }
+            Boolean fitter = bestSoFar == null ? Boolean.TRUE : isFitter(fitness, bestFitness, direction);
+            if (fitter != null && fitter) {
+                bestSoFar = program;
+                bestFitness = fitness;
             }
         }
         return bestSoFar;
@@ -168,13 +197,12 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
 
     private void comparePrograms(Population population, SelectionStrategy.Direction direction, Integer maxLevel, int predictionPos) {
 
-        ResultProducingProgram bestSmall = findBestSmall(population.getResultPopulation(), direction);
-        if (bestSmall == null) {
-            logger.error("There are no programs using the smaller training window");
-        }
-        ResultProducingProgram bestLarge = findBestLarge(population.getResultPopulation(), direction);
-        if (bestLarge == null) {
-            logger.error("There are no programs using the larger training window");
+        ResultProducingProgram[] best = new ResultProducingProgram[currentWindows.length];
+        for (int k = 0; k < currentWindows.length; k++) {
+            best[k] = findBest(population.getResultPopulation(), k, direction);
+            if (best[k] == null) {
+                logger.error("There are no programs using training window " + currentWindows[k]);
+            }
         }
         int start = predictionPos + 1;
         int end = predictionPos + predictionSize;
@@ -187,13 +215,13 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
         //Reevaluate looking forward
         //really need to prediction here
 
-        //Call default evaluation method (don't use window sizing)
-        FitnessEvaluation fitnessEvaluationSmall = super.evaluate(bestSmall, null, start, end, maxLevel, direction);//Can choose any regime program, they are irrelevant for DyforS
-        FitnessEvaluation fitnessEvaluationLarge = super.evaluate(bestLarge, null, start, end, maxLevel, direction);
-        double fitnessSmall = fitnessEvaluationSmall.getFitness();
-        double fitnessLarge = fitnessEvaluationLarge.getFitness();
+        //Call default evaluation method (don't use window sizing), exact so fast math doesn't decide the resizing
+        double[] forwardFitness = new double[currentWindows.length];
+        for (int k = 0; k < currentWindows.length; k++) {
+            forwardFitness[k] = evaluateExactFitness(best[k], null, start, end, maxLevel, direction);//Can choose any regime program, they are irrelevant for DyforS
+        }
         //now make a prediciton with the best series
-        resizeWindows(direction, fitnessSmall, fitnessLarge);
+        resizeWindows(direction, forwardFitness);
 
         //see about saving out solutions
         if (n > N) {
@@ -203,12 +231,31 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
 
     }
 
-    private void resizeWindows(SelectionStrategy.Direction direction, double fitnessSmall, double fitnessLarge) {
-        if ((direction == SelectionStrategy.Direction.DESCENDING && fitnessSmall > fitnessLarge) ||
-                (direction == SelectionStrategy.Direction.ASCENDING && fitnessSmall < fitnessLarge)) {
+    /**
+     * Expand when a larger than middle window forecast best, shrink when a smaller one did. With two windows this is the
+     * original small against large comparison.
+     */
+    private void resizeWindows(SelectionStrategy.Direction direction, double[] forwardFitness) {
+        Integer bestWindow = null;
+        boolean tie = false;
+        for (int k = 0; k < forwardFitness.length; k++) {
+            if (Double.isNaN(forwardFitness[k])) {
+                tie = true; //not comparable, keep windows as they are
+                break;
+            } else if (bestWindow == null) {
+                bestWindow = k;
+            } else if (forwardFitness[k] == forwardFitness[bestWindow]) {
+                tie = true;
+            } else if ((direction == SelectionStrategy.Direction.DESCENDING && forwardFitness[k] > forwardFitness[bestWindow]) ||
+                    (direction == SelectionStrategy.Direction.ASCENDING && forwardFitness[k] < forwardFitness[bestWindow])) {
+                bestWindow = k;
+                tie = false;
+            }
+        }
+        int middle = forwardFitness.length - 1; // twice the middle index, avoids fractions for an even window count
+        if (!tie && bestWindow * 2 < middle) {
             shrinkWindows();
-        } else if ((direction == SelectionStrategy.Direction.DESCENDING && fitnessLarge > fitnessSmall) ||
-                (direction == SelectionStrategy.Direction.ASCENDING && fitnessLarge < fitnessSmall)) {
+        } else if (!tie && bestWindow * 2 > middle) {
             expandWindows();
         } else {
             logger.info("Keeping Window stable");
@@ -225,8 +272,7 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
         //expand  windows
 
         logger.info("Expanding Window");
-        currentWindowLarge = currentWindowLarge + windowDifference;
-        currentWindowSmall = currentWindowSmall + windowDifference;
+        moveWindows(windowDifference);
         if (trend == Trend.EXPANSION) {
             n++;
         } else {
@@ -238,8 +284,7 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
     private void shrinkWindows() {
         //shrink windows
         logger.info("Shrinking Window");
-        currentWindowLarge = currentWindowLarge - windowDifference;
-        currentWindowSmall = currentWindowSmall - windowDifference;
+        moveWindows(-windowDifference);
         if (trend == Trend.CONTRACTION) {
             n++;
         } else {
@@ -248,19 +293,25 @@ public class DyforGpFitnessEvaluator extends NumericFitnessEvaluator implements
         trend = Trend.CONTRACTION;
     }
 
+    private void moveWindows(int difference) {
+        int[] windows = new int[currentWindows.length];
+        for (int k = 0; k < windows.length; k++) {
+            windows[k] = currentWindows[k] + difference;
+        }
+        currentWindows = windows;
+    }
+
     private void validateWindows() {
-        if (currentWindowSmall < minWindowSize) {
-            currentWindowSmall = minWindowSize;
-            currentWindowLarge = currentWindowSmall + windowDifference;
+        int last = currentWindows.length - 1;
+        if (currentWindows[0] < minWindowSize) {
+            moveWindows(minWindowSize - currentWindows[0]);
         }
-        if (currentWindowLarge > maxWindowSize) {
-            currentWindowLarge = maxWindowSize;
-            currentWindowSmall = currentWindowLarge - windowDifference;
+        if (currentWindows[last] > maxWindowSize) {
+            moveWindows(maxWindowSize - currentWindows[last]);
 
         }
 
-        logger.debug("currentWindowSmall=" + currentWindowSmall);
-        logger.debug("currentWindowLarge=" + currentWindowLarge);
+        logger.debug("currentWindows=" + Arrays.toString(currentWindows));
     }
 
     private void saveSolutions(Population population, SelectionStrategy.Direction direction) {
@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.infoblazer.gp.application.fitness;
+
+import com.infoblazer.gp.RunScope;
+import com.infoblazer.gp.evolution.model.AbstractProgram;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Estimated cost of evaluating a pairing of programs over a window, for ordering and splitting evaluations.
+ * <p>
+ * The estimate is the window length times the weighted count of each primitive class in the two programs, from the
+ * counts calculateMetrics and calculateAdfMetrics leave on each program. The weights are nanoseconds per evaluation of
+ * a primitive at one point, learned by least mean squares from the evaluations measured with {@link #measure}, so
+ * costly primitives such as window functions and AATs learn higher weights. Programs without counts are costed by node
+ * count with a weight of their own.
+ * <p>
+ * Estimated and measured costs are summed for the generation, see {@link #getAndResetAccuracy()}. The weights and the
+ * accuracy belong to the run, so trials and islands running at the same time learn and report their own. Only the
+ * index of each primitive class is shared.
+ */
+@Component
+@Scope(RunScope.NAME)
+public class EvaluationCost {
+
+    private static final double LEARNING_RATE = 0.05;
+    private static final double INITIAL_WEIGHT = 1.0;
+    private static final int POINT = 0; //per point cost of the evaluation loop
+    private static final int UNCOUNTED = 1; //nodes of programs without primitive counts
+
+    private static final AtomicInteger nextIndex = new AtomicInteger(2);
+    private static final ClassValue<Integer> indexByClass = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return nextIndex.getAndIncrement();
+        }
+    };
+
+    private volatile double[] weights = new double[0]; //replaced on each update, readers take no lock
+
+    private int observations;
+    private double sumEstimated;
+    private double sumActual;
+    private double sumEstimatedSquared;
+    private double sumActualSquared;
+    private double sumProduct;
+    private double sumRelativeError;
+
+    /**
+     * Add the count of each primitive class in primitives to counts, indexed by class
+     *
+     * @return counts, or a new array if counts is null or too short
+     */
+    public static int[] count(List<Primitive> primitives, int[] counts) {
+        int[] result = counts == null ? new int[0] : counts;
+        for (Primitive primitive : primitives) {
+            int index = indexByClass.get(primitive.getClass());
+            if (index >= result.length) {
+                result = Arrays.copyOf(result, nextIndex.get());
+            }
+            result[index]++;
+        }
+        return result;
+    }
+
+    public Estimate estimate(AbstractProgram resultProducingProgram, AbstractProgram regimeDetectionProgram,
+                             Integer windowStart, Integer windowEnd) {
+        int window = windowStart == null || windowEnd == null ? 1 : Math.max(1, windowEnd - windowStart + 1);
+        double[] features = new double[nextIndex.get()];
+        features[POINT] = window;
+        addFeatures(features, resultProducingProgram, window);
+        addFeatures(features, regimeDetectionProgram, window);
+        double[] current = weights;
+        double cost = 0;
+        for (int i = 0; i < features.length; i++) {
+            cost += features[i] * (i < current.length ? current[i] : INITIAL_WEIGHT);
+        }
+        return new Estimate(features, cost);
+    }
+
+    private static void addFeatures(double[] features, AbstractProgram program, int window) {
+        if (program == null) {
+            return;
+        }
+        int[] counts = program.getPrimitiveCounts();
+        if (counts == null) {
+            Integer nodes = program.getNodeCount();
+            features[UNCOUNTED] += window * (nodes == null ? 1 : nodes + (program.getTotalAdfNodeCount() == null ? 0 : program.getTotalAdfNodeCount()));
+            return;
+        }
+        for (int i = 0; i < counts.length && i < features.length; i++) {
+            features[i] += window * counts[i];
+        }
+    }
+
+    /**
+     * Run the evaluation, learn from its measured time and add it to the accuracy of the generation
+     */
+    public double measure(Estimate estimate, DoubleSupplier evaluation) {
+        long start = System.nanoTime();
+        double fitness = evaluation.getAsDouble();
+        learn(estimate, System.nanoTime() - start);
+        return fitness;
+    }
+
+    private synchronized void learn(Estimate estimate, long nanos) {
+        double[] features = estimate.features;
+        double[] updated = Arrays.copyOf(weights, Math.max(weights.length, features.length));
+        double predicted = 0;
+        double norm = 0;
+        for (int i = 0; i < features.length; i++) {
+            if (i >= weights.length) {
+                updated[i] = INITIAL_WEIGHT;
+            }
+            predicted += features[i] * updated[i];
+            norm += features[i] * features[i];
+        }
+        double error = nanos - predicted;
+        if (norm > 0) {
+            for (int i = 0; i < features.length; i++) {
+                updated[i] = Math.max(0, updated[i] + LEARNING_RATE * error * features[i] / norm);
+            }
+        }
+        weights = updated;
+
+        observations++;
+        sumEstimated += estimate.cost;
+        sumActual += nanos;
+        sumEstimatedSquared += estimate.cost * estimate.cost;
+        sumActualSquared += (double) nanos * nanos;
+        sumProduct += estimate.cost * nanos;
+        if (nanos > 0) {
+            sumRelativeError += Math.abs(estimate.cost - nanos) / nanos;
+        }
+    }
+
+    /**
+     * @return the correlation of estimated and measured costs, and their mean relative error, since the last call. Null
+     * values with fewer than two measurements.
+     */
+    public synchronized Accuracy getAndResetAccuracy() {
+        Accuracy accuracy = new Accuracy();
+        if (observations > 1) {
+            double n = observations;
+            double covariance = sumProduct - sumEstimated * sumActual / n;
+            double estimatedVariance = sumEstimatedSquared - sumEstimated * sumEstimated / n;
+            double actualVariance = sumActualSquared - sumActual * sumActual / n;
+            if (estimatedVariance > 0 && actualVariance > 0) {
+                accuracy.correlation = covariance / Math.sqrt(estimatedVariance * actualVariance);
+            }
+            accuracy.relativeError = sumRelativeError / n;
+        }
+        observations = 0;
+        sumEstimated = 0;
+        sumActual = 0;
+        sumEstimatedSquared = 0;
+        sumActualSquared = 0;
+        sumProduct = 0;
+        sumRelativeError = 0;
+        return accuracy;
+    }
+
+    public static class Estimate {
+        private final double[] features;
+        private final double cost;
+
+        private Estimate(double[] features, double cost) {
+            this.features = features;
+            this.cost = cost;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    public static class Accuracy {
+        private Double correlation;
+        private Double relativeError;
+
+        public Double getCorrelation() {
+            return correlation;
+        }
+
+        public Double getRelativeError() {
+            return relativeError;
+        }
+    }
+}
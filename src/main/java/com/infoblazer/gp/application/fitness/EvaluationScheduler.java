@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.infoblazer.gp.application.fitness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Schedules evaluations of very different cost. Evaluations are ordered costliest first and split in parts of equal
+ * estimated cost, so a few large programs do not leave threads idle at the end of a batch.
+ */
+public class EvaluationScheduler {
+
+    private static final int PARTS_PER_THREAD = 4; //parts left for stealing once each thread has started one
+
+    /**
+     * Run evaluation for each index on the pool. A part is split in two halves of equal cost until its cost is below
+     * the total over PARTS_PER_THREAD parts per thread. The thread keeps the costly half and idle threads steal the other.
+     */
+    public static void run(ForkJoinPool pool, double[] costs, IntConsumer evaluation) {
+        if (costs.length == 0) {
+            return;
+        }
+        int[] order = costliestFirst(costs);
+        double[] cumulative = new double[order.length + 1];
+        for (int i = 0; i < order.length; i++) {
+            cumulative[i + 1] = cumulative[i] + costs[order[i]];
+        }
+        double threshold = cumulative[order.length] / (pool.getParallelism() * PARTS_PER_THREAD);
+        pool.invoke(new Part(order, cumulative, 0, order.length, threshold, evaluation));
+    }
+
+    /**
+     * Assign each index to one of the parts, costliest first to the part with the least cost so far
+     *
+     * @return the indexes of each part in ascending order
+     */
+    public static List<List<Integer>> partition(double[] costs, int parts) {
+        List<List<Integer>> result = new ArrayList<>();
+        double[] load = new double[parts];
+        for (int i = 0; i < parts; i++) {
+            result.add(new ArrayList<>());
+        }
+        for (int index : costliestFirst(costs)) {
+            int lightest = 0;
+            for (int i = 1; i < parts; i++) {
+                if (load[i] < load[lightest]) {
+                    lightest = i;
+                }
+            }
+            result.get(lightest).add(index);
+            load[lightest] += costs[index];
+        }
+        for (List<Integer> part : result) {
+            part.sort(Comparator.naturalOrder());
+        }
+        return result;
+    }
+
+    private static int[] costliestFirst(double[] costs) {
+        return IntStream.range(0, costs.length).boxed()
+                .sorted((a, b) -> Double.compare(costs[b], costs[a]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    private static class Part extends RecursiveAction {
+        private final int[] order;
+        private final double[] cumulative;
+        private final int from;
+        private final int to;
+        private final double threshold;
+        private final IntConsumer evaluation;
+
+        private Part(int[] order, double[] cumulative, int from, int to, double threshold, IntConsumer evaluation) {
+            this.order = order;
+            this.cumulative = cumulative;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.evaluation = evaluation;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || cumulative[to] - cumulative[from] <= threshold) {
+                for (int i = from; i < to; i++) {
+                    evaluation.accept(order[i]);
+                }
+                return;
+            }
+            int middle = Arrays.binarySearch(cumulative, from, to + 1, (cumulative[from] + cumulative[to]) / 2);
+            if (middle < 0) {
+                middle = -middle - 1;
+            }
+            middle = Math.max(from + 1, Math.min(to - 1, middle)); //the first item may hold more than half the cost
+            Part stolen = new Part(order, cumulative, middle, to, threshold, evaluation);
+            stolen.fork();
+            new Part(order, cumulative, from, middle, threshold, evaluation).compute();
+            stolen.join();
+        }
+    }
+}
@@ -25,13 +25,18 @@
 package com.infoblazer.gp.application.fitness;
 
 import com.infoblazer.gp.application.data.model.FitnessEvaluation;
+import com.infoblazer.gp.application.data.model.PointPrediction;
 import com.infoblazer.gp.application.data.model.XYArray;
 import com.infoblazer.gp.application.syntheticdata.XYSeries;
+import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
 import com.infoblazer.gp.evolution.model.*;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
 import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Created by David on 5/26/2014.
  */
@@ -41,8 +46,47 @@ public interface FitnessEvaluator {
 
 
 
-    FitnessEvaluation calculateProgramFitness(Integer windowStart, Integer windowEnd, Integer maxLevel, ResultProducingProgram program,
-                                              RegimeDetectionProgram regimeDetectionProgram,SelectionStrategy.Direction direction);
+    /**
+     * Evaluate the programs at a single position only, without building trace arrays.
+     */
+    PointPrediction predictAt(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                              int position, int maxDepth);
+
+    /**
+     * Fitness over the window without per point trace arrays. Use evaluate when the values are charted or saved.
+     */
+    double evaluateFitness(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                           Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction);
+
+    /**
+     * Fitness of each pairing of result and regime program, regimeDetectionPrograms may hold nulls. Evaluates on the pool
+     * when given, costliest first, otherwise in order on the calling thread. Each evaluation is measured against its
+     * estimated cost, and draws from its own stream so the pool threads draw the same numbers as a serial run.
+     */
+    double[] evaluateFitness(List<ResultProducingProgram> resultProducingPrograms, List<RegimeDetectionProgram> regimeDetectionPrograms,
+                             Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction,
+                             ForkJoinPool pool);
+
+    /**
+     * @return true if children should be queued and evaluated together even without a pool
+     */
+    boolean evaluatesInBatches();
+
+    /**
+     * @return true if evaluateFitness uses fast math or single precision, evaluate is always exact
+     */
+    boolean isApproximateFitness();
+
+    /**
+     * Spearman rank correlation between the fitness path and exact evaluation over the same window.
+     *
+     * @return null with fewer than two programs
+     */
+    Double approximateRankCorrelation(List<ResultProducingProgram> programs, RegimeDetectionProgram regimeDetectionProgram,
+                                      int windowStart, int windowEnd, int maxDepth, SelectionStrategy.Direction direction);
+
+    double calculateProgramFitness(Integer windowStart, Integer windowEnd, Integer maxLevel, ResultProducingProgram program,
+                                   RegimeDetectionProgram regimeDetectionProgram,SelectionStrategy.Direction direction);
 
 
 
@@ -60,6 +104,8 @@ public interface FitnessEvaluator {
 
     public Integer getAndResetFitnessEvaluations() ;
 
+    public Integer getAndResetNodeBudgetExceeded() ;
+
 
 
 
@@ -74,6 +120,8 @@ public interface FitnessEvaluator {
 
     void drawPredictedRegimeSeries(XYArray regimeXyArray);
 
+    void setXySeriesSet(XYSeriesSet xySeriesSet);
+
     void setResultLibrary(ResultLibrary resultLibrary);
 
     void setRegimeLibrary(RegimeLibrary regimeLibrary);
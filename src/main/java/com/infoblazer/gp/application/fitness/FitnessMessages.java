@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.fitness;
+
+import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messages between the {@link RemoteFitnessEvaluator} and its {@link FitnessWorker}s, written with Kryo
+ */
+class FitnessMessages {
+
+    /**
+     * master to worker on connect
+     */
+    static class Hello {
+        String seriesFile;
+        long seed; //of the stream the worker evaluates with, from the master's stream
+    }
+
+    /**
+     * master to worker, pairings to evaluate with the library entries they reach by key in the master's libraries
+     */
+    static class Batch {
+        Integer windowStart;
+        Integer windowEnd;
+        int maxDepth;
+        SelectionStrategy.Direction direction;
+        List<ResultProducingProgram> resultProducingPrograms;
+        List<RegimeDetectionProgram> regimeDetectionPrograms;
+        Map<Integer, Primitive[]> resultEntries = new HashMap<>();
+        Map<Integer, Primitive[]> regimeEntries = new HashMap<>();
+    }
+
+    /**
+     * worker to master, fitness of each pairing of the batch
+     */
+    static class Results {
+        double[] fitness;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.fitness;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.infoblazer.gp.RunScope;
+import com.infoblazer.gp.application.syntheticdata.SeriesFile;
+import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
+import com.infoblazer.gp.evolution.utils.EvaluationPool;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fitness worker process for a {@link RemoteFitnessEvaluator}. Each master connection gets its own run scope and
+ * evaluator. The series are mapped read only from the master's series file, the libraries mirror the entries sent with
+ * each batch. A batch is evaluated on the evaluation pool when evaluationThreads is set.
+ */
+@Component
+public class FitnessWorker {
+
+    private final static Logger logger = Logger.getLogger(FitnessWorker.class.getName());
+
+    @Value("${fitnessWorkerPort:#{null}}") //run this process as a fitness worker listening on this port
+    private Integer fitnessWorkerPort;
+    @Value("${fitnessWorkerSpawned:#{false}}") //started by a master: serve its connection, then exit
+    private boolean spawned;
+
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private EvaluationPool evaluationPool;
+
+    private final Map<String, XYSeriesSet> mappedSeries = new ConcurrentHashMap<>();
+
+    public boolean isWorker() {
+        return fitnessWorkerPort != null;
+    }
+
+    public void serve() {
+        try (ServerSocket server = new ServerSocket(fitnessWorkerPort)) {
+            logger.info("Fitness worker listening on port " + fitnessWorkerPort);
+            for (int connection = 0; ; connection++) {
+                final Socket socket = server.accept();
+                final String runId = "fitness-worker-" + connection;
+                if (spawned) {
+                    handle(socket, runId);
+                    return;
+                }
+                new Thread(() -> handle(socket, runId), runId).start();
+            }
+        } catch (IOException e) {
+            logger.error("Fitness worker failed", e);
+        }
+    }
+
+    private void handle(Socket socket, String runId) {
+        RunScope.run(runId, () -> {
+            try (Socket connection = socket) {
+                connection.setTcpNoDelay(true);
+                Input input = new Input(connection.getInputStream());
+                Output output = new Output(connection.getOutputStream());
+                FitnessMessages.Hello hello = (FitnessMessages.Hello) GpUtils.getKyroInstance().readClassAndObject(input);
+                NumericFitnessEvaluator evaluator = (NumericFitnessEvaluator) context.getBean("numericFitnessEvaluator");
+                evaluator.setXySeriesSet(mappedSeries.computeIfAbsent(hello.seriesFile, this::map));
+                GpRandom.runWith(new SplittableRandom(hello.seed), () -> serve(input, output, evaluator, runId));
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("Fitness worker connection failed", e);
+            }
+        });
+    }
+
+    private void serve(Input input, Output output, NumericFitnessEvaluator evaluator, String runId) {
+        while (true) {
+            FitnessMessages.Batch batch;
+            try {
+                batch = (FitnessMessages.Batch) GpUtils.getKyroInstance().readClassAndObject(input);
+            } catch (KryoException e) {
+                logger.info("Master closed " + runId);
+                return;
+            }
+            GpUtils.getKyroInstance().writeClassAndObject(output, evaluate(evaluator, batch));
+            output.flush();
+        }
+    }
+
+    private FitnessMessages.Results evaluate(NumericFitnessEvaluator evaluator, FitnessMessages.Batch batch) {
+        evaluator.getResultLibrary().mirror(batch.resultEntries);
+        evaluator.getRegimeLibrary().mirror(batch.regimeEntries);
+        FitnessMessages.Results results = new FitnessMessages.Results();
+        results.fitness = evaluator.evaluateFitness(batch.resultProducingPrograms, batch.regimeDetectionPrograms,
+                batch.windowStart, batch.windowEnd, batch.maxDepth, batch.direction, evaluationPool.getPool());
+        return results;
+    }
+
+    private XYSeriesSet map(String seriesFile) {
+        try {
+            return SeriesFile.map(Paths.get(seriesFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.fitness;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of primitive evaluations allowed in a single fitness call.
+ * The budget is thread confined, so charging it from every node needs no locking, unless the call is split across
+ * threads that share what remains of it.
+ */
+public class NodeBudget {
+
+    private static final ThreadLocal<NodeBudget> currentBudget = new ThreadLocal<NodeBudget>();
+    private static boolean used = false; //set by the first thread to start a budget, runs without one skip the thread local
+
+    private final long limit;
+    private final AtomicLong remaining;
+    private long charged = 0;
+
+    private NodeBudget(long limit, AtomicLong remaining) {
+        this.limit = limit;
+        this.remaining = remaining;
+    }
+
+    /**
+     * start a budget for the current thread. A null or non positive limit disables the check
+     */
+    public static void start(Long limit) {
+        if (limit == null || limit <= 0) {
+            currentBudget.remove();
+        } else {
+            used = true;
+            currentBudget.set(new NodeBudget(limit, null));
+        }
+    }
+
+    /**
+     * start a budget for the current thread charged against remaining, shared with the other threads evaluating parts of
+     * the same call, so the call is stopped at the same total as when evaluated on one thread. A null remaining disables
+     * the check.
+     *
+     * @param limit the budget of the whole call, for the message
+     */
+    public static void start(AtomicLong remaining, long limit) {
+        if (remaining == null) {
+            currentBudget.remove();
+        } else {
+            used = true;
+            currentBudget.set(new NodeBudget(limit, remaining));
+        }
+    }
+
+    /**
+     * @return the nodes charged to the current thread's own budget since it started, 0 without one
+     */
+    public static long charged() {
+        NodeBudget budget = currentBudget.get();
+        return budget == null ? 0 : budget.charged;
+    }
+
+    public static void end() {
+        currentBudget.remove();
+    }
+
+    /**
+     * @return whether any thread has started a budget. A thread sees its own start, so a budget is never skipped.
+     */
+    public static boolean isUsed() {
+        return used;
+    }
+
+    public static void charge() {
+        if (!used) {
+            return;
+        }
+        NodeBudget budget = currentBudget.get();
+        if (budget == null) {
+            return;
+        }
+        if (budget.remaining == null ? ++budget.charged > budget.limit : budget.remaining.decrementAndGet() < 0) {
+            throw new NodeBudgetExceededException(budget.limit);
+        }
+    }
+}
@@ -22,27 +22,14 @@
  * SOFTWARE.
  */
 
-package com.infoblazer.gp.application.data.service;
+package com.infoblazer.gp.application.fitness;
 
 /**
- * Created by David on 10/21/2015.
+ * Thrown from inside program evaluation when the node budget of the fitness call is used up.
  */
+public class NodeBudgetExceededException extends RuntimeException {
 
-public class EvaluationLogger {
-
-    private static double evalCounter = 0.0;
-
-    public synchronized static void dataAccessOperation() {
-        //TODO convert to AOP
-        evalCounter++;
-
+    public NodeBudgetExceededException(long limit) {
+        super("Node evaluation budget of " + limit + " exceeded", null, false, false);
     }
-
-    public synchronized static double getAndResetEvaluations() {
-        double val = evalCounter;
-        evalCounter = 0;
-        return val;
-    }
-
-
 }
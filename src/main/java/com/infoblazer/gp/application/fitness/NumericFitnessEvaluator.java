@@ -24,30 +24,60 @@
 
 package com.infoblazer.gp.application.fitness;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.data.model.FitnessEvaluation;
+import com.infoblazer.gp.application.data.model.PointPrediction;
 import com.infoblazer.gp.application.data.model.XYArray;
 import com.infoblazer.gp.application.syntheticdata.XYSeries;
+import com.infoblazer.gp.evolution.linker.LinkedProgram;
 import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
 import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import com.infoblazer.gp.evolution.primitives.functions.BinaryNumber;
 import com.infoblazer.gp.evolution.primitives.terminals.TerminalZero;
 import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
+import org.apache.commons.math3.stat.ranking.NaNStrategy;
+import org.apache.commons.math3.stat.ranking.NaturalRanking;
+import org.apache.commons.math3.stat.ranking.TiesStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by David on 5/31/2014.
  */
 @Component
+@Scope(RunScope.NAME)
 public class NumericFitnessEvaluator extends AbstractFitnessEvaluator {
 
     private final static org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(NumericFitnessEvaluator.class.getName());
 
+    @Value("${windowChunkSize:#{null}}") //split longer windows into chunks of this many points evaluated in parallel
+    private Integer windowChunkSize;
+    @Value("${windowThreads:#{null}}") //fork join parallelism for window chunks, common pool if not set
+    private Integer windowThreads;
+
+    @Value("${singlePrecision:#{false}}") //series columns stored as float during selection, errors still summed in double
+    private boolean singlePrecision;
+
+    private ForkJoinPool windowPool;
+    private volatile SeriesColumns doubleColumns;
+    private volatile SeriesColumns floatColumns;
+
 
     public FitnessEvaluation evaluate(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
                                       final Integer windowStart, final Integer windowEnd, final int maxDepth,SelectionStrategy.Direction direction) {
@@ -56,145 +86,570 @@ public class NumericFitnessEvaluator extends AbstractFitnessEvaluator {
         ///int actualStart=0;
         //int actualEnd = targetSeries.getLength()-1;
 
+        int seriesLength = xySeriesSet.getTargetSeries().getLength();
+        Double[] yVals = new Double[seriesLength];
+        Double[] regimeVals = new Double[seriesLength];
+        Object[] xVals = new Object[seriesLength];
+
+        double fitness = evaluateProgram(resultProducingProgram, regimeDetectionProgram, windowStart, windowEnd, maxDepth, direction,
+                false, yVals, regimeVals, xVals);
 
-        fitnessEvaluations.incrementAndGet();
+        FitnessEvaluation fitnessEvaluation = new FitnessEvaluation(new XYArray(xVals, yVals));
+        fitnessEvaluation.setRegimeXyArray(new XYArray(xVals, regimeVals));
+        fitnessEvaluation.setFitness(fitness);
+        return fitnessEvaluation;
+    }
 
-        double totalError = 0d;
-        int totalPredictions = 0;
+    @Override
+    public double evaluateFitness(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                  Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+        return evaluateProgram(resultProducingProgram, regimeDetectionProgram, windowStart, windowEnd, maxDepth, direction,
+                true, null, null, null);
+    }
 
+    /**
+     * Fitness without fast math or single precision, for decisions that should not depend on the approximation
+     */
+    protected double evaluateExactFitness(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                          Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+        return evaluateProgram(resultProducingProgram, regimeDetectionProgram, windowStart, windowEnd, maxDepth, direction,
+                false, null, null, null);
+    }
 
-        XYSeries targetSeries = xySeriesSet.getTargetSeries();
-        int seriesLength = targetSeries.getLength();
-        List<String> seriesList = xySeriesSet.getSeriesList();
-        Double[] yVals = new Double[seriesLength];
-        Double[] regimeVals = new Double[seriesLength];
-        Object[] xVals = new Object[seriesLength];
-        Map<String, List<Double>> seriesMap = new HashMap<>();
-        for (String seriesName : seriesList) {
-            seriesMap.put(seriesName, new ArrayList<Double>());
+    @Override
+    public boolean isApproximateFitness() {
+        return singlePrecision || programLinker.isFastMath();
+    }
+
+    @Override
+    public Double approximateRankCorrelation(List<ResultProducingProgram> programs, RegimeDetectionProgram regimeDetectionProgram,
+                                             int windowStart, int windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+        if (programs.size() < 2) {
+            return null;
+        }
+        double[] approximate = new double[programs.size()];
+        double[] exact = new double[programs.size()];
+        for (int i = 0; i < programs.size(); i++) {
+            approximate[i] = evaluateProgram(programs.get(i), regimeDetectionProgram, windowStart, windowEnd, maxDepth, direction,
+                    true, null, null, null);
+            exact[i] = evaluateProgram(programs.get(i), regimeDetectionProgram, windowStart, windowEnd, maxDepth, direction,
+                    false, null, null, null);
         }
+        //failed programs rank last in both
+        NaturalRanking ranking = new NaturalRanking(NaNStrategy.MAXIMAL, TiesStrategy.AVERAGE);
+        return new SpearmansCorrelation(ranking).correlation(approximate, exact);
+    }
 
-        Map<String, Adf> adfs = null;
-        if (resultProducingProgram.getAdfs() != null) {
-            adfs = buildAdfMap(resultProducingProgram.getAdfs());
+    /**
+     * Columns for the current series set, converted on first use
+     */
+    private SeriesColumns getSeriesColumns(boolean single) {
+        SeriesColumns columns = single ? floatColumns : doubleColumns;
+        if (columns == null || !columns.isFor(xySeriesSet)) {
+            columns = new SeriesColumns(xySeriesSet, single);
+            if (single) {
+                floatColumns = columns;
+            } else {
+                doubleColumns = columns;
+            }
         }
-        Map<String, Object> params = new HashMap<String, Object>();
-        int trivialPredictions = 0;
-        for (int i = 0;i<windowStart;i++){  //add any series data prior to evaluation period
-            for (String seriesName : seriesList) {
-                List<Double> series = seriesMap.get(seriesName);
-                series.add(xySeriesSet.getXYSeries(seriesName).getY(i));
+        return columns;
+    }
+
+    /**
+     * Shared by the trace and fitness only paths. Per point values are stored only when the arrays are given.
+     *
+     * @param approximate use fast math and single precision when set, false when the values are reported
+     */
+    private double evaluateProgram(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                   int windowStart, int windowEnd, int maxDepth, SelectionStrategy.Direction direction,
+                                   boolean approximate, Double[] yVals, Double[] regimeVals, Object[] xVals) {
+        fitnessEvaluations.incrementAndGet();
 
+        long resultEpoch = resultLibrary.enterEpoch();
+        long regimeEpoch = regimeLibrary.enterEpoch();
+        try {
+            int seriesLength = xySeriesSet.getTargetSeries().getLength();
+            Map<String, Adf> adfs = null;
+            if (resultProducingProgram.getAdfs() != null) {
+                adfs = buildAdfMap(resultProducingProgram.getAdfs());
             }
+            LinkedProgram resultRoot = programLinker.link(resultProducingProgram.getRoot(), resultLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth, approximate);
+            LinkedProgram regimeRoot = null;
+            if (regimeDetectionProgram != null) {
+                regimeRoot = programLinker.link(regimeDetectionProgram.getRoot(), regimeLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth, approximate);
+            }
+            SeriesColumns columns = getSeriesColumns(approximate && singlePrecision);
+            int lastPos = Math.min(windowEnd, seriesLength - 1);
+            WindowEvaluation windowEvaluation;
+            if (windowChunkSize != null && windowChunkSize > 0 && lastPos - windowStart + 1 > windowChunkSize) {
+                windowEvaluation = evaluateChunks(resultRoot, regimeDetectionProgram, regimeRoot, adfs, windowStart, lastPos, maxDepth,
+                        columns, yVals, regimeVals, xVals);
+            } else {
+                windowEvaluation = evaluateWindow(resultRoot, regimeDetectionProgram, regimeRoot, adfs, windowStart, lastPos, maxDepth,
+                        null, columns, yVals, regimeVals, xVals, null);
+            }
+            if (windowEvaluation.budgetExceeded) {
+                nodeBudgetExceeded.incrementAndGet();
+            }
+            return toFitness(windowEvaluation.totalError, windowEvaluation.totalPredictions, windowEvaluation.trivialPredictions,
+                    windowEvaluation.budgetExceeded, direction);
+        } finally {
+            regimeLibrary.exitEpoch(regimeEpoch);
+            resultLibrary.exitEpoch(resultEpoch);
         }
-        for (String seriesName : seriesList) {
-            List<Double> series = seriesMap.get(seriesName);
-            params.put(seriesName, series.toArray(new Double[0]));
+    }
+
+    private double toFitness(double totalError, int totalPredictions, int trivialPredictions, boolean budgetExceeded,
+                             SelectionStrategy.Direction direction) {
+        double meanSquaredError;
+        if (totalPredictions == 0 || !useAverageError) {
+            meanSquaredError = totalError;
+        } else {
+            meanSquaredError = totalError / totalPredictions;
         }
-        for (int i = windowStart; i <= windowEnd; i++) {
-            boolean hitResursionError = false;
+        if (!allowTrivialPredictions && (((totalPredictions-trivialPredictions)/Double.valueOf(totalPredictions))<TRIVIAL_LIMIT_PCT)){
+            logger.debug("no trivial predictions allowed");
+            meanSquaredError = direction.getMinFitness();
 
-            if (i < seriesLength) {
-                params.put("x", targetSeries.getX(i));
-                for (String seriesName : seriesList) {
-                    List<Double> series = seriesMap.get(seriesName);
-                    series.add(xySeriesSet.getXYSeries(seriesName).getY(i));
-                    params.put(seriesName, series.toArray(new Double[0]));
-                }
-                params.put("serieslist", seriesList);
-                Number calculated = null;
-                Integer regime = null;
+        }
+        if (budgetExceeded) {
+            meanSquaredError = direction.getMinFitness();
+        }
+        return meanSquaredError;
+    }
 
-                if (regimeDetectionProgram != null) {
-                    try {
-                        if (!(regimeDetectionProgram.getRoot() instanceof BinaryNumber || regimeDetectionProgram.getRoot() instanceof TerminalZero)) {
-                            logger.error("error in regime detection" + regimeDetectionProgram.asLanguageString(maxDepth));
+    /**
+     * Evaluate [windowStart,windowEnd] as consecutive chunks on the fork join pool. Each chunk builds its own
+     * evaluation params and charges the node budget of the call, shared by all chunks, so a program is stopped at the same
+     * total cost as on the serial path. Points after the first failing point are dropped, as the serial loop stops there.
+     */
+    private WindowEvaluation evaluateChunks(final LinkedProgram resultRoot, final RegimeDetectionProgram regimeDetectionProgram,
+                                            final LinkedProgram regimeRoot, final Map<String, Adf> adfs, int windowStart, int windowEnd, final int maxDepth,
+                                            final SeriesColumns columns, final Double[] yVals, final Double[] regimeVals, final Object[] xVals) {
+        final AtomicLong remainingBudget = nodeBudget == null || nodeBudget <= 0 ? null : new AtomicLong(nodeBudget);
+        final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
 
-                        }
-                        Object regimeNumber = regimeDetectionProgram.getRoot().evaluate(false, 0, params, adfs, regimeLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth);
-                        if (regimeNumber != null) {
-                            regime = ((Number) regimeNumber).intValue();
-                        }
-                    }  catch (Exception e) {
-                        try {
+        List<ForkJoinTask<WindowEvaluation>> chunks = new ArrayList<>();
+        SplittableRandom parent = GpRandom.operator("evaluation");
+        for (int chunkStart = windowStart; chunkStart <= windowEnd; chunkStart += windowChunkSize) {
+            final int from = chunkStart;
+            final int to = Math.min(windowEnd, chunkStart + windowChunkSize - 1);
+            final SplittableRandom random = parent.split(); //in chunk order, whichever thread runs the chunk
+            chunks.add(getWindowPool().submit(() -> GpRandom.callWith(random, () -> evaluateWindow(resultRoot, regimeDetectionProgram,
+                    regimeRoot, adfs, from, to, maxDepth, remainingBudget, columns, yVals, regimeVals, xVals, firstFailure))));
+        }
 
-                            logger.error("Exception in regime detection" + regimeDetectionProgram.asLanguageString(maxDepth));
-                        } catch (Exception e1) {
-                            e1.printStackTrace();
-                        }
+        WindowEvaluation result = new WindowEvaluation();
+        for (ForkJoinTask<WindowEvaluation> chunk : chunks) {
+            WindowEvaluation chunkEvaluation = chunk.join();
+            result.totalError = result.totalError + chunkEvaluation.totalError;
+            result.totalPredictions = result.totalPredictions + chunkEvaluation.totalPredictions;
+            result.trivialPredictions = result.trivialPredictions + chunkEvaluation.trivialPredictions;
+            result.invalid = result.invalid || chunkEvaluation.invalid;
+            result.budgetExceeded = result.budgetExceeded || chunkEvaluation.budgetExceeded;
+        }
+        if (result.invalid) {
+            result.totalError = Double.POSITIVE_INFINITY;
+            result.totalPredictions = 0;
+        }
+        int failedAt = firstFailure.get();
+        if (yVals != null && failedAt < windowEnd) {
+            for (int i = failedAt + 1; i <= windowEnd; i++) {
+                yVals[i] = null;
+                regimeVals[i] = null;
+                xVals[i] = null;
+            }
+        }
+        return result;
+    }
 
-                    }
-                    logger.trace("determined regime: " + regime);
-                } else {
-                    regime = 0;
+    /**
+     * Evaluate the linked program roots at every point in [from,to]. firstFailure and remainingBudget are shared between
+     * chunks, evaluation stops once an earlier point has failed. Both are null when the whole window is evaluated on the
+     * calling thread, which then has the node budget to itself, and remainingBudget is also null without a budget. The value arrays are null on the fitness only path.
+     */
+    private WindowEvaluation evaluateWindow(LinkedProgram resultRoot, RegimeDetectionProgram regimeDetectionProgram, LinkedProgram regimeRoot,
+                                            Map<String, Adf> adfs, int from, int to, int maxDepth, AtomicLong remainingBudget,
+                                            SeriesColumns columns, Double[] yVals, Double[] regimeVals, Object[] xVals, AtomicInteger firstFailure) {
+
+        XYSeries targetSeries = xySeriesSet.getTargetSeries();
+        EvaluationContext context = new EvaluationContext(columns);
+
+        WindowEvaluation result = new WindowEvaluation();
+        int i = from;
+        if (remainingBudget == null) {
+            NodeBudget.start(nodeBudget);
+        } else {
+            NodeBudget.start(remainingBudget, nodeBudget);
+        }
+        try {
+            for (; i <= to; i++) {
+                if (firstFailure != null && i > firstFailure.get()) {
+                    break; // an earlier chunk already failed
                 }
-                try {
-                    if (regime != null) {
+                boolean hitResursionError = false;
+
+                Map<String, Object> params = context.moveTo(i);
+                Number calculated = null;
+                Integer regime = evaluateRegime(regimeDetectionProgram, regimeRoot, params, adfs, maxDepth);
+                if (regime != null) {
+                    if (regimeVals != null) {
                         regimeVals[i] = Double.valueOf(regime);
-                        fitnessCalculations.incrementAndGet();
-                        Object evaluationResult = resultProducingProgram.getRoot().evaluate(true, regime, params, adfs, resultLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth);
-                        if (evaluationResult != null) {
-                            calculated = (Number) evaluationResult;
-                        }
                     }
-                }  catch (Exception e) {
-                    logger.error("Unexpected error evaluating fitness");
-                    e.printStackTrace();
-
+                    calculated = evaluateResult(resultRoot, regime, params, adfs, maxDepth);
                 }
 
-                xVals[i] = targetSeries.getX(i);
+                if (xVals != null) {
+                    xVals[i] = targetSeries.getX(i);
+                }
                 Number expected = targetSeries.getY(i);
 
-                if (calculated == null || calculated.equals(Double.NaN) || calculated.equals(Double.NEGATIVE_INFINITY)
-                        || calculated.equals(Double.POSITIVE_INFINITY)) {
-                    totalError = Double.POSITIVE_INFINITY;
-                    totalPredictions = 0;
+                if (isInvalid(calculated)) {
+                    result.totalError = Double.POSITIVE_INFINITY;
+                    result.totalPredictions = 0;
+                    result.invalid = true;
+                    if (firstFailure != null) {
+                        firstFailure.accumulateAndGet(i, Math::min);
+                    }
                     if (hitResursionError || (calculated != null && (calculated.equals(Double.NEGATIVE_INFINITY)
                             || calculated.equals(Double.POSITIVE_INFINITY)))) {
                         break;
                     }
                     logger.debug("Encountered error evaluating program. Ignoring (or comment out) loop break. calculated=" + calculated);
-                       break;// remove this to debug into error
+                    break;// remove this to debug into error
                 } else {
-                    if (useMeanSquaredError) {
-                        totalError = totalError + Math.pow(Math.abs(expected.doubleValue() - calculated.doubleValue()), 2);
-                    } else {
-                        totalError = totalError + Math.abs(expected.doubleValue() - calculated.doubleValue());
+                    result.totalError = result.totalError + pointError(expected, calculated);
+                    result.totalPredictions++;
+                    if (yVals != null) {
+                        yVals[i] = calculated.doubleValue();
+                    }
+                    if (isTrivialPrediction(i, expected, calculated)) {
+                        result.trivialPredictions++;
+                    }
+                }
+
+
+            }
+        } catch (NodeBudgetExceededException e) {
+            logger.debug(e.getMessage());
+            result.budgetExceeded = true;
+            if (firstFailure != null) {
+                firstFailure.accumulateAndGet(i, Math::min);
+            }
+        } finally {
+            NodeBudget.end();
+        }
+        return result;
+    }
+
+    /**
+     * Evaluate once over the largest window and derive the fitness of every window ending at windowEnd from suffix sums of
+     * the per point errors. windowStarts must be ascending, the first is the largest window.
+     * After an invalid point evaluation skips ahead to the next window start, as every window containing the point is invalid.
+     * The node budget applies to each window, as when it is evaluated on its own: running over it skips ahead the same way.
+     *
+     * @return fitness per window, in the order of windowStarts
+     */
+    protected double[] evaluateSuffixWindows(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                             int[] windowStarts, int windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+        fitnessEvaluations.incrementAndGet();
+
+        long resultEpoch = resultLibrary.enterEpoch();
+        long regimeEpoch = regimeLibrary.enterEpoch();
+        try {
+            XYSeries targetSeries = xySeriesSet.getTargetSeries();
+            Map<String, Adf> adfs = null;
+            if (resultProducingProgram.getAdfs() != null) {
+                adfs = buildAdfMap(resultProducingProgram.getAdfs());
+            }
+            LinkedProgram resultRoot = programLinker.link(resultProducingProgram.getRoot(), resultLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth, true);
+            LinkedProgram regimeRoot = null;
+            if (regimeDetectionProgram != null) {
+                regimeRoot = programLinker.link(regimeDetectionProgram.getRoot(), regimeLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth, true);
+            }
+            int from = windowStarts[0];
+            int lastPos = Math.min(windowEnd, targetSeries.getLength() - 1);
+            int points = Math.max(0, lastPos - from + 1);
+            double[] errors = new double[points];
+            boolean[] trivial = new boolean[points];
+            int lastInvalid = from - 1;
+            boolean[] budgetExceeded = new boolean[windowStarts.length];
+            long[] chargedBefore = new long[windowStarts.length]; //nodes charged before each window starts
+            long charged = 0; //nodes charged before the current budget started
+
+            EvaluationContext context = new EvaluationContext(getSeriesColumns(singlePrecision));
+            //each window start gets a fresh budget, so the smallest window started has the whole budget to itself
+            int nextWindow = 1;
+            NodeBudget.start(nodeBudget);
+            try {
+                for (int i = from; i <= lastPos; i++) {
+                    if (nextWindow < windowStarts.length && i == windowStarts[nextWindow]) {
+                        charged = charged + NodeBudget.charged();
+                        NodeBudget.start(nodeBudget);
+                        while (nextWindow < windowStarts.length && windowStarts[nextWindow] == i) {
+                            chargedBefore[nextWindow++] = charged;
+                        }
+                    }
+                    boolean invalid;
+                    try {
+                        Map<String, Object> params = context.moveTo(i);
+                        Number calculated = null;
+                        Integer regime = evaluateRegime(regimeDetectionProgram, regimeRoot, params, adfs, maxDepth);
+                        if (regime != null) {
+                            calculated = evaluateResult(resultRoot, regime, params, adfs, maxDepth);
+                        }
+                        Number expected = targetSeries.getY(i);
+                        invalid = isInvalid(calculated);
+                        if (!invalid) {
+                            errors[i - from] = pointError(expected, calculated);
+                            trivial[i - from] = isTrivialPrediction(i, expected, calculated);
+                        }
+                    } catch (NodeBudgetExceededException e) {
+                        //every window started so far contains the smallest one, which is over the budget
+                        logger.debug(e.getMessage());
+                        for (int w = 0; w < nextWindow; w++) {
+                            budgetExceeded[w] = true;
+                        }
+                        invalid = false;
+                        if (nextWindow == windowStarts.length) {
+                            break;
+                        }
+                        i = windowStarts[nextWindow] - 1;
                     }
-                    totalPredictions++;
-                    yVals[i] = calculated.doubleValue();
-                    if (!allowTrivialPredictions && i > 0) {
-                        Double lastVal = targetSeries.getY(i - 1);
-                        if (Math.abs(calculated.doubleValue()-lastVal)<CLOSE_ENOUGH &&
-                                Math.abs(expected.doubleValue()-lastVal)>=CLOSE_ENOUGH) {
-                            trivialPredictions++;
+                    if (invalid) {
+                        lastInvalid = i;
+                        while (nextWindow < windowStarts.length && windowStarts[nextWindow] <= i) {
+                            nextWindow++;
+                        }
+                        if (nextWindow == windowStarts.length) {
+                            break;
                         }
+                        i = windowStarts[nextWindow] - 1;
                     }
                 }
+                charged = charged + NodeBudget.charged();
+            } finally {
+                NodeBudget.end();
+            }
+            for (int w = nextWindow; w < windowStarts.length; w++) {
+                chargedBefore[w] = charged; //starts after the end of the series
+            }
+            if (nodeBudget != null && nodeBudget > 0) {
+                //a window may be over the budget through the points before the next window started
+                boolean anyExceeded = false;
+                for (int w = 0; w < windowStarts.length; w++) {
+                    budgetExceeded[w] = budgetExceeded[w] || charged - chargedBefore[w] > nodeBudget;
+                    anyExceeded = anyExceeded || budgetExceeded[w];
+                }
+                if (anyExceeded) {
+                    nodeBudgetExceeded.incrementAndGet();
+                }
+            }
 
+            //suffix sums, entry k covers [from + k, lastPos]
+            double[] suffixError = new double[points + 1];
+            int[] suffixTrivial = new int[points + 1];
+            for (int k = points - 1; k >= 0; k--) {
+                suffixError[k] = suffixError[k + 1] + errors[k];
+                suffixTrivial[k] = suffixTrivial[k + 1] + (trivial[k] ? 1 : 0);
             }
 
+            double[] fitness = new double[windowStarts.length];
+            for (int w = 0; w < windowStarts.length; w++) {
+                int offset = Math.min(points, windowStarts[w] - from);
+                double totalError;
+                int totalPredictions;
+                if (lastInvalid >= windowStarts[w]) {
+                    totalError = Double.POSITIVE_INFINITY;
+                    totalPredictions = 0;
+                } else {
+                    totalError = suffixError[offset];
+                    totalPredictions = points - offset;
+                }
+                fitness[w] = toFitness(totalError, totalPredictions, suffixTrivial[offset], budgetExceeded[w], direction);
+            }
+            return fitness;
+        } finally {
+            regimeLibrary.exitEpoch(regimeEpoch);
+            resultLibrary.exitEpoch(resultEpoch);
+        }
+    }
 
+    private double pointError(Number expected, Number calculated) {
+        if (useMeanSquaredError) {
+            return Math.pow(Math.abs(expected.doubleValue() - calculated.doubleValue()), 2);
+        } else {
+            return Math.abs(expected.doubleValue() - calculated.doubleValue());
         }
+    }
 
-        XYArray xyArray = new XYArray(xVals, yVals);
-        double meanSquaredError;
-        if (totalPredictions == 0 || !useAverageError) {
-            meanSquaredError = totalError;
+    private boolean isTrivialPrediction(int i, Number expected, Number calculated) {
+        if (!allowTrivialPredictions && i > 0) {
+            Double lastVal = xySeriesSet.getTargetSeries().getY(i - 1);
+            return Math.abs(calculated.doubleValue() - lastVal) < CLOSE_ENOUGH &&
+                    Math.abs(expected.doubleValue() - lastVal) >= CLOSE_ENOUGH;
+        }
+        return false;
+    }
+
+    private static boolean isInvalid(Number calculated) {
+        return calculated == null || calculated.equals(Double.NaN) || calculated.equals(Double.NEGATIVE_INFINITY)
+                || calculated.equals(Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public PointPrediction predictAt(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                     int position, int maxDepth) {
+        fitnessEvaluations.incrementAndGet(); //counted as the evaluate call it replaces was
+        long resultEpoch = resultLibrary.enterEpoch();
+        long regimeEpoch = regimeLibrary.enterEpoch();
+        try {
+            Map<String, Adf> adfs = null;
+            if (resultProducingProgram.getAdfs() != null) {
+                adfs = buildAdfMap(resultProducingProgram.getAdfs());
+            }
+            LinkedProgram resultRoot = programLinker.link(resultProducingProgram.getRoot(), resultLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth, false);
+            LinkedProgram regimeRoot = null;
+            if (regimeDetectionProgram != null) {
+                regimeRoot = programLinker.link(regimeDetectionProgram.getRoot(), regimeLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth, false);
+            }
+
+            Map<String, Object> params = new EvaluationContext(getSeriesColumns(false)).moveTo(position);
+            Integer regime = null;
+            Number calculated = null;
+            NodeBudget.start(nodeBudget);
+            try {
+                regime = evaluateRegime(regimeDetectionProgram, regimeRoot, params, adfs, maxDepth);
+                if (regime != null) {
+                    calculated = evaluateResult(resultRoot, regime, params, adfs, maxDepth);
+                }
+            } catch (NodeBudgetExceededException e) {
+                logger.debug(e.getMessage());
+                nodeBudgetExceeded.incrementAndGet();
+                calculated = null;
+            } finally {
+                NodeBudget.end();
+            }
+            return new PointPrediction(calculated, regime);
+        } finally {
+            regimeLibrary.exitEpoch(regimeEpoch);
+            resultLibrary.exitEpoch(resultEpoch);
+        }
+    }
+
+    /**
+     * @return the regime at the current position, 0 without a regime program, null if the regime program failed
+     */
+    private Integer evaluateRegime(RegimeDetectionProgram regimeDetectionProgram, LinkedProgram regimeRoot, Map<String, Object> params,
+                                   Map<String, Adf> adfs, int maxDepth) {
+        Integer regime = null;
+        if (regimeDetectionProgram != null) {
+            try {
+                if (!(regimeDetectionProgram.getRoot() instanceof BinaryNumber || regimeDetectionProgram.getRoot() instanceof TerminalZero)) {
+                    logger.error("error in regime detection" + regimeDetectionProgram.asLanguageString(maxDepth));
+
+                }
+                Object regimeNumber = regimeRoot.forRegime(0).evaluate(false, 0, params, adfs, regimeLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth);
+                if (regimeNumber != null) {
+                    regime = ((Number) regimeNumber).intValue();
+                }
+            } catch (NodeBudgetExceededException e) {
+                throw e;
+            } catch (Exception e) {
+                try {
+
+                    logger.error("Exception in regime detection" + regimeDetectionProgram.asLanguageString(maxDepth));
+                } catch (Exception e1) {
+                    e1.printStackTrace();
+                }
+
+            }
+            logger.trace("determined regime: " + regime);
         } else {
-            meanSquaredError = totalError / totalPredictions;
+            regime = 0;
         }
-        FitnessEvaluation fitnessEvaluation = new FitnessEvaluation(xyArray);
-        fitnessEvaluation.setRegimeXyArray(new XYArray(xVals, regimeVals));
-        if (!allowTrivialPredictions && (((totalPredictions-trivialPredictions)/Double.valueOf(totalPredictions))<TRIVIAL_LIMIT_PCT)){
-            logger.debug("no trivial predictions allowed");
-            meanSquaredError = direction.getMinFitness();
+        return regime;
+    }
+
+    /**
+     * @return the result program value at the current position, null if evaluation failed
+     */
+    private Number evaluateResult(LinkedProgram resultRoot, int regime, Map<String, Object> params, Map<String, Adf> adfs, int maxDepth) {
+        Number calculated = null;
+        try {
+            fitnessCalculations.incrementAndGet();
+            Object evaluationResult = resultRoot.forRegime(regime).evaluate(true, regime, params, adfs, resultLibrary, EVALUATOR_INITIAL_LEVEL, maxDepth);
+            if (evaluationResult != null) {
+                calculated = (Number) evaluationResult;
+            }
+        } catch (NodeBudgetExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error evaluating fitness");
+            e.printStackTrace();
 
         }
+        return calculated;
+    }
 
-        fitnessEvaluation.setFitness(meanSquaredError);
-        return fitnessEvaluation;
+    private synchronized ForkJoinPool getWindowPool() {
+        if (windowPool == null) {
+            if (windowThreads == null) {
+                windowPool = ForkJoinPool.commonPool();
+            } else {
+                windowPool = new ForkJoinPool(windowThreads);
+            }
+        }
+        return windowPool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdownWindowPool() {
+        if (windowPool != null && windowPool != ForkJoinPool.commonPool()) {
+            windowPool.shutdown();
+        }
+        windowPool = null;
+    }
+
+    /**
+     * Evaluation params for one thread, with a view over each series that is moved along instead of copied
+     */
+    private class EvaluationContext {
+        private final Map<String, Object> params = new HashMap<String, Object>();
+        private final SeriesView[] seriesViews;
+
+        private EvaluationContext(SeriesColumns columns) {
+            List<String> seriesList = columns.getSeriesList();
+            seriesViews = new SeriesView[seriesList.size()];
+            for (int i = 0; i < seriesViews.length; i++) {
+                seriesViews[i] = columns.newView(i);
+                params.put(seriesList.get(i), seriesViews[i]);
+            }
+            params.put("serieslist", seriesList);
+        }
+
+        /**
+         * @return the params with series data up to and including position
+         */
+        private Map<String, Object> moveTo(int position) {
+            params.put("x", xySeriesSet.getTargetSeries().getX(position));
+            for (SeriesView seriesView : seriesViews) {
+                seriesView.setLength(position + 1);
+            }
+            return params;
+        }
+    }
+
+    /**
+     * error totals for a range of the evaluation window
+     */
+    private static class WindowEvaluation {
+        private double totalError = 0d;
+        private int totalPredictions = 0;
+        private int trivialPredictions = 0;
+        private boolean invalid = false;
+        private boolean budgetExceeded = false;
     }
 
 
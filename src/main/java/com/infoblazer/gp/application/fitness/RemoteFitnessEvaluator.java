@@ -0,0 +1,310 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.fitness;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.infoblazer.gp.RunScope;
+import com.infoblazer.gp.application.syntheticdata.SeriesFile;
+import com.infoblazer.gp.evolution.library.LibraryEntries;
+import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Numeric fitness evaluator that keeps selection in this process and sends the children of each generation to worker
+ * processes in batches, one batch per worker, balanced by estimated cost. Select it with fitnessEvaluator=remoteFitnessEvaluator.
+ * <p>
+ * The series are written once to a series file that the workers map read only, so workers on this host or on hosts
+ * sharing the path need no database. Workers are either started here with fitnessWorkerProcesses, or started
+ * separately with fitnessWorkerPort and listed in fitnessWorkers. Single evaluations, charts and predictions run in
+ * this process.
+ */
+@Component
+@Scope(RunScope.NAME)
+public class RemoteFitnessEvaluator extends NumericFitnessEvaluator {
+
+    private final static Logger logger = Logger.getLogger(RemoteFitnessEvaluator.class.getName());
+
+    private static final long CONNECT_TIMEOUT = 120000; //started workers need time to boot
+
+    @Value("${fitnessWorkers:#{null}}") //host:port of running fitness workers, comma separated
+    private String[] fitnessWorkers;
+    @Value("${fitnessWorkerProcesses:#{0}}") //fitness workers to start on this host
+    private int fitnessWorkerProcesses;
+    @Value("${fitnessWorkerBasePort:#{7272}}") //port of the first started worker, the others follow
+    private int fitnessWorkerBasePort;
+    @Value("${seriesFile:#{null}}") //series file shared with the workers, a temporary file if not set
+    private String seriesFile;
+
+    private List<WorkerConnection> workers;
+    private final List<Process> processes = new ArrayList<>();
+    private ExecutorService senders;
+
+    @Override
+    public boolean evaluatesInBatches() {
+        return true;
+    }
+
+    @Override
+    public double[] evaluateFitness(List<ResultProducingProgram> resultProducingPrograms, List<RegimeDetectionProgram> regimeDetectionPrograms,
+                                    Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction,
+                                    ForkJoinPool pool) {
+        List<WorkerConnection> connections = new ArrayList<>(connect());
+        if (connections.isEmpty()) {
+            return super.evaluateFitness(resultProducingPrograms, regimeDetectionPrograms, windowStart, windowEnd, maxDepth, direction, pool);
+        }
+        final double[] fitness = new double[resultProducingPrograms.size()];
+        double[] costs = new double[fitness.length];
+        for (int i = 0; i < fitness.length; i++) {
+            costs[i] = evaluationCost.estimate(resultProducingPrograms.get(i), regimeDetectionPrograms.get(i), windowStart, windowEnd).getCost();
+        }
+        List<List<Integer>> parts = new ArrayList<>();
+        List<WorkerConnection> used = new ArrayList<>();
+        List<Future<?>> sends = new ArrayList<>();
+        List<List<Integer>> assignments = EvaluationScheduler.partition(costs, connections.size());
+        for (int w = 0; w < connections.size(); w++) {
+            final List<Integer> part = assignments.get(w);
+            if (part.isEmpty()) {
+                continue;
+            }
+            final WorkerConnection connection = connections.get(w);
+            List<ResultProducingProgram> partResultPrograms = new ArrayList<>(part.size());
+            List<RegimeDetectionProgram> partRegimePrograms = new ArrayList<>(part.size());
+            for (int index : part) {
+                partResultPrograms.add(resultProducingPrograms.get(index));
+                partRegimePrograms.add(regimeDetectionPrograms.get(index));
+            }
+            final FitnessMessages.Batch batch = batch(partResultPrograms, partRegimePrograms, windowStart, windowEnd, maxDepth, direction);
+            parts.add(part);
+            used.add(connection);
+            sends.add(senders.submit(() -> {
+                double[] evaluated = connection.evaluate(batch);
+                for (int i = 0; i < evaluated.length; i++) {
+                    fitness[part.get(i)] = evaluated[i];
+                }
+            }));
+        }
+        for (int i = 0; i < sends.size(); i++) {
+            try {
+                sends.get(i).get();
+                fitnessEvaluations.addAndGet(parts.get(i).size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for fitness workers", e);
+            } catch (ExecutionException e) {
+                logger.error("Fitness worker failed, evaluating its batch here", e.getCause());
+                drop(used.get(i));
+                for (int j : parts.get(i)) {
+                    fitness[j] = evaluateFitness(resultProducingPrograms.get(j), regimeDetectionPrograms.get(j), windowStart, windowEnd,
+                            maxDepth, direction);
+                }
+            }
+        }
+        return fitness;
+    }
+
+    private synchronized void drop(WorkerConnection connection) {
+        workers.remove(connection);
+        connection.close();
+    }
+
+    private FitnessMessages.Batch batch(List<ResultProducingProgram> resultProducingPrograms, List<RegimeDetectionProgram> regimeDetectionPrograms,
+                                        Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+        FitnessMessages.Batch batch = new FitnessMessages.Batch();
+        batch.windowStart = windowStart;
+        batch.windowEnd = windowEnd;
+        batch.maxDepth = maxDepth;
+        batch.direction = direction;
+        batch.resultProducingPrograms = new ArrayList<>(resultProducingPrograms);
+        batch.regimeDetectionPrograms = new ArrayList<>(regimeDetectionPrograms);
+        //entries are sent with every batch, mutation replaces entries under the same key
+        for (ResultProducingProgram program : resultProducingPrograms) {
+            LibraryEntries.collect(program, resultLibrary, batch.resultEntries);
+        }
+        for (RegimeDetectionProgram program : regimeDetectionPrograms) {
+            if (program != null) {
+                LibraryEntries.collect(program, regimeLibrary, batch.regimeEntries);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Write the series file, start the local workers and connect to all workers, on first use
+     */
+    private synchronized List<WorkerConnection> connect() {
+        if (workers != null) {
+            return workers;
+        }
+        workers = new ArrayList<>();
+        Path path;
+        try {
+            path = seriesFile == null ? Files.createTempFile("gp-series", ".bin") : Paths.get(seriesFile);
+            if (seriesFile == null) {
+                path.toFile().deleteOnExit();
+            }
+            SeriesFile.write(xySeriesSet, path);
+        } catch (IOException e) {
+            logger.error("Couldn't write the series file, evaluating here", e);
+            return workers;
+        }
+        List<String> addresses = new ArrayList<>();
+        if (fitnessWorkers != null) {
+            addresses.addAll(Arrays.asList(fitnessWorkers));
+        }
+        for (int i = 0; i < fitnessWorkerProcesses; i++) {
+            int port = fitnessWorkerBasePort + i;
+            try {
+                processes.add(startWorker(port));
+                addresses.add("localhost:" + port);
+            } catch (IOException e) {
+                logger.error("Couldn't start a fitness worker on port " + port, e);
+            }
+        }
+        for (String address : addresses) {
+            try {
+                workers.add(new WorkerConnection(address, path.toAbsolutePath().toString(), GpRandom.operator("fitnessWorkers").nextLong()));
+            } catch (IOException e) {
+                logger.error("Couldn't connect to fitness worker " + address, e);
+            }
+        }
+        senders = Executors.newFixedThreadPool(Math.max(1, workers.size()));
+        logger.info("Evaluating fitness on " + workers.size() + " workers");
+        return workers;
+    }
+
+    /**
+     * Start this application again as a fitness worker, with the same JVM options and arguments
+     */
+    private Process startWorker(int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!argument.startsWith("-agentlib") && !argument.startsWith("-Xrunjdwp")) { //a debugger port can only be used once
+                command.add(argument);
+            }
+        }
+        String[] launch = System.getProperty("sun.java.command", "").split(" ");
+        if (launch[0].endsWith(".jar")) {
+            command.add("-jar");
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+        }
+        command.addAll(Arrays.asList(launch));
+        command.add("--fitnessWorkerPort=" + port);
+        command.add("--fitnessWorkerSpawned=true");
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (workers != null) {
+            for (WorkerConnection connection : workers) {
+                connection.close();
+            }
+        }
+        if (senders != null) {
+            senders.shutdown();
+        }
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * Connection to one worker, used by one sender at a time
+     */
+    private static class WorkerConnection {
+        private final Socket socket;
+        private final Input input;
+        private final Output output;
+
+        private WorkerConnection(String address, String seriesFile, long seed) throws IOException {
+            String[] hostPort = address.trim().split(":");
+            socket = open(hostPort[0], Integer.parseInt(hostPort[1]));
+            socket.setTcpNoDelay(true);
+            input = new Input(socket.getInputStream());
+            output = new Output(socket.getOutputStream());
+            FitnessMessages.Hello hello = new FitnessMessages.Hello();
+            hello.seriesFile = seriesFile;
+            hello.seed = seed;
+            GpUtils.getKyroInstance().writeClassAndObject(output, hello);
+            output.flush();
+        }
+
+        private static Socket open(String host, int port) throws IOException {
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            while (true) {
+                try {
+                    return new Socket(host, port);
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private double[] evaluate(FitnessMessages.Batch batch) {
+            GpUtils.getKyroInstance().writeClassAndObject(output, batch);
+            output.flush();
+            return ((FitnessMessages.Results) GpUtils.getKyroInstance().readClassAndObject(input)).fitness;
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("Error closing fitness worker connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.fitness;
+
+import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primitive columns of every series in a series set, converted once from the boxed values and shared read only by the
+ * evaluating threads. Single precision columns take a quarter of the memory of the boxed series.
+ */
+class SeriesColumns {
+
+    private final List<String> seriesList;
+    private final Double[][] sources;
+    private final double[][] doubleColumns;
+    private final float[][] floatColumns;
+    private final boolean[][] missing;
+
+    SeriesColumns(XYSeriesSet xySeriesSet, boolean singlePrecision) {
+        seriesList = new ArrayList<>(xySeriesSet.getSeriesList());
+        sources = new Double[seriesList.size()][];
+        doubleColumns = singlePrecision ? null : new double[seriesList.size()][];
+        floatColumns = singlePrecision ? new float[seriesList.size()][] : null;
+        missing = new boolean[seriesList.size()][];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = xySeriesSet.getXYSeries(seriesList.get(i)).getY();
+            missing[i] = SeriesView.toMissing(sources[i]);
+            if (singlePrecision) {
+                floatColumns[i] = SeriesView.toFloatColumn(sources[i]);
+            } else {
+                doubleColumns[i] = SeriesView.toDoubleColumn(sources[i]);
+            }
+        }
+    }
+
+    /**
+     * @return true if these columns were converted from the current series of the set
+     */
+    boolean isFor(XYSeriesSet xySeriesSet) {
+        List<String> currentList = xySeriesSet.getSeriesList();
+        if (!seriesList.equals(currentList)) {
+            return false;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (xySeriesSet.getXYSeries(seriesList.get(i)).getY() != sources[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<String> getSeriesList() {
+        return seriesList;
+    }
+
+    /**
+     * @return a new view over column i, each evaluating thread needs its own
+     */
+    SeriesView newView(int i) {
+        return floatColumns == null ? new SeriesView(doubleColumns[i], missing[i]) : new SeriesView(floatColumns[i], missing[i]);
+    }
+}
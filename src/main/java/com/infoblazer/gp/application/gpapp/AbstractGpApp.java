@@ -25,6 +25,7 @@
 package com.infoblazer.gp.application.gpapp;
 
 import com.infoblazer.gp.application.data.service.MetricsService;
+import com.infoblazer.gp.application.data.service.SeriesCache;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
 import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
 import com.infoblazer.gp.evolution.geneticprogram.AbstractGeneticProgram;
@@ -54,7 +55,10 @@ import java.util.List;
 public abstract class AbstractGpApp implements GpApp {
 
 
-    final XYSeriesSet xySeriesSet = new XYSeriesSet();
+    XYSeriesSet xySeriesSet;
+
+    @Autowired
+    SeriesCache seriesCache;
 
     @Autowired
     private LinearRegressionProgram linearRegressionProgram;
@@ -95,6 +99,8 @@ public abstract class AbstractGpApp implements GpApp {
 
     @Value("${selectionStrategy}")
     private String selectionStrategyName;
+    @Value("${fitnessEvaluator:#{null}}") //bean name of the fitness evaluator, the app's own evaluator if not set
+    private String fitnessEvaluatorName;
 
 
     @Value("${programType}")
@@ -125,7 +131,12 @@ public abstract class AbstractGpApp implements GpApp {
         }
 
 
-        fitnessEvaluator = buildFitnessEvaluator(xySeriesSet);
+        if (fitnessEvaluatorName != null) {
+            fitnessEvaluator = (FitnessEvaluator) context.getBean(fitnessEvaluatorName);
+            fitnessEvaluator.setXySeriesSet(xySeriesSet);
+        } else {
+            fitnessEvaluator = buildFitnessEvaluator(xySeriesSet);
+        }
 
 
 
@@ -29,6 +29,7 @@ import com.infoblazer.gp.application.data.model.Timeseries;
 import com.infoblazer.gp.application.data.model.TimeseriesSet;
 import com.infoblazer.gp.application.data.service.DataService;
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
+import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -52,25 +53,33 @@ public abstract class AbstractMarketGpApp extends AbstractGpApp {
     public final void init() {
 
 
-        TimeseriesSet target = buildTimeSeries(series);
-        if (target.getTimeseries()==null){
-            logger.error("Couldn't not load stock series. Make sure the series code is correct");
-            System.exit(1);
-        }
-        xySeriesSet.setTargetTimeseries(target);
-
-        if (predictorArray != null) {
-            for (String predictorName:predictorArray) {
-                TimeseriesSet predictor = buildTimeSeries(predictorName);
-                xySeriesSet.setTimeseries(predictorName, predictor);
+        xySeriesSet = seriesCache.get(seriesKey(), () -> {
+            XYSeriesSet xySeriesSet = new XYSeriesSet();
+            TimeseriesSet target = buildTimeSeries(series);
+            if (target.getTimeseries() == null) {
+                logger.error("Couldn't not load stock series. Make sure the series code is correct");
+                System.exit(1);
             }
-        }else{
-            xySeriesSet.setTimeseries(series, target);
-        }
+            xySeriesSet.setTargetTimeseries(target);
+            if (predictorArray != null) {
+                for (String predictorName : predictorArray) {
+                    TimeseriesSet predictor = buildTimeSeries(predictorName);
+                    xySeriesSet.setTimeseries(predictorName, predictor);
+                }
+            } else {
+                xySeriesSet.setTimeseries(series, target);
+            }
+            return xySeriesSet;
+        });
+
         super.init();
 
     }       //else can pass in a custom syntechitc series
 
+    private String seriesKey() {
+        return "market:" + series + ":" + (predictorArray == null ? "" : String.join(",", predictorArray));
+    }
+
     private TimeseriesSet buildTimeSeries(String series) {
         ///.n don't normalize
         //.r return series
@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.application.gpapp;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.data.service.DataService;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
 import com.infoblazer.gp.application.fitness.NumericFitnessEvaluator;
@@ -34,6 +35,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 
@@ -41,6 +43,7 @@ import org.springframework.stereotype.Component;
  * Created by David on 5/22/2014.
  */
 @Component
+@Scope(RunScope.NAME)
 @Qualifier("linearRegressionApp")
 public class LinearRegressionApp extends AbstractGpApp {
 
@@ -67,21 +70,25 @@ public class LinearRegressionApp extends AbstractGpApp {
     public final void init() {
 
 
-        XYSeries dbSeries =new DbXYSeries(dataService);
-        String series = target;
-        dbSeries.generate(series);
-        xySeriesSet.setTargetSeries(dbSeries);
+        xySeriesSet = seriesCache.get(seriesKey(), () -> {
+            XYSeriesSet xySeriesSet = new XYSeriesSet();
+            XYSeries dbSeries = new DbXYSeries(dataService);
+            String series = target;
+            dbSeries.generate(series);
+            xySeriesSet.setTargetSeries(dbSeries);
 
-        if (predictorArray != null) {
+            if (predictorArray != null) {
 
-            for (String predictor:predictorArray) {
-                XYSeries predictorseries = new DbXYSeries(dataService);
-                dbSeries.generate(series);
-                xySeriesSet.setXYSeries(predictor, predictorseries);
+                for (String predictor : predictorArray) {
+                    XYSeries predictorseries = new DbXYSeries(dataService);
+                    dbSeries.generate(series);
+                    xySeriesSet.setXYSeries(predictor, predictorseries);
+                }
+            } else {
+                xySeriesSet.setXYSeries(series, dbSeries);
             }
-        }  else{
-            xySeriesSet.setXYSeries(series, dbSeries);
-        }
+            return xySeriesSet;
+        });
 
 
         super.init();
@@ -89,5 +96,9 @@ public class LinearRegressionApp extends AbstractGpApp {
 
     }
 
+    private String seriesKey() {
+        return "db:" + target + ":" + (predictorArray == null ? "" : String.join(",", predictorArray));
+    }
+
 
 }
\ No newline at end of file
@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.application.gpapp;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
 import com.infoblazer.gp.application.fitness.DyforGpFitnessEvaluator;
 import com.infoblazer.gp.application.syntheticdata.XYSeries;
@@ -32,6 +33,7 @@ import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 
@@ -40,6 +42,7 @@ import org.springframework.stereotype.Component;
  * Created by David on 5/22/2014.
  */
 @Component
+@Scope(RunScope.NAME)
 @Qualifier("linearRegressionDyforGp")
 public class LinearRegressionDyforGp extends LinearRegressionApp {
 
@@ -24,11 +24,13 @@
 
 package com.infoblazer.gp.application.gpapp;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
 import com.infoblazer.gp.application.fitness.NumericFitnessEvaluator;
 import com.infoblazer.gp.application.syntheticdata.XYSeriesSet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 
@@ -36,6 +38,7 @@ import org.springframework.stereotype.Component;
  * Created by David on 5/22/2014.
  */
 @Component
+@Scope(RunScope.NAME)
 @Qualifier("marketPredictionApp")
 public class MarketPredictionApp extends AbstractMarketGpApp {
 
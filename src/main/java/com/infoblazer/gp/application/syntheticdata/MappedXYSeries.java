@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.syntheticdata;
+
+import java.nio.DoubleBuffer;
+import java.time.LocalDate;
+
+/**
+ * Read only series over columns of a mapped {@link SeriesFile}. Values are read from the mapping, the boxed arrays
+ * are built on first request.
+ */
+public class MappedXYSeries implements XYSeries {
+
+    private final DoubleBuffer xColumn;
+    private final DoubleBuffer yColumn;
+    private final boolean dateX;
+    private volatile Double[] yVals;
+    private volatile Object[] xVals;
+
+    MappedXYSeries(DoubleBuffer xColumn, DoubleBuffer yColumn, boolean dateX) {
+        this.xColumn = xColumn;
+        this.yColumn = yColumn;
+        this.dateX = dateX;
+    }
+
+    @Override
+    public void generate(String series) {
+        throw new UnsupportedOperationException("Mapped series are read only");
+    }
+
+    @Override
+    public int getLength() {
+        return yColumn.limit();
+    }
+
+    @Override
+    public Object getX(int i) {
+        double x = xColumn.get(i);
+        if (Double.isNaN(x)) {
+            return null;
+        }
+        return dateX ? LocalDate.ofEpochDay((long) x) : Double.valueOf(x);
+    }
+
+    @Override
+    public Double getY(int i) {
+        double y = yColumn.get(i);
+        return Double.isNaN(y) ? null : y;
+    }
+
+    @Override
+    public Double[] getY() {
+        Double[] values = yVals;
+        if (values == null) {
+            values = new Double[getLength()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getY(i);
+            }
+            yVals = values;
+        }
+        return values;
+    }
+
+    @Override
+    public Object[] getX() {
+        Object[] values = xVals;
+        if (values == null) {
+            values = new Object[getLength()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getX(i);
+            }
+            xVals = values;
+        }
+        return values;
+    }
+
+    @Override
+    public void setY(int i, Double val) {
+        throw new UnsupportedOperationException("Mapped series are read only");
+    }
+
+    @Override
+    public void setX(int i, Object val) {
+        throw new UnsupportedOperationException("Mapped series are read only");
+    }
+
+    @Override
+    public void setX(Object[] objects) {
+        throw new UnsupportedOperationException("Mapped series are read only");
+    }
+
+    @Override
+    public void setY(Double[] doubles) {
+        throw new UnsupportedOperationException("Mapped series are read only");
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.application.syntheticdata;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Binary file holding the series of a series set, written once by a master process and mapped read only by fitness
+ * workers instead of each loading the series from the database.
+ * <p>
+ * Layout: magic, version, series count, then for the target and each named series its name, length and whether x holds
+ * dates, followed by the x and y columns as doubles. Null values are stored as NaN, dates as epoch days.
+ */
+public class SeriesFile {
+
+    private static final int MAGIC = 0x47505346; //GPSF
+    private static final int VERSION = 1;
+    private static final String TARGET = "";
+
+    public static void write(XYSeriesSet xySeriesSet, Path path) throws IOException {
+        List<String> seriesList = xySeriesSet.getSeriesList();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile())))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(seriesList.size() + 1);
+            writeHeader(output, TARGET, xySeriesSet.getTargetSeries());
+            for (String series : seriesList) {
+                writeHeader(output, series, xySeriesSet.getXYSeries(series));
+            }
+            writeColumns(output, xySeriesSet.getTargetSeries());
+            for (String series : seriesList) {
+                writeColumns(output, xySeriesSet.getXYSeries(series));
+            }
+        }
+    }
+
+    /**
+     * @return a series set whose series read the mapped file
+     */
+    public static XYSeriesSet map(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //the mapping outlives the channel
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a series file " + path);
+        }
+        int count = buffer.getInt();
+        String[] names = new String[count];
+        int[] lengths = new int[count];
+        boolean[] dateX = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            names[i] = new String(name, "UTF-8");
+            lengths[i] = buffer.getInt();
+            dateX[i] = buffer.get() != 0;
+        }
+        XYSeriesSet xySeriesSet = new XYSeriesSet();
+        int position = buffer.position();
+        for (int i = 0; i < count; i++) {
+            DoubleBuffer xColumn = column(buffer, position, lengths[i]);
+            position += lengths[i] * Double.BYTES;
+            DoubleBuffer yColumn = column(buffer, position, lengths[i]);
+            position += lengths[i] * Double.BYTES;
+            MappedXYSeries series = new MappedXYSeries(xColumn, yColumn, dateX[i]);
+            if (i == 0) {
+                xySeriesSet.setTargetSeries(series);
+            } else {
+                xySeriesSet.setXYSeries(names[i], series);
+            }
+        }
+        return xySeriesSet;
+    }
+
+    private static DoubleBuffer column(ByteBuffer buffer, int position, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position);
+        slice.limit(position + length * Double.BYTES);
+        return slice.slice().asDoubleBuffer();
+    }
+
+    private static void writeHeader(DataOutputStream output, String name, XYSeries series) throws IOException {
+        byte[] bytes = name.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.writeInt(series.getLength());
+        boolean dateX = series.getLength() > 0 && series.getX(0) instanceof LocalDate;
+        output.writeByte(dateX ? 1 : 0);
+    }
+
+    private static void writeColumns(DataOutputStream output, XYSeries series) throws IOException {
+        for (int i = 0; i < series.getLength(); i++) {
+            Object x = series.getX(i);
+            if (x instanceof LocalDate) {
+                output.writeDouble(((LocalDate) x).toEpochDay());
+            } else if (x instanceof Number) {
+                output.writeDouble(((Number) x).doubleValue());
+            } else {
+                output.writeDouble(Double.NaN);
+            }
+        }
+        for (int i = 0; i < series.getLength(); i++) {
+            Double y = series.getY(i);
+            output.writeDouble(y == null ? Double.NaN : y);
+        }
+    }
+}
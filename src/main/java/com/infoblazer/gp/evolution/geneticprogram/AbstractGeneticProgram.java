@@ -25,14 +25,18 @@
 package com.infoblazer.gp.evolution.geneticprogram;
 
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.data.model.FitnessEvaluation;
 import com.infoblazer.gp.application.data.model.Metrics;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.application.data.service.MetricsService;
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
+import com.infoblazer.gp.application.fitness.EvaluationCost;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
-import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.library.LibraryReferences;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
+import com.infoblazer.gp.evolution.linker.ProgramLinker;
 import com.infoblazer.gp.evolution.model.*;
 import com.infoblazer.gp.evolution.primitives.FunctionSet;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
@@ -42,13 +46,24 @@ import com.infoblazer.gp.evolution.primitives.functions.*;
 import com.infoblazer.gp.evolution.primitives.terminals.AbstractTerminal;
 import com.infoblazer.gp.evolution.primitives.terminals.Terminal;
 import com.infoblazer.gp.evolution.selectionstrategy.AbstractSelectionStrategy;
+import com.infoblazer.gp.evolution.selectionstrategy.OffspringEvaluator;
 import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+import com.infoblazer.gp.evolution.utils.EvaluationPool;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 
 /**
@@ -78,9 +93,17 @@ public abstract class AbstractGeneticProgram {
     @Value("${regimeSelection:#{true}}")
     protected Boolean regimeSelection;  // always use reproduction on regimes
 
+    @Value("${approximateRankCheck:#{0}}") //compare approximate and exact ranking every n generations, 0 never
+    private int approximateRankCheck;
 
-    @Value("${gcFrequency:#{1}}")
-    private int gcFrequency;
+    @Value("${pipelineGenerations:#{false}}") //evaluate and save the fittest of a generation in the background while the next one evolves
+    private boolean pipelineGenerations;
+    private ExecutorService recordingStage;
+    private Future<?> recording;
+    private FitnessEvaluation recordedEvaluation; //set by the recording, read once it is done
+
+    @Value("${steadyState:#{false}}") //replace programs as children are evaluated, a generation is population size replacements
+    private boolean steadyState;
 
 
     @Value("${populationSize}")
@@ -123,6 +146,16 @@ public abstract class AbstractGeneticProgram {
     private ResultLibrary resultLibrary;
     @Autowired
     private RegimeLibrary regimeLibrary;
+    private LibraryReferences resultReferences;
+    private LibraryReferences regimeReferences;
+    @Autowired
+    private ProgramLinker programLinker;
+    @Autowired
+    private EvaluationPool evaluationPool;
+    @Autowired
+    private EvaluationCost evaluationCost;
+    @Autowired
+    private IslandModel islandModel;
 
     private GP_TYPES returnType;
     private GrowMethod growMethod = GrowMethod.HALF_HALF; //pass as param
@@ -202,7 +235,8 @@ public abstract class AbstractGeneticProgram {
         RegimeDetectionProgram fittestRegimeDetectionTraining = null;
         while (currentTestingGeneration < testingGenerations && !terminateTraining(fittestTesting)) {
             population = new Population();
-            ResultProducingProgram[] resultProducingPrograms = initializePopulation(functionSet, terminalSet, aritySet, adfArities, series, initialPopulationSize, maxInitDepth, maxSize, numberOfRegimes, returnType, growMethod);
+            ResultProducingProgram[] resultProducingPrograms = initializePopulation(functionSet, terminalSet, aritySet, adfArities, series, initialPopulationSize, maxInitDepth, maxSize, numberOfRegimes, returnType, growMethod,
+                    evaluationPool.getPool());
             population.setResultPopulation(resultProducingPrograms);
             RegimeDetectionProgram[] regimeDetectionPrograms = null;
             if (numberOfRegimes > 1) {
@@ -210,18 +244,18 @@ public abstract class AbstractGeneticProgram {
                     initialRegimePopulationSize = initialPopulationSize;
                 }
                 regimeDetectionPrograms = initializeRegimePopulation(regimeFunctionSet, terminalSet, aritySet, adfArities, series,
-                        initialRegimePopulationSize, maxInitDepth, maxSize, numberOfRegimes, growMethod, regimeSelection);
+                        initialRegimePopulationSize, maxInitDepth, maxSize, numberOfRegimes, growMethod, regimeSelection, evaluationPool.getPool());
             }
             population.setRegimePopulation(regimeDetectionPrograms); //Only allow one regime for regime branch
 
             //random fitness calcs, probably not that important first round
-            Random random = new Random();
+            SplittableRandom random = GpRandom.current();
+            OffspringEvaluator initialEvaluator = new OffspringEvaluator(fitnessEvaluator, evaluationPool.getPool(), startTestPos, endTestPos,
+                    maxDepth, selectionStrategy.getDirection());
             for (int i = 0; i < resultProducingPrograms.length; i++) {
                 ResultProducingProgram resultProducingProgram = resultProducingPrograms[i];
                 RegimeDetectionProgram regimeDetectionProgram = regimeDetectionPrograms == null ? null : regimeDetectionPrograms[random.nextInt(initialRegimePopulationSize)];
-                FitnessEvaluation fitnessEvaluation = fitnessEvaluator.calculateProgramFitness(startTestPos, endTestPos, maxDepth,
-                        resultProducingProgram, regimeDetectionProgram, selectionStrategy.getDirection());
-                resultProducingProgram.setFitness(fitnessEvaluation.getFitness());
+                initialEvaluator.accept(resultProducingProgram, resultProducingProgram, regimeDetectionProgram);
 
             }
 
@@ -229,12 +263,11 @@ public abstract class AbstractGeneticProgram {
                 for (int i = 0; i < regimeDetectionPrograms.length; i++) {
                     ResultProducingProgram resultProducingProgram = resultProducingPrograms[random.nextInt(initialPopulationSize)];
                     RegimeDetectionProgram regimeDetectionProgram = regimeDetectionPrograms == null ? null : regimeDetectionPrograms[i];
-                    FitnessEvaluation fitnessEvaluation = fitnessEvaluator.calculateProgramFitness(startTestPos, endTestPos, maxDepth,
-                            resultProducingProgram, regimeDetectionProgram, selectionStrategy.getDirection());
-                    regimeDetectionProgram.setFitness(fitnessEvaluation.getFitness());
+                    initialEvaluator.accept(regimeDetectionProgram, resultProducingProgram, regimeDetectionProgram);
 
                 }
             }
+            initialEvaluator.complete();
 
 
             generation = 0;
@@ -249,11 +282,17 @@ public abstract class AbstractGeneticProgram {
 
 
             }
+            awaitRecording();
             System.out.println("********************************************");
             printNewFittest("Fittest RP after training ", fittestTraining, true, false);
             printNewFittest("Fittest Regime after training ", fittestRegimeDetectionTraining, true, false);
-            FitnessEvaluation fitnessEvaluation = fitnessEvaluator.calculateProgramFitness(startTestPos, endTestPos, maxDepth, fittestTraining, fittestRegimeDetectionTraining, selectionStrategy.getDirection());
+            //trace path, the testing values are charted below
+            FitnessEvaluation fitnessEvaluation = fitnessEvaluator.evaluate(fittestTraining, fittestRegimeDetectionTraining, startTestPos, endTestPos, maxDepth, selectionStrategy.getDirection());
             double testingFitness = fitnessEvaluation.getFitness();
+            fittestTraining.setFitness(testingFitness);
+            if (fittestRegimeDetectionTraining != null) {
+                fittestRegimeDetectionTraining.setFitness(testingFitness);
+            }
             fittestTesting = compareFittest(fittestTesting, fittestTraining);
             fittestRegimeDetectionTesting = compareRegimeDetection(fittestRegimeDetectionTesting, fittestRegimeDetectionTraining);
             printNewFittest("Fittest RP after testing ", fittestTesting, true, false);
@@ -279,6 +318,7 @@ public abstract class AbstractGeneticProgram {
         System.out.println("populationSize: " + population.getResultPopulation().size());
         System.out.println("Regime populationSize: " + population.getRegimePopulation().size());
         System.out.println("********************************************");
+        islandModel.report(fittestTraining, fittestRegimeDetectionTraining);
 
         Population result = predict(metricsService, metricId, testingGenerations + 1, generation, startTrainPos, endTestPos + 1, end, fittestTraining, fittestRegimeDetectionTraining);
 
@@ -288,21 +328,19 @@ public abstract class AbstractGeneticProgram {
         return result;
     }
 
-    private void collectGarbage(Library library, List<? extends AbstractProgram> programs) {    // do every X generations
-        Set<Integer> libaryInUse = new HashSet<>();
-        for (AbstractProgram program : programs) {
-            List<Primitive> primitives = new ArrayList<Primitive>();
-            AbstractSelectionStrategy.addPrimitivesTyped(primitives, program.getRoot(), AatImpl.class);
-            for (Primitive primitive : primitives) {
-                Aat aat = (Aat) primitive;
-                libaryInUse.add(aat.getLibaryKey());
-                logger.trace("retaining " + aat.getLibaryKey());
-            }
+    /**
+     * Count the library references of the programs that joined the population and release those of the programs that
+     * left, entries nothing references are retired
+     */
+    private void updateLibraryReferences() {
+        if (resultReferences == null) {
+            resultReferences = new LibraryReferences(resultLibrary);
+            regimeReferences = new LibraryReferences(regimeLibrary);
+        }
+        resultReferences.update(population.getResultPopulation());
+        if (population.getRegimePopulation() != null) {
+            regimeReferences.update(population.getRegimePopulation());
         }
-
-        library.retainAll(libaryInUse);
-
-
     }
 
 
@@ -313,6 +351,7 @@ public abstract class AbstractGeneticProgram {
         System.out.println("************* Training Generation " + currentTestingGeneration + "|" + generation + "************************");
         logger.info("Evolving generation " + currentTestingGeneration + "|" + generation);
         Winners winners = train(generation, startTrainPos, endTrainPos, predictedRegime, lastTrainingThisGeneration);
+        Date trainingEnd = new Date();
 
 
         ResultProducingProgram fittestTraining = winners.getResultProducingProgram();
@@ -320,9 +359,11 @@ public abstract class AbstractGeneticProgram {
         //get metrics from population if this is the last round per generation
         Metrics metrics = null;
         Metrics regimeMetrics = null;
+        Map<String, Long> nodeEvaluations = null;
         if (lastTrainingThisGeneration) {
             metrics = this.population.getMetrics();
             regimeMetrics = this.population.getRegimeMetrics();
+            nodeEvaluations = EvaluationCounters.getAndResetByPrimitive();
 
             metrics.setPopulationSize(population.getResultPopulation().size());
             metrics.setLibraryPopulationSize(fitnessEvaluator.getResultLibrary().getSize());
@@ -342,27 +383,148 @@ public abstract class AbstractGeneticProgram {
             }
 
         }
-        System.out.println("populationSize: " + population.getResultPopulation().size());
-        System.out.println("Regime populationSize: " + population.getRegimePopulation().size());
+        int populationSize = population.getResultPopulation().size();
+        int regimePopulationSize = population.getRegimePopulation().size();
+        final Metrics generationMetrics = metrics;
+        final Metrics generationRegimeMetrics = regimeMetrics;
+        final Map<String, Long> generationNodeEvaluations = nodeEvaluations;
+        SplittableRandom recordingRandom = GpRandom.operator("recording").split(); //the evaluation for the record draws from its own stream
+        printGeneration(populationSize, regimePopulationSize, generationMetrics, fittestTraining, fittestRegimeDetectionTraining);
+        if (!pipelineGenerations) {
+            GpRandom.runWith(recordingRandom, () -> {
+                FitnessEvaluation trainingResult = evaluateGeneration(generationMetrics, fittestTraining, fittestRegimeDetectionTraining,
+                        startTrainPos, endTrainPos);
+                drawGeneration(trainingResult);
+                saveGeneration(isPrediction, metricId, generation, currentTestingGeneration, trainingStart, trainingEnd, generationMetrics,
+                        generationRegimeMetrics, generationNodeEvaluations, trainingResult, fittestTraining, fittestRegimeDetectionTraining);
+            });
+            return winners;
+        }
+
+        //the next generation may change the winners' fitness and the library entries they reach while this one is recorded
+        final ResultProducingProgram fittest = GpUtils.getKyroInstance().copy(fittestTraining);
+        final RegimeDetectionProgram fittestRegime = fittestRegimeDetectionTraining == null ? null :
+                GpUtils.getKyroInstance().copy(fittestRegimeDetectionTraining);
+        final int[] keys = LibraryReferences.keys(fittest);
+        final int[] regimeKeys = fittestRegime == null ? new int[0] : LibraryReferences.keys(fittestRegime);
+        resultLibrary.acquire(keys);
+        regimeLibrary.acquire(regimeKeys);
+        awaitRecording();
+        if (recordingStage == null) {
+            recordingStage = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "generation-recording");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        recording = recordingStage.submit(RunScope.inCurrentRun(() -> GpRandom.runWith(recordingRandom, () -> {
+            FitnessEvaluation trainingResult;
+            try {
+                trainingResult = evaluateGeneration(generationMetrics, fittest, fittestRegime, startTrainPos, endTrainPos);
+            } finally {
+                resultLibrary.release(keys);
+                regimeLibrary.release(regimeKeys);
+            }
+            recordedEvaluation = trainingResult; //drawn on the main thread by awaitRecording
+            saveGeneration(isPrediction, metricId, generation, currentTestingGeneration, trainingStart, trainingEnd, generationMetrics,
+                    generationRegimeMetrics, generationNodeEvaluations, trainingResult, fittest, fittestRegime);
+        })));
+        return winners;
+    }
+
+    /**
+     * Print a generation's population sizes, metrics and fittest programs
+     */
+    private void printGeneration(int populationSize, int regimePopulationSize, Metrics metrics,
+                                 ResultProducingProgram fittestTraining, RegimeDetectionProgram fittestRegimeDetectionTraining) {
+        System.out.println("populationSize: " + populationSize);
+        System.out.println("Regime populationSize: " + regimePopulationSize);
+        if (metrics != null && metrics.getNodeBudgetExceeded() != null && metrics.getNodeBudgetExceeded() > 0) {
+            System.out.println("Node budget exceeded: " + metrics.getNodeBudgetExceeded());
+        }
+        if (metrics != null && metrics.getSharedNodeFraction() != null) {
+            System.out.println("Shared subexpression node fraction: " + metrics.getSharedNodeFraction());
+        }
+        if (metrics != null && metrics.getCostEstimateCorrelation() != null) {
+            System.out.println("Evaluation cost estimate correlation: " + metrics.getCostEstimateCorrelation()
+                    + " mean relative error: " + metrics.getCostEstimateError());
+        }
+        if (metrics != null && metrics.getApproximateRankCorrelation() != null) {
+            System.out.println("Approximate fitness rank correlation: " + metrics.getApproximateRankCorrelation());
+        }
 
         printNewFittest("Fittest:", fittestTraining, printTrainingProgram, false);
         System.out.println("Fittest Node Size:" + fittestTraining.getNodeCount());
         System.out.println("Fittest Depth:" + fittestTraining.getDepth());
         printNewFittest("Fittest Regime:", fittestRegimeDetectionTraining, printTrainingProgram, false);
+    }
+
+    /**
+     * Evaluate the fittest programs again over the training window, for the chart and the record
+     */
+    private FitnessEvaluation evaluateGeneration(Metrics metrics, ResultProducingProgram fittestTraining,
+                                                 RegimeDetectionProgram fittestRegimeDetectionTraining, int startTrainPos, int endTrainPos) {
         FitnessEvaluation trainingResult = fitnessEvaluator.evaluate(fittestTraining, fittestRegimeDetectionTraining, startTrainPos, endTrainPos, maxDepth, selectionStrategy.getDirection());
+        if (metrics != null && fitnessEvaluator.isApproximateFitness()) {
+            metrics.setBestFitness(trainingResult.getFitness()); //selection fitness is approximate, report the exact value
+        }
+        return trainingResult;
+    }
+
+    /**
+     * Chart the evaluation of a generation's fittest programs. JFreeChart is not thread safe, this is only called on the
+     * main thread.
+     */
+    private void drawGeneration(FitnessEvaluation trainingResult) {
         fitnessEvaluator.drawTrainingSeries(trainingResult.getXyArray());
-        Date trainingEnd = new Date();
+        if (numberOfRegimes > 1) {
+            fitnessEvaluator.drawTrainingRegimeSeries(trainingResult.getRegimeXyArray());
 
-        if (lastTrainingThisGeneration) {
+        }
+    }
+
+    /**
+     * Save a generation with the evaluation of its fittest programs, when it has metrics
+     */
+    private void saveGeneration(boolean isPrediction, Integer metricId, int generation, int currentTestingGeneration, Date trainingStart,
+                                Date trainingEnd, Metrics metrics, Metrics regimeMetrics, Map<String, Long> nodeEvaluations,
+                                FitnessEvaluation trainingResult, ResultProducingProgram fittestTraining,
+                                RegimeDetectionProgram fittestRegimeDetectionTraining) {
+        if (metrics != null) {
             metricsService.addTraining(isPrediction, metricId, currentTestingGeneration, generation, trainingStart, trainingEnd,
                     trainingResult.getXyArray(), trainingResult.getRegimeXyArray(),
-                    fitnessEvaluator.getTargetSeries(), metrics, regimeMetrics, fittestTraining, fittestRegimeDetectionTraining);
+                    fitnessEvaluator.getTargetSeries(), metrics, regimeMetrics, fittestTraining, fittestRegimeDetectionTraining,
+                    nodeEvaluations);
         }
-        if (numberOfRegimes > 1) {
-            fitnessEvaluator.drawTrainingRegimeSeries(trainingResult.getRegimeXyArray());
+    }
 
+    /**
+     * Wait for the generation being recorded in the background, before anything else saves, and chart its evaluation
+     */
+    protected void awaitRecording() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Recording generation failed", e.getCause());
+        }
+        recording = null;
+        if (recordedEvaluation != null) {
+            drawGeneration(recordedEvaluation);
+            recordedEvaluation = null;
+        }
+    }
+
+    @PreDestroy
+    public void stopRecording() {
+        awaitRecording();
+        if (recordingStage != null) {
+            recordingStage.shutdown();
         }
-        return winners;
     }
 
     protected abstract boolean terminateTraining(ResultProducingProgram program);
@@ -374,20 +536,27 @@ public abstract class AbstractGeneticProgram {
     private Winners train(int generation, int windowStart, int windowEnd, Integer predictedRegime, boolean lastTrainingThisGeneration) {
 
 
-        Population nextGeneration = selectionStrategy.selectionNextGeneration(generation, trainingGenerations, growMethod, population, maxTotalNodes, windowStart, windowEnd, predictedRegime, lastTrainingThisGeneration);
+        Population nextGeneration;
+        if (steadyState) {
+            nextGeneration = selectionStrategy.steadyStateGeneration(generation, trainingGenerations, growMethod, population, windowStart, windowEnd, predictedRegime, lastTrainingThisGeneration);
+        } else {
+            nextGeneration = selectionStrategy.selectionNextGeneration(generation, trainingGenerations, growMethod, population, maxTotalNodes, windowStart, windowEnd, predictedRegime, lastTrainingThisGeneration);
+        }
         Population nextPoulation = buildNextGen(nextGeneration);
         this.population = nextPoulation;
 
-        if (generation % gcFrequency == 0) {
-            if (resultLibrary.getSize() > 0) {
-                collectGarbage(resultLibrary, population.getResultPopulation());
-            }
-            if (regimeLibrary.getSize() > 0) {
-                collectGarbage(regimeLibrary, population.getRegimePopulation());
-            }
+        if (programLinker.selectSuperinstructions()) {
+            System.out.println("Superinstructions: " + programLinker.getSuperinstructions());
         }
 
+        islandModel.migrate(population, resultLibrary, regimeLibrary, selectionStrategy.getDirection());
+        updateLibraryReferences();
+
         Winners winners = findFittest();
+        if (approximateRankCheck > 0 && generation % approximateRankCheck == 0 && fitnessEvaluator.isApproximateFitness()) {
+            population.getMetrics().setApproximateRankCorrelation(fitnessEvaluator.approximateRankCorrelation(population.getResultPopulation(),
+                    winners.getRegimeDetectionProgram(), windowStart, windowEnd, maxDepth, selectionStrategy.getDirection()));
+        }
         return winners;
 
     }
@@ -410,6 +579,11 @@ public abstract class AbstractGeneticProgram {
 
         metrics.setFitnessEvaluations(fitnessEvaluator.getAndResetFitnessEvaluations());
         metrics.setFitnessCalculations(fitnessEvaluator.getAndResetFitnessCalculations());
+        metrics.setNodeBudgetExceeded(fitnessEvaluator.getAndResetNodeBudgetExceeded());
+        metrics.setSharedNodeFraction(programLinker.getAndResetSharedNodeFraction());
+        EvaluationCost.Accuracy costAccuracy = evaluationCost.getAndResetAccuracy();
+        metrics.setCostEstimateCorrelation(costAccuracy.getCorrelation());
+        metrics.setCostEstimateError(costAccuracy.getRelativeError());
 
         Population population = new Population();
         AbstractProgram[] resultProducingPrograms = new ResultProducingProgram[seedPopulation.getRPLength()];
@@ -543,22 +717,12 @@ public abstract class AbstractGeneticProgram {
 
     public static RegimeDetectionProgram[] initializeRegimePopulation(FunctionSet functionSet, TerminalSet terminalSet, Map<String, FunctionSet> aritySet, String[] adfArities,
                                                                       List<String> series, int populationSize,
-                                                                      int maxDepth, int maxSize, int regimes, GrowMethod growMethod, boolean regimeSelection) {
+                                                                      int maxDepth, int maxSize, int regimes, GrowMethod growMethod, boolean regimeSelection,
+                                                                      ForkJoinPool pool) {
         RegimeDetectionProgram[] population = new RegimeDetectionProgram[populationSize];
         logger.info("Generating initial population");
         //initiaize population
-
-
-        GrowMethod currentGrowMethod = growMethod;
-        int added = 0;
-        while (added < populationSize) {
-            if (growMethod == GrowMethod.HALF_HALF) {
-                if (added % 2 == 0) {
-                    currentGrowMethod = GrowMethod.GROW;
-                } else {
-                    currentGrowMethod = GrowMethod.FULL;
-                }
-            }
+        fillPopulation(population, growMethod, pool, currentGrowMethod -> {
             RegimeDetectionProgram program = RegimeDetectionProgram.generateProgram(functionSet, terminalSet, aritySet, adfArities, series, maxDepth,
                     maxSize, currentGrowMethod, regimes, regimeSelection);
             if (logger.isTraceEnabled()) {
@@ -569,55 +733,77 @@ public abstract class AbstractGeneticProgram {
 
 
             int check1Size = AbstractSelectionStrategy.addPrimitives(primitivesTmp, program.getRoot(), null);
-            if (AbstractSelectionStrategy.checkSize(maxDepth, maxSize, check1Size, primitivesTmp.size())) {
-                program.setId(added + 1);
-                population[added] = program;
-                added++;
-            } else {
-                logger.debug("hit size  limit generating program");
-            }
-
-
-        }
+            return AbstractSelectionStrategy.checkSize(maxDepth, maxSize, check1Size, primitivesTmp.size()) ? program : null;
+        });
         return population;
     }
 
     public static ResultProducingProgram[] initializePopulation(FunctionSet functionSet, TerminalSet terminalSet, Map<String, FunctionSet> aritySet, String[] adfArities,
-                                                                List<String> series, int populationSize, int maxDepth, int maxSize, int regimes, GP_TYPES returnType, GrowMethod growMethod) {
+                                                                List<String> series, int populationSize, int maxDepth, int maxSize, int regimes, GP_TYPES returnType, GrowMethod growMethod,
+                                                                ForkJoinPool pool) {
         ResultProducingProgram[] population = new ResultProducingProgram[populationSize];
         logger.info("Generating initial population");
         //initiaize population
-
-
-        GrowMethod currentGrowMethod = growMethod;
-        int added = 0;
-        while (added < populationSize) {
-            if (growMethod == GrowMethod.HALF_HALF) {
-                if (added % 2 == 0) {
-                    currentGrowMethod = GrowMethod.GROW;
-                } else {
-                    currentGrowMethod = GrowMethod.FULL;
-                }
-            }
-
+        fillPopulation(population, growMethod, pool, currentGrowMethod -> {
             ResultProducingProgram program = ResultProducingProgram.generateProgram(functionSet, terminalSet, aritySet, adfArities, series, maxDepth, maxSize, regimes, currentGrowMethod, returnType);
             List<Primitive> primitivesTmp = new ArrayList<Primitive>();
 
 
             int checkDepth = AbstractSelectionStrategy.addPrimitives(primitivesTmp, program.getRoot(), null);
-            if (AbstractSelectionStrategy.checkSize(maxDepth, maxSize, checkDepth, primitivesTmp.size())) {
-                program.setId(added + 1);
-                population[added] = program;
-                added++;
-            } else {
-                logger.debug("hit size  limit generating program");
-            }
+            return AbstractSelectionStrategy.checkSize(maxDepth, maxSize, checkDepth, primitivesTmp.size()) ? program : null;
+        });
 
 
-        }
+        return population;
+    }
 
+    /**
+     * Builds one program, null if it is over the size limits
+     */
+    private interface ProgramGenerator<T extends AbstractProgram> {
+        T generate(GrowMethod growMethod);
+    }
 
-        return population;
+    /**
+     * Fill every slot of the population, on the pool if there is one. Each slot has its own random stream, split from
+     * the current thread's stream in slot order, so the programs are the same whichever thread builds them.
+     * With HALF_HALF even slots are grown with GROW and odd ones with FULL. Ids are the slot number from 1, dyfor uses them.
+     */
+    private static <T extends AbstractProgram> void fillPopulation(final T[] population, final GrowMethod growMethod, ForkJoinPool pool,
+                                                                   final ProgramGenerator<T> generator) {
+        SplittableRandom parent = GpRandom.current();
+        List<ForkJoinTask<?>> slots = new ArrayList<>();
+        for (int slot = 0; slot < population.length; slot++) {
+            final int index = slot;
+            final SplittableRandom random = parent.split();
+            Runnable fill = () -> GpRandom.runWith(random, () -> population[index] = generateSlot(index, growMethod, generator));
+            if (pool == null) {
+                fill.run();
+            } else {
+                slots.add(pool.submit(fill));
+            }
+        }
+        for (ForkJoinTask<?> slot : slots) {
+            slot.join();
+        }
+    }
+
+    private static <T extends AbstractProgram> T generateSlot(int slot, GrowMethod growMethod, ProgramGenerator<T> generator) {
+        GrowMethod currentGrowMethod = growMethod;
+        if (growMethod == GrowMethod.HALF_HALF) {
+            if (slot % 2 == 0) {
+                currentGrowMethod = GrowMethod.GROW;
+            } else {
+                currentGrowMethod = GrowMethod.FULL;
+            }
+        }
+        T program = generator.generate(currentGrowMethod);
+        while (program == null) {
+            logger.debug("hit size  limit generating program");
+            program = generator.generate(currentGrowMethod);
+        }
+        program.setId(slot + 1);
+        return program;
     }
 
 
@@ -204,6 +204,7 @@ public abstract class AbstractPredictionProgram extends AbstractGeneticProgram {
                 lattestResultProducingProgram = winners.getResultProducingProgram();
                 lattestRegimeDetectionProgram = winners.getRegimeDetectionProgram();
             }
+            awaitRecording();
 
 
             if (useAdaptiveTraining) {
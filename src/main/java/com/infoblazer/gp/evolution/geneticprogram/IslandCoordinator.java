@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.geneticprogram;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.infoblazer.gp.application.data.service.MetricsService;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Coordinator of an island model whose islands are separate processes, on this host or others. It waits for the
+ * islands to connect, assigns each its index, seed and migration settings, relays the migrants at each exchange and
+ * records the fittest programs each island reports.
+ * <p>
+ * Start it with islandRole=coordinator, then start each island with islandCoordinator=host:port. Migration works as
+ * with island threads: at each exchange every island waits until all running islands have offered their migrants.
+ */
+@Component
+public class IslandCoordinator {
+
+    private final static Logger logger = Logger.getLogger(IslandCoordinator.class.getName());
+
+    @Value("${islandRole:#{null}}") //coordinator: this process coordinates island processes instead of running the app
+    private String islandRole;
+    @Value("${islandPort:#{7171}}") //port the coordinator listens on
+    private int islandPort;
+    @Value("${islandSeed:#{null}}") //seed of the run, the island seeds and the random topology are derived from it
+    private Long islandSeed;
+    @Value("${islands:#{1}}")
+    private int islands;
+    @Value("${migrationInterval:#{10}}")
+    private int migrationInterval;
+    @Value("${migrants:#{2}}")
+    private int migrants;
+    @Value("${migrationTopology:#{'ring'}}")
+    private String migrationTopology;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    public boolean isCoordinator() {
+        return "coordinator".equals(islandRole);
+    }
+
+    /**
+     * Coordinate one run of the islands, returning when every island has finished. Needs at least two islands, as a
+     * single island has no other to trade migrants with.
+     */
+    public void serve(String applicationName) {
+        if (islands < 2) {
+            logger.error("Island coordinator needs islands of at least 2, got " + islands);
+            return;
+        }
+        long seed = islandSeed == null ? System.nanoTime() : islandSeed;
+        SplittableRandom seeds = new SplittableRandom(seed);
+        metricsService.setApplicationName(applicationName);
+        Integer runId = metricsService.recordNewRun();
+        List<Connection> connections = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(islandPort)) {
+            logger.info("Waiting for " + islands + " islands on port " + islandPort);
+            for (int i = 0; i < islands; i++) {
+                Connection connection = new Connection(i, server.accept());
+                IslandMessages.Assignment assignment = new IslandMessages.Assignment();
+                assignment.island = i;
+                assignment.islands = islands;
+                assignment.seed = seeds.nextLong();
+                assignment.migrationInterval = migrationInterval;
+                assignment.migrants = migrants;
+                connection.write(assignment);
+                connections.add(connection);
+            }
+
+            int running = islands;
+            for (int exchange = 0; running > 0; exchange++) {
+                IslandMessages.Offer[] offers = new IslandMessages.Offer[islands];
+                for (Connection connection : connections) {
+                    if (connection.running) {
+                        offers[connection.island] = nextOffer(connection, runId);
+                        if (!connection.running) {
+                            running--;
+                        } else if (offers[connection.island].exchange != exchange) {
+                            logger.warn("Island " + connection.island + " offered for exchange " + offers[connection.island].exchange
+                                    + " during exchange " + exchange);
+                        }
+                    }
+                }
+                for (Connection connection : connections) {
+                    if (offers[connection.island] != null) {
+                        IslandMessages.Offer source = offers[IslandModel.source(migrationTopology, seed, islands, connection.island, exchange)];
+                        IslandMessages.Arrivals arrivals = new IslandMessages.Arrivals();
+                        arrivals.emigrants = source == null ? null : source.emigrants;
+                        connection.write(arrivals);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Island coordinator failed", e);
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        if (runId != null) {
+            metricsService.endRun(runId);
+        }
+    }
+
+    /**
+     * @return the island's next offer, recording any result it reports first. null when the island has finished
+     */
+    private IslandMessages.Offer nextOffer(Connection connection, Integer runId) {
+        while (true) {
+            Object message;
+            try {
+                message = GpUtils.getKyroInstance().readClassAndObject(connection.input);
+            } catch (KryoException e) {
+                logger.error("Lost island " + connection.island, e);
+                connection.running = false;
+                return null;
+            }
+            if (message instanceof IslandMessages.Offer) {
+                return (IslandMessages.Offer) message;
+            } else if (message instanceof IslandMessages.Result) {
+                IslandMessages.Result result = (IslandMessages.Result) message;
+                logger.info("Island " + result.island + " fittest " + result.fitness + ": " + result.fittestProgram);
+                metricsService.addIslandResult(runId, result.island, result.fitness, result.fittestProgram,
+                        result.regimeFitness, result.fittestRegimeProgram);
+            } else {
+                connection.running = false;
+                return null;
+            }
+        }
+    }
+
+    private static class Connection {
+        private final int island;
+        private final Socket socket;
+        private final Output output;
+        private final Input input;
+        private boolean running = true;
+
+        private Connection(int island, Socket socket) throws IOException {
+            this.island = island;
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            output = new Output(socket.getOutputStream());
+            input = new Input(socket.getInputStream());
+        }
+
+        private void write(Object message) {
+            GpUtils.getKyroInstance().writeClassAndObject(output, message);
+            output.flush();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("Error closing island " + island, e);
+            }
+        }
+    }
+}
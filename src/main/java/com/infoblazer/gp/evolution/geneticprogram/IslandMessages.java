@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.geneticprogram;
+
+/**
+ * Messages between island processes and the {@link IslandCoordinator}, written with Kryo
+ */
+class IslandMessages {
+
+    /**
+     * coordinator to island on connect
+     */
+    static class Assignment {
+        int island;
+        int islands;
+        long seed;
+        int migrationInterval;
+        int migrants;
+    }
+
+    /**
+     * island to coordinator at each migration
+     */
+    static class Offer {
+        int exchange;
+        Emigrants emigrants;
+    }
+
+    /**
+     * coordinator to island, the offer of the source island. emigrants is null if the source has finished
+     */
+    static class Arrivals {
+        Emigrants emigrants;
+    }
+
+    /**
+     * island to coordinator after testing, the island keeps running
+     */
+    static class Result {
+        int island;
+        Double fitness;
+        String fittestProgram;
+        Double regimeFitness;
+        String fittestRegimeProgram;
+    }
+
+    /**
+     * island to coordinator at the end of its run
+     */
+    static class Done {
+        int island;
+    }
+}
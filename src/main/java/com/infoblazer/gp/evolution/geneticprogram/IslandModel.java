@@ -0,0 +1,337 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.geneticprogram;
+
+import com.infoblazer.gp.RunScope;
+import com.infoblazer.gp.application.gpapp.GpApp;
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.library.LibraryEntries;
+import com.infoblazer.gp.evolution.model.AbstractProgram;
+import com.infoblazer.gp.evolution.model.Population;
+import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Island model. Each island is a complete run of the app in its own {@link RunScope}, so it has its own populations,
+ * AAT libraries, fitness evaluator and selection strategy. Islands are threads of this process, or separate processes
+ * connected to an {@link IslandCoordinator}. Every migrationInterval generations each island sends copies of its top
+ * programs to one other island, where they replace the worst. Migrants take copies of the library entries their AATs
+ * reach, which are added to the receiving island's library.
+ */
+@Component
+public class IslandModel {
+
+    private final static Logger logger = Logger.getLogger(IslandModel.class.getName());
+
+    @Value("${islands:#{1}}") //number of islands, 1 runs the app without islands
+    private int islands;
+    @Value("${migrationInterval:#{10}}") //generations between migrations
+    private int migrationInterval;
+    @Value("${migrants:#{2}}") //programs sent by each island per migration
+    private int migrants;
+    @Value("${migrationTopology:#{'ring'}}") //ring: island i sends to i+1. random: each island receives from a random other island
+    private String migrationTopology;
+    @Value("${islandCoordinator:#{null}}") //host:port of the island coordinator, runs this process as one of its islands
+    private String islandCoordinator;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private final ThreadLocal<Island> currentIsland = new ThreadLocal<Island>();
+
+    public boolean isEnabled() {
+        return islands > 1 && !isRemote();
+    }
+
+    public boolean isRemote() {
+        return islandCoordinator != null;
+    }
+
+    /**
+     * Run the app on every island and wait for all of them to finish
+     */
+    public void run(final String applicationName) {
+        final Archipelago archipelago = new Archipelago(islands, migrationTopology);
+        ExecutorService executor = Executors.newFixedThreadPool(islands);
+        List<Future<?>> runs = new ArrayList<>();
+        SplittableRandom parent = GpRandom.current();
+        for (int i = 0; i < islands; i++) {
+            final Island island = new Island(i, migrationInterval, migrants, archipelago);
+            final SplittableRandom random = parent.split();
+            runs.add(executor.submit(() -> GpRandom.runWith(random, () -> runIsland(applicationName, island))));
+        }
+        executor.shutdown();
+        //join every island, so the trial does not go on while some still run
+        int failed = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            try {
+                runs.get(i).get();
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Island " + i + " failed", e.getCause());
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            logger.error(failed + " of " + islands + " islands failed");
+        }
+    }
+
+    /**
+     * Run the app as one island of the coordinator, with the seed and migration settings it assigns
+     */
+    public void runRemote(String applicationName) {
+        RemoteIsland remote;
+        try {
+            remote = new RemoteIsland(islandCoordinator);
+        } catch (IOException e) {
+            logger.error("Couldn't connect to island coordinator " + islandCoordinator, e);
+            return;
+        }
+        IslandMessages.Assignment assignment = remote.getAssignment();
+        Island island = new Island(assignment.island, assignment.migrationInterval, assignment.migrants, remote);
+        GpRandom.runWith(new SplittableRandom(assignment.seed), () -> runIsland(applicationName, island));
+    }
+
+    private void runIsland(String applicationName, Island island) {
+        currentIsland.set(island);
+        try {
+            RunScope.run("island-" + island.index, () -> {
+                GpApp app = (GpApp) context.getBean(applicationName);
+                app.init();
+                app.runApp();
+            });
+        } finally {
+            currentIsland.remove();
+            island.exchange.leave(island.index); //islands still running stop waiting for this one
+        }
+    }
+
+    /**
+     * Called by the genetic program after each generation. Outside an island run, or between migrations, does nothing.
+     */
+    void migrate(Population population, Library resultLibrary, Library regimeLibrary, SelectionStrategy.Direction direction) {
+        Island island = currentIsland.get();
+        if (island == null || ++island.generations % island.migrationInterval != 0) {
+            return;
+        }
+        Emigrants emigrants = new Emigrants();
+        emigrants.resultPrograms = emigrate(population.getResultPopulation(), island.migrants, resultLibrary, emigrants.resultEntries, direction);
+        emigrants.regimePrograms = emigrate(population.getRegimePopulation(), island.migrants, regimeLibrary, emigrants.regimeEntries, direction);
+
+        Emigrants arrivals = island.exchange.exchange(island.index, island.exchanges++, emigrants);
+        if (arrivals != null) {
+            immigrate(population.getResultPopulation(), arrivals.resultPrograms, arrivals.resultEntries, resultLibrary, direction);
+            immigrate(population.getRegimePopulation(), arrivals.regimePrograms, arrivals.regimeEntries, regimeLibrary, direction);
+        }
+    }
+
+    /**
+     * Called by the genetic program with its fittest programs after testing
+     */
+    void report(ResultProducingProgram fittest, RegimeDetectionProgram fittestRegime) {
+        Island island = currentIsland.get();
+        if (island != null) {
+            island.exchange.report(island.index, fittest, fittestRegime);
+        }
+    }
+
+    /**
+     * @return the island whose migrants island receives at the exchange
+     */
+    static int source(String topology, long seed, int islands, int island, int exchange) {
+        if ("random".equals(topology)) {
+            //every island derives the same choice from the seed, exchange and island
+            SplittableRandom random = new SplittableRandom(seed + exchange * (long) islands + island);
+            return (island + 1 + random.nextInt(islands - 1)) % islands;
+        }
+        return (island + islands - 1) % islands;
+    }
+
+    /**
+     * @return copies of the fittest programs, with the library entries they reach copied into entries
+     */
+    private <T extends AbstractProgram> List<T> emigrate(List<T> programs, int migrants, Library library, Map<Integer, Primitive[]> entries,
+                                                         SelectionStrategy.Direction direction) {
+        List<T> result = new ArrayList<>();
+        if (programs == null) {
+            return result;
+        }
+        Map<Integer, Primitive[]> reached = new HashMap<>();
+        for (Integer index : rank(programs, direction).subList(0, Math.min(migrants, programs.size()))) {
+            T copy = GpUtils.getKyroInstance().copy(programs.get(index));
+            LibraryEntries.collect(copy, library, reached);
+            result.add(copy);
+        }
+        for (Map.Entry<Integer, Primitive[]> entry : reached.entrySet()) {
+            entries.put(entry.getKey(), GpUtils.getKyroInstance().copy(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Add the migrants' library entries under new keys and replace the worst programs with the migrants
+     */
+    private <T extends AbstractProgram> void immigrate(List<T> programs, List<T> arrivals, Map<Integer, Primitive[]> entries,
+                                                       Library library, SelectionStrategy.Direction direction) {
+        if (programs == null || arrivals.isEmpty()) {
+            return;
+        }
+        Map<Integer, Primitive[]> local = new HashMap<>();
+        for (Map.Entry<Integer, Primitive[]> entry : entries.entrySet()) {
+            local.put(entry.getKey(), GpUtils.getKyroInstance().copy(entry.getValue()));
+        }
+        Map<Integer, Integer> keys = library.addAll(local);
+        List<Integer> ranked = rank(programs, direction);
+        int replaced = 0;
+        for (T migrant : arrivals) {
+            if (replaced >= programs.size()) {
+                break;
+            }
+            migrant = GpUtils.getKyroInstance().copy(migrant); //islands of a random topology may receive the same offer
+            List<AatImpl> aats = LibraryEntries.findAats(migrant);
+            int[] migrantKeys = new int[aats.size()];
+            for (int i = 0; i < migrantKeys.length; i++) {
+                AatImpl aat = aats.get(i);
+                Integer key = keys.get(aat.getLibaryKey());
+                if (key != null) {
+                    aat.setLibaryKey(key);
+                }
+                migrantKeys[i] = aat.getLibaryKey();
+            }
+            migrant.setLibraryKeys(migrantKeys);
+            int worst = ranked.get(ranked.size() - 1 - replaced);
+            migrant.setId(programs.get(worst).getId()); //dyfor assigns windows by id
+            programs.set(worst, migrant);
+            replaced++;
+        }
+        logger.debug("Island " + currentIsland.get().index + " received " + replaced + " migrants");
+    }
+
+    /**
+     * @return indexes of the programs, fittest first. Programs without a valid fitness are last
+     */
+    private static List<Integer> rank(List<? extends AbstractProgram> programs, SelectionStrategy.Direction direction) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < programs.size(); i++) {
+            indexes.add(i);
+        }
+        indexes.sort(Comparator.comparingDouble(i -> rankKey(programs.get(i), direction)));
+        return indexes;
+    }
+
+    private static double rankKey(AbstractProgram program, SelectionStrategy.Direction direction) {
+        Double fitness = program.getFitness();
+        if (fitness == null || Double.isNaN(fitness) || Double.isInfinite(fitness)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return direction == SelectionStrategy.Direction.ASCENDING ? fitness : -fitness;
+    }
+
+    /**
+     * How an island trades migrants with the others
+     */
+    interface Exchange {
+        /**
+         * offer the island's emigrants and wait for the exchange
+         *
+         * @return the migrants the island receives, null if none
+         */
+        Emigrants exchange(int island, int exchange, Emigrants emigrants);
+
+        void report(int island, ResultProducingProgram fittest, RegimeDetectionProgram fittestRegime);
+
+        void leave(int island);
+    }
+
+    private static class Island {
+        private final int index;
+        private final int migrationInterval;
+        private final int migrants;
+        private final Exchange exchange;
+        private int generations = 0;
+        private int exchanges = 0;
+
+        private Island(int index, int migrationInterval, int migrants, Exchange exchange) {
+            this.index = index;
+            this.migrationInterval = migrationInterval;
+            this.migrants = migrants;
+            this.exchange = exchange;
+        }
+    }
+
+    /**
+     * Exchange between the island threads of one run, so trials running at the same time each migrate among their
+     * own islands
+     */
+    private static class Archipelago implements Exchange {
+        private final int islands;
+        private final String topology;
+        private final Phaser phaser;
+        private final Map<Integer, Emigrants[]> offers = new ConcurrentHashMap<>();
+        private final long topologySeed = GpRandom.current().nextLong();
+
+        private Archipelago(int islands, String topology) {
+            this.islands = islands;
+            this.topology = topology;
+            phaser = new Phaser(islands);
+        }
+
+        @Override
+        public Emigrants exchange(int island, int exchange, Emigrants emigrants) {
+            offers.computeIfAbsent(exchange, e -> new Emigrants[islands])[island] = emigrants;
+            phaser.arriveAndAwaitAdvance();
+            Emigrants arrivals = offers.get(exchange)[source(topology, topologySeed, islands, island, exchange)];
+            offers.remove(exchange - 1); //every island has read the previous exchange before arriving at this one
+            return arrivals;
+        }
+
+        @Override
+        public void report(int island, ResultProducingProgram fittest, RegimeDetectionProgram fittestRegime) {
+        }
+
+        @Override
+        public void leave(int island) {
+            phaser.arriveAndDeregister();
+        }
+    }
+}
@@ -24,17 +24,20 @@
 
 package com.infoblazer.gp.evolution.geneticprogram;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.data.service.MetricsService;
 import com.infoblazer.gp.evolution.model.Population;
 import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
 import com.infoblazer.gp.evolution.model.ResultProducingProgram;
 import org.apache.log4j.Logger;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 /**
  * Created by David on 5/9/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class LinearRegressionProgram extends AbstractGeneticProgram {
     private final static Logger logger = Logger.getLogger(LinearRegressionProgram.class.getName());
 
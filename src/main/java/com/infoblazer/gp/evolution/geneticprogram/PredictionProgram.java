@@ -24,17 +24,20 @@
 
 package com.infoblazer.gp.evolution.geneticprogram;
 
-import com.infoblazer.gp.application.data.model.FitnessEvaluation;
+import com.infoblazer.gp.RunScope;
+import com.infoblazer.gp.application.data.model.PointPrediction;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
 import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
 import com.infoblazer.gp.evolution.model.ResultProducingProgram;
 import org.apache.log4j.Logger;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 /**
  * Created by David on 5/9/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class PredictionProgram extends AbstractPredictionProgram {
 
 
@@ -48,9 +51,9 @@ public class PredictionProgram extends AbstractPredictionProgram {
     public Double predict(PredictionState predictionState, ResultProducingProgram program, RegimeDetectionProgram regimeDetectionProgram,
                              int startPos, int predictionPos, FitnessEvaluator evaluator) {
 
-        FitnessEvaluation result = evaluator.evaluate(program, regimeDetectionProgram,startPos, predictionPos,maxDepth,selectionStrategy.getDirection());
-        predictionState.setRegime(result.getRegimeXyArray().getY(predictionPos));
-        return result.getXyArray().getY(predictionPos);
+        PointPrediction result = evaluator.predictAt(program, regimeDetectionProgram, predictionPos, maxDepth);
+        predictionState.setRegime(result.hasRegime() ? Double.valueOf(result.getRegime()) : null);
+        return result.isValid() ? result.getPrediction() : null;
 
     }
 
@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.geneticprogram;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Island side of the connection to the {@link IslandCoordinator}. All calls come from the thread running the island.
+ */
+class RemoteIsland implements IslandModel.Exchange {
+
+    private final static Logger logger = Logger.getLogger(RemoteIsland.class.getName());
+
+    private final Socket socket;
+    private final Output output;
+    private final Input input;
+    private final IslandMessages.Assignment assignment;
+
+    /**
+     * @param coordinator host:port of the coordinator
+     */
+    RemoteIsland(String coordinator) throws IOException {
+        String[] address = coordinator.split(":");
+        socket = new Socket(address[0], Integer.parseInt(address[1]));
+        socket.setTcpNoDelay(true);
+        output = new Output(socket.getOutputStream());
+        input = new Input(socket.getInputStream());
+        assignment = (IslandMessages.Assignment) GpUtils.getKyroInstance().readClassAndObject(input);
+        logger.info("Connected to " + coordinator + " as island " + assignment.island + " of " + assignment.islands);
+    }
+
+    IslandMessages.Assignment getAssignment() {
+        return assignment;
+    }
+
+    @Override
+    public Emigrants exchange(int island, int exchange, Emigrants emigrants) {
+        IslandMessages.Offer offer = new IslandMessages.Offer();
+        offer.exchange = exchange;
+        offer.emigrants = emigrants;
+        write(offer);
+        return ((IslandMessages.Arrivals) GpUtils.getKyroInstance().readClassAndObject(input)).emigrants;
+    }
+
+    @Override
+    public void report(int island, ResultProducingProgram fittest, RegimeDetectionProgram fittestRegime) {
+        IslandMessages.Result result = new IslandMessages.Result();
+        result.island = island;
+        if (fittest != null) {
+            result.fitness = fittest.getFitness();
+            result.fittestProgram = fittest.asLanguageString(100);
+        }
+        if (fittestRegime != null) {
+            result.regimeFitness = fittestRegime.getFitness();
+            result.fittestRegimeProgram = fittestRegime.asLanguageString(100);
+        }
+        write(result);
+    }
+
+    @Override
+    public void leave(int island) {
+        IslandMessages.Done done = new IslandMessages.Done();
+        done.island = island;
+        try {
+            write(done);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("Error closing coordinator connection", e);
+            }
+        }
+    }
+
+    private void write(Object message) {
+        GpUtils.getKyroInstance().writeClassAndObject(output, message);
+        output.flush();
+    }
+}
@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.evolution.library;
 
+import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.functions.Aat;
 import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
@@ -31,40 +32,233 @@ import com.infoblazer.gp.evolution.selectionstrategy.AbstractSelectionStrategy;
 import org.apache.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * User: davidm
  * Date: 10/15/2015
  * Time: 11:19 AM
+ * <p>
+ * Safe for concurrent use. Lookups read a concurrent map without locking. An entry is never modified in place,
+ * setPrimitive publishes a new array so a reader sees either the old or the new version. replacePrimitive publishes only
+ * over the version a copy was taken from, so concurrent operators editing the same entry can't lose each other's edits.
+ * A task can instead collect its changes with collect and have them published later, in a fixed order.
+ * <p>
+ * Entries are reference counted, by the programs of the population and by other entries. Children produced during a
+ * generation hold keys that are not counted until they join the population, so an entry whose count drops to zero is
+ * only retired by the next releaseUnreferenced, once the new population is counted. Nothing a pending child can reach
+ * is retired before then. Evaluations enter the current epoch while they run and retiring starts a new epoch. A retired
+ * entry is removed once no evaluation from its epoch or an earlier one is still running.
  */
 public class AbstractLibrary implements Library {
     private final static Logger logger = Logger.getLogger(AbstractLibrary.class.getName());
 
-    protected Map<Integer, Primitive[]> library = new HashMap<>();
+    protected Map<Integer, Primitive[]> library = new ConcurrentHashMap<>();
 
 
     private AtomicInteger counter = new AtomicInteger(0);
 
+    private final AtomicLong epoch = new AtomicLong(0);
+    private final Map<Long, AtomicInteger> readers = new ConcurrentHashMap<>(); //evaluations running per epoch
+    private final Queue<Retired> retired = new ConcurrentLinkedQueue<>();
+    private final Set<Integer> retiredIds = ConcurrentHashMap.newKeySet();
+
+    private final Map<Integer, AtomicInteger> references = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> entryKeys = new ConcurrentHashMap<>(); //keys each entry references
+    private final ThreadLocal<LibraryEdits> collecting = new ThreadLocal<>();
+    private final AtomicInteger collectors = new AtomicInteger(); //threads collecting, lookups skip the thread local without any
+
+    private final Queue<Integer> unreferenced = new ConcurrentLinkedQueue<>(); //added or dropped to zero since the last releaseUnreferenced
+
     public Integer add(Primitive[] primitives) {
-        int id = counter.addAndGet(1);
+        LibraryEdits edits = collecting();
+        int id = edits == null ? counter.addAndGet(1) : edits.add(primitives);
         for (Primitive primitive : primitives) {
             primitive.setId(id);
         }
-        library.put(id, primitives);
+        if (edits == null) {
+            put(id, primitives);
+            acquire(entryKeys.get(id));
+        }
         return id;
 
     }
 
-    public void setPrimitive(Integer regime, Primitive primitive, Integer id) {
-        Primitive[] primitives = library.get(id);
-        primitives[regime] = primitive;
+    public Map<Integer, Integer> addAll(Map<Integer, Primitive[]> entries) {
+        Map<Integer, Integer> keys = new HashMap<>();
+        for (Integer key : entries.keySet()) {
+            keys.put(key, counter.addAndGet(1));
+        }
+        for (Map.Entry<Integer, Primitive[]> entry : entries.entrySet()) {
+            Integer id = keys.get(entry.getKey());
+            for (Primitive primitive : entry.getValue()) {
+                primitive.setId(id);
+                List<Primitive> aats = new ArrayList<>();
+                AbstractSelectionStrategy.addPrimitivesTyped(aats, primitive, AatImpl.class);
+                for (Primitive aat : aats) {
+                    Integer key = keys.get(((AatImpl) aat).getLibaryKey());
+                    if (key != null) {
+                        ((AatImpl) aat).setLibaryKey(key);
+                    }
+                }
+            }
+            put(id, entry.getValue());
+        }
+        for (Integer id : keys.values()) { //all entries are in place before they count each other
+            acquire(entryKeys.get(id));
+        }
+        return keys;
+    }
+
+    private void put(Integer id, Primitive[] primitives) {
+        references.put(id, new AtomicInteger());
+        entryKeys.put(id, findKeys(primitives));
         library.put(id, primitives);
+        unreferenced.add(id);
+    }
+
+    private static int[] findKeys(Primitive[] primitives) {
+        List<Primitive> aats = new ArrayList<>();
+        for (Primitive primitive : primitives) {
+            AbstractSelectionStrategy.addPrimitivesTyped(aats, primitive, AatImpl.class);
+        }
+        int[] keys = new int[aats.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((Aat) aats.get(i)).getLibaryKey();
+        }
+        return keys;
+    }
+
+    /**
+     * Replace the contents with entries under their own keys, for a library standing in for another process's library.
+     * Not for use while evaluations are running.
+     */
+    public void mirror(Map<Integer, Primitive[]> entries) {
+        library.clear();
+        retired.clear();
+        retiredIds.clear();
+        references.clear();
+        entryKeys.clear();
+        unreferenced.clear();
+        library.putAll(entries);
+    }
+
+    public void setPrimitive(Integer regime, Primitive primitive, Integer id) {
+        publish(regime, null, primitive, id);
+    }
+
+    public boolean replacePrimitive(Integer regime, Primitive expected, Primitive primitive, Integer id) {
+        return publish(regime, expected, primitive, id);
+    }
+
+    /**
+     * Publish a new version of an entry, if its primitive for the regime is still the expected one when expected is set.
+     * The entry's keys change under the same lock as its version, so concurrent writers leave them matching.
+     */
+    private boolean publish(Integer regime, Primitive expected, Primitive primitive, Integer id) {
+        LibraryEdits edits = collecting();
+        if (edits != null) {
+            Primitive[] primitives = getPrimitiveById(id);
+            if (primitives == null || (expected != null && primitives[regime] != expected)) {
+                return false;
+            }
+            Primitive[] version = primitives.clone();
+            version[regime] = primitive;
+            edits.edit(id, regime, expected, primitive, version);
+            return true;
+        }
+        boolean[] replaced = new boolean[1];
+        int[][] previous = new int[1][];
+        library.computeIfPresent(id, (key, primitives) -> {
+            if (expected != null && primitives[regime] != expected) {
+                return primitives;
+            }
+            Primitive[] version = primitives.clone();
+            version[regime] = primitive;
+            if (references.containsKey(id)) {
+                int[] keys = findKeys(version);
+                acquire(keys);
+                previous[0] = entryKeys.put(id, keys);
+            }
+            replaced[0] = true;
+            return version;
+        });
+        if (previous[0] != null) {
+            release(previous[0]);
+        }
+        return replaced[0];
+    }
+
+    @Override
+    public void collect(LibraryEdits edits, Runnable task) {
+        LibraryEdits previous = collecting.get();
+        collecting.set(edits);
+        collectors.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            collectors.decrementAndGet();
+            collecting.set(previous);
+        }
+    }
+
+    @Override
+    public void publish(LibraryEdits edits, List<? extends AbstractProgram> programs) {
+        Map<Integer, Integer> keys = new HashMap<>(); //provisional key to key
+        for (LibraryEdits.Change change : edits.getChanges()) {
+            if (change.added != null) {
+                for (Primitive primitive : change.added) {
+                    rekey(primitive, keys);
+                }
+                keys.put(change.id, add(change.added));
+            } else {
+                Integer id = keys.getOrDefault(change.id, change.id);
+                rekey(change.primitive, keys);
+                change.primitive.setId(id);
+                if (!publish(change.regime, change.expected, change.primitive, id)) {
+                    logger.debug("Skipping edit of library entry " + id + ", changed by an earlier task");
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            for (AbstractProgram program : programs) {
+                for (AatImpl aat : LibraryEntries.findAats(program)) {
+                    Integer key = keys.get(aat.getLibaryKey());
+                    if (key != null) {
+                        aat.setLibaryKey(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void rekey(Primitive primitive, Map<Integer, Integer> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Primitive> aats = new ArrayList<>();
+        AbstractSelectionStrategy.addPrimitivesTyped(aats, primitive, AatImpl.class);
+        for (Primitive aat : aats) {
+            Integer key = keys.get(((AatImpl) aat).getLibaryKey());
+            if (key != null) {
+                ((AatImpl) aat).setLibaryKey(key);
+            }
+        }
+    }
 
+    private LibraryEdits collecting() {
+        return collectors.get() == 0 ? null : collecting.get();
     }
 
     public Primitive[] getPrimitiveById(Integer id) {
-        Primitive[] primitives = library.get(id);
+        LibraryEdits edits = collecting();
+        Primitive[] primitives = edits == null ? null : edits.get(id);
+        if (primitives == null) {
+            primitives = library.get(id);
+        }
         if (primitives == null) {
             logger.error("Found null looking for library id " + id);
         }
@@ -73,41 +267,115 @@ public class AbstractLibrary implements Library {
 
     @Override
     public Integer getSize() {
-        return library.size();
+        return library.size() - retiredIds.size();
     }
 
     @Override
+    public long enterEpoch() {
+        while (true) {
+            long current = epoch.get();
+            AtomicInteger count = readers.computeIfAbsent(current, e -> new AtomicInteger());
+            count.incrementAndGet();
+            if (epoch.get() == current && readers.get(current) == count) {
+                return current;
+            }
+            count.decrementAndGet(); //a new epoch started meanwhile, join that one
+        }
+    }
+
+    @Override
+    public void exitEpoch(long readerEpoch) {
+        AtomicInteger count = readers.get(readerEpoch);
+        if (count.decrementAndGet() == 0 && readerEpoch < epoch.get()) {
+            reclaim();
+        }
+    }
+
     /**
-     * remove any library functions not in list and not used by other library functions
+     * Remove the retired entries no running evaluation can still reach
      */
-    public void retainAll(Set<Integer> libaryInUse) {
-        Set<Integer> remove = new HashSet<>();
-        Set<Integer> doNotRemove = new HashSet<>(); //other libraries
-        for (Map.Entry<Integer, Primitive[]> entry : library.entrySet()) {
-            if (!libaryInUse.contains(entry.getKey())) {
-                remove.add(entry.getKey());
+    private synchronized void reclaim() {
+        long current = epoch.get();
+        long oldestActive = current;
+        for (Map.Entry<Long, AtomicInteger> entry : readers.entrySet()) {
+            if (entry.getKey() < current && entry.getValue().get() == 0) {
+                readers.remove(entry.getKey(), entry.getValue());
+            } else if (entry.getKey() < oldestActive) {
+                oldestActive = entry.getKey();
             }
-            // this is only relevant if libraries can contain aat's . may need to failsafe evaluate if so to avoid infinite loop
-            List<Primitive> primitives = new ArrayList<>();
-            Primitive[] libaryPrimitives = entry.getValue();
-            for (int i = 0; i < libaryPrimitives.length; i++) {
-                AbstractSelectionStrategy.addPrimitivesTyped(primitives, libaryPrimitives[i], AatImpl.class);
-                for (Primitive primitive : primitives) {
-                    Aat aat = (Aat) primitive;
-                    doNotRemove.add(aat.getLibaryKey());
-                    logger.trace("retaining used in Library " + aat.getLibaryKey());
-                }
+        }
+        Iterator<Retired> iterator = retired.iterator();
+        while (iterator.hasNext()) {
+            Retired entry = iterator.next();
+            if (entry.epoch < oldestActive) {
+                library.remove(entry.id);
+                retiredIds.remove(entry.id);
+                iterator.remove();
+                logger.trace("removing " + entry.id);
+            }
+        }
+    }
+
+    @Override
+    public void acquire(int[] keys) {
+        for (int key : keys) {
+            AtomicInteger count = references.get(key);
+            if (count != null) {
+                count.incrementAndGet();
+            } else {
+                logger.debug("Acquiring retired library id " + key);
+            }
+        }
+    }
+
+    @Override
+    public void release(int[] keys) {
+        for (int key : keys) {
+            AtomicInteger count = references.get(key);
+            if (count != null && count.decrementAndGet() == 0) {
+                unreferenced.add(key); //a child produced meanwhile may still acquire it
+            }
+        }
+    }
 
+    @Override
+    public void releaseUnreferenced() {
+        List<Integer> retiring = new ArrayList<>();
+        Integer key;
+        while ((key = unreferenced.poll()) != null) {
+            AtomicInteger count = references.get(key);
+            if (count != null && count.get() == 0 && references.remove(key, count)) {
+                retiring.add(key);
+                int[] referenced = entryKeys.remove(key);
+                if (referenced != null) {
+                    release(referenced); //queues the entries only this one referenced, retired in this same call
+                }
             }
         }
-        logger.trace("removing " + remove.size() + " of " + library.size());
-        remove.removeAll(doNotRemove);
-        for (Integer id : remove) {
-            library.remove(id);
-            logger.trace("removing " + id);
+        retire(retiring);
+        logger.trace("After releasing unreferenced. Size = " + getSize());
+    }
+
+    private void retire(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        logger.trace("retiring " + ids.size() + " of " + library.size());
+        long retiredEpoch = epoch.getAndIncrement(); //evaluations from now on cannot reach the retired entries
+        for (Integer id : ids) {
+            retiredIds.add(id);
+            retired.add(new Retired(id, retiredEpoch));
         }
-        logger.trace("After GC. Size = " + library.size());
+        reclaim();
+    }
 
+    private static class Retired {
+        private final Integer id;
+        private final long epoch;
 
+        private Retired(Integer id, long epoch) {
+            this.id = id;
+            this.epoch = epoch;
+        }
     }
 }
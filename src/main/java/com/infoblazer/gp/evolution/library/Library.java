@@ -24,9 +24,11 @@
 
 package com.infoblazer.gp.evolution.library;
 
+import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.primitives.Primitive;
 
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by David on 7/12/2015.
@@ -36,8 +38,59 @@ public interface Library {
 
     void setPrimitive(Integer regime, Primitive copy1, Integer id);
 
+    /**
+     * Set the primitive for a regime only if the entry still holds expected, as read before copying it
+     *
+     * @return false when another writer replaced it first
+     */
+    boolean replacePrimitive(Integer regime, Primitive expected, Primitive primitive, Integer id);
+
     Integer add(Primitive[] template);
     Integer getSize();
 
-    void retainAll(Set<Integer> libaryInUse);
+    /**
+     * Add entries under new keys, rewriting the references between them
+     *
+     * @return the new key of each entry by its old key
+     */
+    Map<Integer, Integer> addAll(Map<Integer, Primitive[]> entries);
+
+    /**
+     * Run the task with the changes it makes on this thread collected in edits instead of published. Lookups on the
+     * thread see them.
+     */
+    void collect(LibraryEdits edits, Runnable task);
+
+    /**
+     * Publish collected changes in the order they were made. An edit over an entry changed since it was collected is
+     * skipped. Added entries get their keys now, which are rewritten in the given programs.
+     */
+    void publish(LibraryEdits edits, List<? extends AbstractProgram> programs);
+
+    /**
+     * Count a reference to each key, one per AAT of a program
+     */
+    void acquire(int[] keys);
+
+    /**
+     * Drop a reference to each key. An entry nothing references any more stays until the next releaseUnreferenced, so a
+     * child produced meanwhile can still reach and acquire it.
+     */
+    void release(int[] keys);
+
+    /**
+     * Retire the entries nothing references, those added since the last call that nothing acquired, such as the entries
+     * of rejected children, and those released since. A retired entry releases the entries it references. Call between
+     * generations, once the programs of the new population are acquired and no operator is running.
+     */
+    void releaseUnreferenced();
+
+    /**
+     * Start an evaluation. Entries retired while it runs stay available until it exits.
+     *
+     * @return the epoch to pass to exitEpoch
+     */
+    long enterEpoch();
+
+    void exitEpoch(long epoch);
 }
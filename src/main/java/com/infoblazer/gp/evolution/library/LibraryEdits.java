@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.library;
+
+import com.infoblazer.gp.evolution.primitives.Primitive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Library changes made by one task, held back so the task reads the library as it was when it started plus its own
+ * changes. Entries the task adds get provisional negative keys until the changes are published.
+ */
+public class LibraryEdits {
+
+    private final List<Change> changes = new ArrayList<>();
+    private final Map<Integer, Primitive[]> versions = new HashMap<>(); //latest version of each entry added or edited
+    private int nextKey = 0;
+
+    int add(Primitive[] primitives) {
+        int key = --nextKey;
+        changes.add(new Change(key, null, null, null, primitives));
+        versions.put(key, primitives);
+        return key;
+    }
+
+    void edit(Integer id, Integer regime, Primitive expected, Primitive primitive, Primitive[] version) {
+        changes.add(new Change(id, regime, expected, primitive, null));
+        versions.put(id, version);
+    }
+
+    /**
+     * @return the task's version of the entry, or null if the task has not changed it
+     */
+    Primitive[] get(Integer id) {
+        return versions.get(id);
+    }
+
+    List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    static class Change {
+        final Integer id;
+        final Integer regime;
+        final Primitive expected;
+        final Primitive primitive;
+        final Primitive[] added; //the new entry, null for an edit
+
+        private Change(Integer id, Integer regime, Primitive expected, Primitive primitive, Primitive[] added) {
+            this.id = id;
+            this.regime = regime;
+            this.expected = expected;
+            this.primitive = primitive;
+            this.added = added;
+        }
+    }
+}
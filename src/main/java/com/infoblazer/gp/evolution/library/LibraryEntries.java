@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.library;
+
+import com.infoblazer.gp.evolution.model.AbstractProgram;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+import com.infoblazer.gp.evolution.primitives.functions.Adf;
+import com.infoblazer.gp.evolution.selectionstrategy.AbstractSelectionStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Library entries a program depends on, for moving programs to another library or another process
+ */
+public class LibraryEntries {
+
+    /**
+     * @return the AATs in the program's root and in the roots of its ADFs
+     */
+    public static List<AatImpl> findAats(AbstractProgram program) {
+        List<Primitive> primitives = new ArrayList<>();
+        AbstractSelectionStrategy.addPrimitivesTyped(primitives, program.getRoot(), AatImpl.class);
+        if (program.getAdfs() != null) {
+            for (Adf adf : program.getAdfs()) {
+                for (int regime = 0; regime < adf.getNumberOfRoots(); regime++) {
+                    AbstractSelectionStrategy.addPrimitivesTyped(primitives, adf.getRoot(regime), AatImpl.class);
+                }
+            }
+        }
+        List<AatImpl> aats = new ArrayList<>();
+        for (Primitive primitive : primitives) {
+            aats.add((AatImpl) primitive);
+        }
+        return aats;
+    }
+
+    /**
+     * Add the entries the program reaches, directly or through other entries, to entries by key
+     */
+    public static void collect(AbstractProgram program, Library library, Map<Integer, Primitive[]> entries) {
+        for (AatImpl aat : findAats(program)) {
+            collect(aat.getLibaryKey(), library, entries);
+        }
+    }
+
+    private static void collect(Integer key, Library library, Map<Integer, Primitive[]> entries) {
+        if (entries.containsKey(key)) {
+            return;
+        }
+        Primitive[] entry = library.getPrimitiveById(key);
+        if (entry == null) {
+            return;
+        }
+        entries.put(key, entry);
+        for (Primitive primitive : entry) {
+            List<Primitive> aats = new ArrayList<>();
+            AbstractSelectionStrategy.addPrimitivesTyped(aats, primitive, AatImpl.class);
+            for (Primitive aat : aats) {
+                collect(((AatImpl) aat).getLibaryKey(), library, entries);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.infoblazer.gp.evolution.library;
+
+import com.infoblazer.gp.evolution.model.AbstractProgram;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The library references held by a population. Each update acquires the keys of the programs that joined since the
+ * last one and releases those of the programs that left, so programs that stayed are not visited.
+ */
+public class LibraryReferences {
+
+    private final Library library;
+    private Map<AbstractProgram, Counted> counted = new IdentityHashMap<>();
+
+    public LibraryReferences(Library library) {
+        this.library = library;
+    }
+
+    public void update(List<? extends AbstractProgram> programs) {
+        Map<AbstractProgram, Counted> next = new IdentityHashMap<>();
+        for (AbstractProgram program : programs) {
+            Counted entry = next.get(program);
+            if (entry == null) {
+                entry = counted.remove(program);
+                if (entry == null) {
+                    entry = new Counted(keys(program));
+                }
+                next.put(program, entry);
+            }
+            entry.copies++;
+            if (entry.copies > entry.acquired) {
+                library.acquire(entry.keys);
+                entry.acquired++;
+            }
+        }
+        //release only after acquiring, an entry shared by programs that left and joined stays in use
+        for (Counted entry : next.values()) {
+            for (; entry.acquired > entry.copies; entry.acquired--) {
+                library.release(entry.keys);
+            }
+            entry.copies = 0;
+        }
+        for (Counted left : counted.values()) {
+            for (; left.acquired > 0; left.acquired--) {
+                library.release(left.keys);
+            }
+        }
+        counted = next;
+        library.releaseUnreferenced();
+    }
+
+    /**
+     * @return the library keys of the program's AATs, one per AAT
+     */
+    public static int[] keys(AbstractProgram program) {
+        int[] keys = program.getLibraryKeys();
+        if (keys == null) {
+            List<AatImpl> aats = LibraryEntries.findAats(program);
+            keys = new int[aats.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = aats.get(i).getLibaryKey();
+            }
+        }
+        return keys;
+    }
+
+    private static class Counted {
+        private final int[] keys; //as acquired, the program may be recalculated later
+        private int acquired; //references held, one per copy in the population
+        private int copies; //copies seen by the update in progress
+
+        private Counted(int[] keys) {
+            this.keys = keys;
+        }
+    }
+}
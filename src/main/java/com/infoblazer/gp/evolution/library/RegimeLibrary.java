@@ -24,7 +24,9 @@
 
 package com.infoblazer.gp.evolution.library;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.evolution.primitives.Primitive;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
@@ -36,6 +38,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Created by David on 6/13/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class RegimeLibrary  extends AbstractLibrary{
 
 }
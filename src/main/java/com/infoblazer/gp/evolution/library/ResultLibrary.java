@@ -24,12 +24,15 @@
 
 package com.infoblazer.gp.evolution.library;
 
+import com.infoblazer.gp.RunScope;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 /** Holds all shared programs, used in AAT approach
  * Created by David on 6/13/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class ResultLibrary extends AbstractLibrary{
 
 
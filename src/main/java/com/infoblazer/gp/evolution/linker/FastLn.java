@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.primitives.functions.Adf;
+import com.infoblazer.gp.evolution.primitives.functions.Ln;
+import com.infoblazer.gp.evolution.utils.FastMath;
+
+import java.util.Map;
+
+/**
+ * Ln using {@link FastMath}, substituted on the fitness path when fastMath is set
+ */
+public class FastLn extends Ln {
+
+    @Override
+    public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> evaluationParams, Map<String, Adf> adfs, Library library, int level, Integer maxLevel) {
+        EvaluationCounters.dataAccessOperation(Ln.class);
+        Number val1 = (Number) parameters[0].evaluate(ignoreCurrent, regime, evaluationParams, adfs, library, level + 1, maxLevel);
+        double val = FastMath.log(Math.abs(val1.doubleValue()));
+        if (Double.isNaN(val) || Double.isInfinite(val)) {
+            val = 1.0;
+        }
+        return val;
+    }
+}
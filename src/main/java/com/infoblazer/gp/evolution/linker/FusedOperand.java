@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
+import com.infoblazer.gp.evolution.primitives.functions.OffsetValue;
+import com.infoblazer.gp.evolution.primitives.terminals.OffsetValueFixed;
+import com.infoblazer.gp.evolution.primitives.terminals.RandomDouble;
+import com.infoblazer.gp.evolution.primitives.terminals.RandomInteger;
+import com.infoblazer.gp.evolution.primitives.terminals.TerminalOne;
+import com.infoblazer.gp.evolution.primitives.terminals.TerminalZero;
+
+import java.util.Map;
+
+/**
+ * An argument of a superinstruction, read directly instead of being evaluated as a child node.
+ * Each operand reproduces the value of the primitive it replaces.
+ */
+abstract class FusedOperand {
+
+    private final Class<?>[] replaced; //classes of the nodes this operand stands for, counted as if they were evaluated
+
+    FusedOperand(Class<?>... replaced) {
+        this.replaced = replaced;
+    }
+
+    /**
+     * @return the operand for this primitive, or null if it cannot be fused
+     */
+    static FusedOperand of(Primitive primitive) {
+        Number constant = constantValue(primitive);
+        if (constant != null) {
+            return new Constant(constant, primitive.getClass());
+        } else if (primitive instanceof OffsetValueFixed) {
+            OffsetValueFixed offsetValueFixed = (OffsetValueFixed) primitive;
+            return new FixedOffset(offsetValueFixed.getSeriesCode(), offsetValueFixed.getValue(), primitive.getClass());
+        } else if (primitive instanceof OffsetValue) {
+            OffsetValue offsetValue = (OffsetValue) primitive;
+            Number offset = constantValue(offsetValue.getParameters()[0]);
+            if (offset != null) {
+                return new ConstantOffset(offsetValue.getSeriesCode(), Math.abs(offset.intValue()), primitive.getClass(),
+                        offsetValue.getParameters()[0].getClass());
+            }
+        }
+        return null;
+    }
+
+    private static Number constantValue(Primitive primitive) {
+        Number value = null;
+        if (primitive instanceof RandomInteger) {
+            value = ((RandomInteger) primitive).getValue();
+        } else if (primitive instanceof RandomDouble) {
+            value = ((RandomDouble) primitive).getValue();
+        } else if (primitive instanceof TerminalOne) {
+            value = ((TerminalOne) primitive).getValue();
+        } else if (primitive instanceof TerminalZero) {
+            value = ((TerminalZero) primitive).getValue();
+        }
+        return value;
+    }
+
+    abstract double value(boolean ignoreCurrent, Map<String, Object> evaluationParams);
+
+    /**
+     * count the evaluations of the nodes this operand replaces
+     */
+    void count() {
+        for (Class<?> type : replaced) {
+            EvaluationCounters.dataAccessOperation(type);
+        }
+    }
+
+    /**
+     * same as Number.equals(0), which Divide uses to guard against a zero denominator
+     */
+    boolean isIntegerZero() {
+        return false;
+    }
+
+    /**
+     * pattern name used in the profile
+     */
+    abstract String shape();
+
+    static class Constant extends FusedOperand {
+        private final Number constant;
+        private final double value;
+
+        Constant(Number constant, Class<?> replaced) {
+            super(replaced);
+            this.constant = constant;
+            this.value = constant.doubleValue();
+        }
+
+        @Override
+        double value(boolean ignoreCurrent, Map<String, Object> evaluationParams) {
+            return value;
+        }
+
+        @Override
+        boolean isIntegerZero() {
+            return constant.equals(0);
+        }
+
+        @Override
+        String shape() {
+            return "c";
+        }
+    }
+
+    /**
+     * see OffsetValueFixed
+     */
+    static class FixedOffset extends FusedOperand {
+        private final String seriesCode;
+        private final int offset;
+
+        FixedOffset(String seriesCode, int offset, Class<?> replaced) {
+            super(replaced);
+            this.seriesCode = seriesCode;
+            this.offset = offset;
+        }
+
+        @Override
+        double value(boolean ignoreCurrent, Map<String, Object> evaluationParams) {
+            SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
+            int pos = series.length() - offset - 1;
+            if (pos >= 0) {
+                return series.get(pos);
+            }
+            return 0.0d;
+        }
+
+        @Override
+        String shape() {
+            return "offsetValueFixed";
+        }
+    }
+
+    /**
+     * see OffsetValue, with a constant offset argument
+     */
+    static class ConstantOffset extends FusedOperand {
+        private final String seriesCode;
+        private final int offset;
+
+        ConstantOffset(String seriesCode, int offset, Class<?> replaced, Class<?> offsetReplaced) {
+            super(replaced, offsetReplaced);
+            this.seriesCode = seriesCode;
+            this.offset = offset;
+        }
+
+        @Override
+        double value(boolean ignoreCurrent, Map<String, Object> evaluationParams) {
+            Double returnVal = 0.0d;
+            try {
+                SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
+                int offset = this.offset;
+                if (offset > series.length() - 1) {
+                    offset = series.length() - 1;
+                }
+                if (!ignoreCurrent || offset != 0) {
+                    int pos = series.length() - offset - 1;
+                    if (pos >= 0) {
+                        returnVal = series.getValue(pos);
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return returnVal; //a missing value fails on unboxing, as in the operator the unfused node feeds
+        }
+
+        @Override
+        String shape() {
+            return "(offsetValue c)";
+        }
+    }
+}
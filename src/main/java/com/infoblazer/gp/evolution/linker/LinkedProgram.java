@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The evaluation trees for one program root. With call inlining the tree depends on the regime, as ADF and AAT bodies
+ * are per regime, so trees are linked on first use of each regime. Safe to share between evaluating threads.
+ */
+public class LinkedProgram {
+
+    private final ProgramLinker linker;
+    private final Primitive root;
+    private final Library library;
+    private final int level;
+    private final Integer maxLevel;
+    private final boolean approximate;
+    private final Primitive linked; //set when the tree is the same for every regime
+    private final Map<Integer, Primitive> linkedByRegime;
+
+    LinkedProgram(ProgramLinker linker, Primitive root, Library library, int level, Integer maxLevel, boolean perRegime,
+                  boolean approximate) {
+        this.linker = linker;
+        this.root = root;
+        this.library = library;
+        this.level = level;
+        this.maxLevel = maxLevel;
+        this.approximate = approximate;
+        if (perRegime) {
+            this.linked = null;
+            this.linkedByRegime = new ConcurrentHashMap<>();
+        } else {
+            this.linked = linker.link(root, library, null, level, maxLevel, approximate);
+            this.linkedByRegime = null;
+        }
+    }
+
+    public Primitive forRegime(int regime) {
+        if (linkedByRegime == null) {
+            return linked;
+        }
+        return linkedByRegime.computeIfAbsent(regime, key -> linker.link(root, library, key, level, maxLevel, approximate));
+    }
+}
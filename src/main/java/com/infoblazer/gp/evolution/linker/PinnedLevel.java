@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.Adf;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a call left in an inlined tree at the level it had in the original program, as the nodes above it may
+ * have come from an inlined ADF body that started counting levels again.
+ */
+public class PinnedLevel implements Primitive {
+
+    private final Primitive primitive;
+    private final int level;
+    private Integer id;
+
+    PinnedLevel(Primitive primitive, int level) {
+        this.primitive = primitive;
+        this.level = level;
+    }
+
+    Primitive getPrimitive() {
+        return primitive;
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    @Override
+    public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> evaluationParams, Map<String, Adf> adfs, Library library, int level, Integer maxLevel) {
+        return primitive.evaluate(ignoreCurrent, regime, evaluationParams, adfs, library, this.level, maxLevel);
+    }
+
+    @Override
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    @Override
+    public Integer getId() {
+        return this.id;
+    }
+
+    @Override
+    public String asLanguageString(int level, Integer maxLevel) {
+        return primitive.asLanguageString(level, maxLevel);
+    }
+
+    @Override
+    public Primitive newInstance(List<String> series) {
+        throw new UnsupportedOperationException("Cannot instantiate pinned level call with newInstance");
+    }
+
+    @Override
+    public GP_TYPES getReturnType() {
+        return primitive.getReturnType();
+    }
+
+    @Override
+    public void setParams(String[] paramVals) {
+    }
+
+    @Override
+    public Primitive simplify() {
+        return primitive.simplify();
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+import com.infoblazer.gp.evolution.primitives.functions.AbstractFunction;
+import com.infoblazer.gp.evolution.primitives.functions.AbstractPrimitive;
+import com.infoblazer.gp.evolution.primitives.functions.AdfImpl;
+import com.infoblazer.gp.evolution.primitives.functions.Cos;
+import com.infoblazer.gp.evolution.primitives.functions.Exp;
+import com.infoblazer.gp.evolution.primitives.functions.Ln;
+import com.infoblazer.gp.evolution.primitives.functions.Pow;
+import com.infoblazer.gp.evolution.primitives.functions.Sin;
+import com.infoblazer.gp.evolution.primitives.terminals.AbstractTerminal;
+import com.infoblazer.gp.evolution.primitives.terminals.SymbolicParameter;
+import com.infoblazer.gp.evolution.primitives.terminals.Terminal;
+import com.infoblazer.gp.evolution.primitives.terminals.TerminalOne;
+import com.infoblazer.gp.evolution.primitives.terminals.TerminalTrue;
+import com.infoblazer.gp.evolution.primitives.terminals.Variable;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds the tree that is actually evaluated for a program. The program itself is left untouched, nodes on the
+ * path to a rewritten node are shallow copied.
+ * <p>
+ * Superinstructions: node patterns are counted as programs are linked, and after each generation the hottest
+ * patterns are fused into a single primitive for the following generation.
+ * <p>
+ * Common subexpressions: structurally identical subtrees are replaced by one shared node that is evaluated once per
+ * time point. Subtrees that depend on the evaluation level, i.e. contain an AAT outside an ADF call, are not shared.
+ * <p>
+ * Call inlining: ADF bodies and AAT library bodies are copied into the tree for the regime being evaluated, with ADF
+ * symbolic parameters replaced by the argument subtrees. Levels are known while inlining, so AATs past the max level
+ * become their constant. Repeated arguments are shared, common subexpressions are always eliminated after inlining.
+ * <p>
+ * Fast math: sin, cos, exp, ln and pow are replaced by versions using {@link com.infoblazer.gp.evolution.utils.FastMath}
+ * when the caller allows approximation, i.e. on the fitness path only.
+ */
+@Component
+public class ProgramLinker {
+
+    @Value("${superinstructions:#{0}}") //number of hottest node patterns to fuse, 0 disables
+    private int superinstructions;
+
+    @Value("${commonSubexpressions:#{false}}") //share identical subtrees within a program
+    private boolean commonSubexpressions;
+    @Value("${inlineCalls:#{false}}") //inline ADF and AAT bodies per regime
+    private boolean inlineCalls;
+    @Value("${inlineNodeLimit:#{1000}}") //calls past this many inlined nodes are left as calls
+    private int inlineNodeLimit;
+    @Value("${fastMath:#{false}}") //approximate transcendental functions during selection
+    private boolean fastMath;
+
+    private final Map<String, LongAdder> patternCounts = new ConcurrentHashMap<>();
+    private volatile Map<String, Long> fusedPatterns = Collections.emptyMap();
+    private final AtomicLong scopeKeys = new AtomicLong();
+    private final LongAdder linkedNodes = new LongAdder();
+    private final LongAdder sharedNodes = new LongAdder();
+
+    /**
+     * @param level       the level the root is evaluated at
+     * @param approximate allow fast math, false when the values are reported or used for prediction
+     */
+    public LinkedProgram link(Primitive root, Library library, int level, Integer maxLevel, boolean approximate) {
+        return new LinkedProgram(this, root, library, level, maxLevel, inlineCalls && root != null, approximate && fastMath);
+    }
+
+    public boolean isFastMath() {
+        return fastMath;
+    }
+
+    /**
+     * @param regime the regime to inline calls for, null to leave calls in place
+     */
+    Primitive link(Primitive root, Library library, Integer regime, int level, Integer maxLevel, boolean approximate) {
+        if (root == null) {
+            return root;
+        }
+        Primitive linked = root;
+        if (regime != null) {
+            linked = new Inliner(library, regime, maxLevel).inline(root, level, null);
+        }
+        if (superinstructions > 0) {
+            linked = fuse(linked, fusedPatterns);
+        }
+        if (approximate) {
+            linked = approximate(linked);
+        }
+        if (commonSubexpressions || regime != null) {
+            linked = shareSubexpressions(linked);
+        }
+        return linked;
+    }
+
+    private Primitive fuse(Primitive primitive, Map<String, Long> fused) {
+        if (!(primitive instanceof AbstractFunction) || primitive instanceof AatImpl) {
+            return primitive; //aat parameters are not evaluated
+        }
+        Superinstruction superinstruction = Superinstruction.of(primitive);
+        if (superinstruction != null) {
+            String pattern = superinstruction.getPattern();
+            patternCounts.computeIfAbsent(pattern, key -> new LongAdder()).increment();
+            return fused.containsKey(pattern) ? superinstruction : primitive;
+        }
+
+        AbstractFunction function = (AbstractFunction) primitive;
+        Primitive[] parameters = function.getParameters();
+        Primitive[] linkedParameters = null;
+        for (int i = 0; i < parameters.length; i++) {
+            Primitive linked = fuse(parameters[i], fused);
+            if (linked != parameters[i]) {
+                if (linkedParameters == null) {
+                    linkedParameters = parameters.clone();
+                }
+                linkedParameters[i] = linked;
+            }
+        }
+        if (linkedParameters == null) {
+            return primitive;
+        }
+        AbstractFunction copy = GpUtils.getKyroInstance().copyShallow(function);
+        copy.setParameters(linkedParameters);
+        return copy;
+    }
+
+    private Primitive approximate(Primitive primitive) {
+        if (!(primitive instanceof AbstractFunction) || primitive instanceof AatImpl) {
+            return primitive;
+        }
+        AbstractFunction function = (AbstractFunction) primitive;
+        Primitive[] parameters = function.getParameters();
+        Primitive[] linkedParameters = parameters;
+        for (int i = 0; i < parameters.length; i++) {
+            Primitive linked = approximate(parameters[i]);
+            if (linked != parameters[i]) {
+                if (linkedParameters == parameters) {
+                    linkedParameters = parameters.clone();
+                }
+                linkedParameters[i] = linked;
+            }
+        }
+        AbstractFunction approximation = null;
+        if (function instanceof Sin) {
+            approximation = new FastSin();
+        } else if (function instanceof Cos) {
+            approximation = new FastCos();
+        } else if (function instanceof Exp) {
+            approximation = new FastExp();
+        } else if (function instanceof Ln) {
+            approximation = new FastLn();
+        } else if (function instanceof Pow) {
+            approximation = new FastPow();
+        } else if (linkedParameters != parameters) {
+            approximation = GpUtils.getKyroInstance().copyShallow(function);
+        }
+        if (approximation == null) {
+            return primitive;
+        }
+        approximation.setParameters(linkedParameters);
+        return approximation;
+    }
+
+    private Primitive shareSubexpressions(Primitive root) {
+        Map<Primitive, SubtreeInfo> subtrees = new IdentityHashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        SubtreeInfo rootInfo = describe(root, subtrees, occurrences, new HashMap<>(), new IdentityHashMap<>(), true);
+        linkedNodes.add(rootInfo.size);
+
+        SharedRewrite rewrite = new SharedRewrite("cse" + scopeKeys.incrementAndGet(), subtrees, occurrences);
+        Primitive linked = rewrite.apply(root);
+        if (rewrite.shared.isEmpty()) {
+            return root;
+        }
+        sharedNodes.add(rewrite.savedNodes);
+        return new SharedSubexpressionScope(linked, rewrite.scopeKey, rewrite.shared.size());
+    }
+
+    /**
+     * Build a structural key for each subtree bottom up. Keys are numbered so parents are keyed by their children's numbers.
+     *
+     * @param count false below a fused node, its operands are not evaluated as separate nodes
+     */
+    private SubtreeInfo describe(Primitive primitive, Map<Primitive, SubtreeInfo> subtrees, Map<String, Integer> occurrences,
+                                 Map<String, Integer> keyNumbers, Map<Object, Integer> adfRoots, boolean count) {
+        SubtreeInfo info = new SubtreeInfo();
+        if (primitive instanceof Superinstruction) {
+            SubtreeInfo original = describe(((Superinstruction) primitive).getOriginal(), subtrees, occurrences, keyNumbers, adfRoots, false);
+            info.key = "fused" + original.key;
+            info.size = original.size;
+            info.levelDependent = original.levelDependent;
+            if (count && !info.levelDependent) {
+                occurrences.merge(info.key, 1, Integer::sum);
+            }
+        } else if (primitive instanceof PinnedLevel) {
+            PinnedLevel pinned = (PinnedLevel) primitive;
+            SubtreeInfo call = describe(pinned.getPrimitive(), subtrees, occurrences, keyNumbers, adfRoots, false);
+            info.key = "pinned" + pinned.getLevel() + call.key;
+            info.size = call.size;
+            if (count) {
+                occurrences.merge(info.key, 1, Integer::sum);
+            }
+        } else if (primitive instanceof AbstractFunction) {
+            AbstractFunction function = (AbstractFunction) primitive;
+            StringBuilder key = new StringBuilder(function.getClass().getName()).append(':').append(function.getSeriesCode());
+            if (function instanceof AdfImpl) {
+                //keyed by body as well as name, calls are only equal when they evaluate the same roots
+                Integer rootNumber = adfRoots.computeIfAbsent(((AdfImpl) function).getRoot(), rootArray -> adfRoots.size());
+                key.append(':').append(function.getName()).append('#').append(rootNumber);
+            }
+            key.append('(');
+            info.size = 1;
+            for (Primitive parameter : function.getParameters()) {
+                SubtreeInfo parameterInfo = describe(parameter, subtrees, occurrences, keyNumbers, adfRoots,
+                        count && !(function instanceof AatImpl));
+                key.append(keyNumbers.computeIfAbsent(parameterInfo.key, newKey -> keyNumbers.size())).append(',');
+                info.size = info.size + parameterInfo.size;
+                info.levelDependent = info.levelDependent || parameterInfo.levelDependent;
+            }
+            info.key = key.append(')').toString();
+            if (function instanceof AatImpl) {
+                info.levelDependent = true;
+            } else if (function instanceof AdfImpl) {
+                info.levelDependent = false; //arguments and body are evaluated from a fixed level
+            }
+            if (count && !info.levelDependent) {
+                occurrences.merge(info.key, 1, Integer::sum);
+            }
+        } else {
+            String seriesCode = null;
+            if (primitive instanceof AbstractTerminal) {
+                seriesCode = ((AbstractTerminal) primitive).getSeriesCode();
+            } else if (primitive instanceof AbstractPrimitive) {
+                seriesCode = ((AbstractPrimitive) primitive).getSeriesCode();
+            }
+            info.key = primitive.getClass().getName() + ':' + seriesCode + ':' + primitive.asLanguageString(0, null);
+            info.size = 1;
+        }
+        subtrees.put(primitive, info);
+        return info;
+    }
+
+    /**
+     * @return fraction of linked nodes replaced by a shared subexpression since the last call, null if nothing was linked
+     */
+    public Double getAndResetSharedNodeFraction() {
+        long linked = linkedNodes.sumThenReset();
+        long shared = sharedNodes.sumThenReset();
+        if (linked == 0) {
+            return null;
+        }
+        return shared / (double) linked;
+    }
+
+    /**
+     * Fuse the hottest patterns counted since the last call. Call between generations.
+     *
+     * @return true if the set of fused patterns changed
+     */
+    public boolean selectSuperinstructions() {
+        if (superinstructions <= 0 || patternCounts.isEmpty()) {
+            return false;
+        }
+        List<Map.Entry<String, Long>> counts = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> entry : patternCounts.entrySet()) {
+            counts.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        patternCounts.clear();
+        counts.sort((entry1, entry2) -> Long.compare(entry2.getValue(), entry1.getValue()));
+
+        Map<String, Long> selected = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : counts.subList(0, Math.min(superinstructions, counts.size()))) {
+            selected.put(entry.getKey(), entry.getValue());
+        }
+        boolean changed = !selected.keySet().equals(fusedPatterns.keySet());
+        fusedPatterns = selected;
+        return changed;
+    }
+
+    /**
+     * @return the fused patterns with the number of times each was linked in the profiled generation
+     */
+    public Map<String, Long> getSuperinstructions() {
+        return Collections.unmodifiableMap(fusedPatterns);
+    }
+
+    /**
+     * Inlines calls for one regime. Inside an ADF body a subtree that cannot be inlined makes the whole call stay a call,
+     * since the body reads its own parameter map.
+     */
+    private class Inliner {
+        private final Library library;
+        private final int regime;
+        private final Integer maxLevel;
+        private int nodes = 0;
+
+        private Inliner(Library library, int regime, Integer maxLevel) {
+            this.library = library;
+            this.regime = regime;
+            this.maxLevel = maxLevel;
+        }
+
+        /**
+         * @param level    the level the primitive is evaluated at in the original program
+         * @param bindings ADF arguments by symbolic parameter name, null outside an ADF body
+         * @return the inlined tree, null if it cannot be inlined in this ADF body
+         */
+        private Primitive inline(Primitive primitive, int level, Map<String, Primitive> bindings) {
+            nodes++;
+            if (primitive instanceof SymbolicParameter) {
+                return bindings == null ? primitive : bindings.get(((SymbolicParameter) primitive).getName());
+            } else if (primitive instanceof Variable) {
+                return bindings == null ? primitive : null; //not passed into ADF bodies
+            } else if (primitive instanceof AatImpl) {
+                return inlineAat((AatImpl) primitive, level, bindings);
+            } else if (primitive instanceof AdfImpl) {
+                return inlineAdf((AdfImpl) primitive, bindings);
+            } else if (primitive instanceof AbstractFunction) {
+                return inlineParameters((AbstractFunction) primitive, level + 1, bindings);
+            }
+            return primitive;
+        }
+
+        private Primitive inlineAat(AatImpl aat, int level, Map<String, Primitive> bindings) {
+            if (level > maxLevel) {
+                return aat.getReturnType() == GP_TYPES.BOOLEAN ? new TerminalTrue() : new TerminalOne();
+            }
+            Primitive[] bodies = library.getPrimitiveById(aat.getLibaryKey());
+            if (nodes >= inlineNodeLimit || bodies == null || bodies[regime] == null) {
+                //library bodies read the caller's parameter map, so a call can only stay outside ADF bodies
+                return bindings == null ? new PinnedLevel(aat, level) : null;
+            }
+            return inline(bodies[regime], level + 1, bindings);
+        }
+
+        private Primitive inlineAdf(AdfImpl adf, Map<String, Primitive> bindings) {
+            Primitive call = inlineParameters(adf, 0, bindings); //arguments are evaluated at level 0
+            if (call == null || nodes >= inlineNodeLimit || adf.getRoot() == null || adf.getRoot(regime) == null) {
+                return call;
+            }
+            Primitive[] arguments = ((AbstractFunction) call).getParameters();
+            Map<String, Primitive> adfBindings = new HashMap<>();
+            int parameter = 0;
+            for (Terminal terminal : adf.getSymbolicParameters().getItems()) {
+                adfBindings.put(((SymbolicParameter) terminal).getName(), arguments[parameter]);
+                parameter++;
+            }
+            int mark = nodes;
+            Primitive body = inline(adf.getRoot(regime), 1, adfBindings); //body levels start again at 1
+            if (body == null) {
+                nodes = mark;
+                return call;
+            }
+            return body;
+        }
+
+        private Primitive inlineParameters(AbstractFunction function, int parameterLevel, Map<String, Primitive> bindings) {
+            Primitive[] parameters = function.getParameters();
+            Primitive[] inlinedParameters = null;
+            for (int i = 0; i < parameters.length; i++) {
+                Primitive inlined = inline(parameters[i], parameterLevel, bindings);
+                if (inlined == null) {
+                    return null;
+                }
+                if (inlined != parameters[i]) {
+                    if (inlinedParameters == null) {
+                        inlinedParameters = parameters.clone();
+                    }
+                    inlinedParameters[i] = inlined;
+                }
+            }
+            if (inlinedParameters == null) {
+                return function;
+            }
+            AbstractFunction copy = GpUtils.getKyroInstance().copyShallow(function);
+            copy.setParameters(inlinedParameters);
+            return copy;
+        }
+    }
+
+    private static class SubtreeInfo {
+        private String key;
+        private int size;
+        private boolean levelDependent;
+    }
+
+    /**
+     * Replaces repeated subtrees of one program, the first occurrence becomes the shared node and later ones reuse it.
+     */
+    private static class SharedRewrite {
+        private final String scopeKey;
+        private final Map<Primitive, SubtreeInfo> subtrees;
+        private final Map<String, Integer> occurrences;
+        private final Map<String, SharedSubexpression> shared = new HashMap<>();
+        private long savedNodes = 0;
+
+        private SharedRewrite(String scopeKey, Map<Primitive, SubtreeInfo> subtrees, Map<String, Integer> occurrences) {
+            this.scopeKey = scopeKey;
+            this.subtrees = subtrees;
+            this.occurrences = occurrences;
+        }
+
+        private Primitive apply(Primitive primitive) {
+            SubtreeInfo info = subtrees.get(primitive);
+            boolean repeated = info != null && occurrences.getOrDefault(info.key, 0) > 1;
+            if (repeated) {
+                SharedSubexpression existing = shared.get(info.key);
+                if (existing != null) {
+                    savedNodes = savedNodes + info.size;
+                    return existing;
+                }
+            }
+            Primitive linked = rewriteParameters(primitive);
+            if (repeated) {
+                SharedSubexpression sharedSubexpression = new SharedSubexpression(linked, scopeKey, shared.size());
+                shared.put(info.key, sharedSubexpression);
+                return sharedSubexpression;
+            }
+            return linked;
+        }
+
+        private Primitive rewriteParameters(Primitive primitive) {
+            if (!(primitive instanceof AbstractFunction) || primitive instanceof AatImpl) {
+                return primitive;
+            }
+            AbstractFunction function = (AbstractFunction) primitive;
+            Primitive[] parameters = function.getParameters();
+            Primitive[] linkedParameters = null;
+            for (int i = 0; i < parameters.length; i++) {
+                Primitive linked = apply(parameters[i]);
+                if (linked != parameters[i]) {
+                    if (linkedParameters == null) {
+                        linkedParameters = parameters.clone();
+                    }
+                    linkedParameters[i] = linked;
+                }
+            }
+            if (linkedParameters == null) {
+                return primitive;
+            }
+            AbstractFunction copy = GpUtils.getKyroInstance().copyShallow(function);
+            copy.setParameters(linkedParameters);
+            return copy;
+        }
+    }
+}
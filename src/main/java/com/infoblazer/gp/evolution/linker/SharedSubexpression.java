@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.Adf;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A subtree that occurs more than once in a linked program. The same instance is placed at every occurrence, the first
+ * evaluation at a time point stores its value in the slots of the enclosing {@link SharedSubexpressionScope}.
+ */
+public class SharedSubexpression implements Primitive {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final Primitive primitive;
+    private final String scopeKey;
+    private final int slot;
+    private Integer id;
+
+    SharedSubexpression(Primitive primitive, String scopeKey, int slot) {
+        this.primitive = primitive;
+        this.scopeKey = scopeKey;
+        this.slot = slot;
+    }
+
+    @Override
+    public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> evaluationParams, Map<String, Adf> adfs, Library library, int level, Integer maxLevel) {
+        Object[] slots = (Object[]) evaluationParams.get(scopeKey);
+        if (slots == null) {
+            return primitive.evaluate(ignoreCurrent, regime, evaluationParams, adfs, library, level, maxLevel);
+        }
+        Object value = slots[slot];
+        if (value == null) {
+            value = primitive.evaluate(ignoreCurrent, regime, evaluationParams, adfs, library, level, maxLevel);
+            slots[slot] = value == null ? NULL_VALUE : value;
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    @Override
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    @Override
+    public Integer getId() {
+        return this.id;
+    }
+
+    @Override
+    public String asLanguageString(int level, Integer maxLevel) {
+        return primitive.asLanguageString(level, maxLevel);
+    }
+
+    @Override
+    public Primitive newInstance(List<String> series) {
+        throw new UnsupportedOperationException("Cannot instantiate shared subexpression with newInstance");
+    }
+
+    @Override
+    public GP_TYPES getReturnType() {
+        return primitive.getReturnType();
+    }
+
+    @Override
+    public void setParams(String[] paramVals) {
+    }
+
+    @Override
+    public Primitive simplify() {
+        return primitive.simplify();
+    }
+}
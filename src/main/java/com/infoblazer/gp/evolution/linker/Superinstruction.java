@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary arithmetic node and its operands fused into a single primitive, e.g. (- (offsetValueFixed s 1) (offsetValueFixed s 2)).
+ * Only used in linked evaluation trees, never in the population, and counted as a single node evaluation.
+ */
+public class Superinstruction implements Primitive {
+
+    enum Operator {
+        ADD("+"), SUBTRACT("-"), MULTIPLY("*"), DIVIDE("%");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private final Operator operator;
+    private final FusedOperand operand1;
+    private final FusedOperand operand2;
+    private final Primitive original;
+    private Integer id;
+
+    private Superinstruction(Operator operator, FusedOperand operand1, FusedOperand operand2, Primitive original) {
+        this.operator = operator;
+        this.operand1 = operand1;
+        this.operand2 = operand2;
+        this.original = original;
+    }
+
+    /**
+     * @return the fused form of this node, or null if it does not match a fusable shape
+     */
+    static Superinstruction of(Primitive primitive) {
+        Operator operator = null;
+        if (primitive instanceof Add) {
+            operator = Operator.ADD;
+        } else if (primitive instanceof Subtract) {
+            operator = Operator.SUBTRACT;
+        } else if (primitive instanceof Multiply) {
+            operator = Operator.MULTIPLY;
+        } else if (primitive instanceof Divide) {
+            operator = Operator.DIVIDE;
+        }
+        if (operator != null) {
+            Primitive[] parameters = ((AbstractFunction) primitive).getParameters();
+            FusedOperand operand1 = FusedOperand.of(parameters[0]);
+            FusedOperand operand2 = FusedOperand.of(parameters[1]);
+            if (operand1 != null && operand2 != null) {
+                return new Superinstruction(operator, operand1, operand2, primitive);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the pattern this node was fused from, operands shown by shape only
+     */
+    String getPattern() {
+        return "(" + operator.symbol + " " + operand1.shape() + " " + operand2.shape() + ")";
+    }
+
+    /**
+     * the node this was fused from
+     */
+    Primitive getOriginal() {
+        return original;
+    }
+
+    @Override
+    public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> evaluationParams, Map<String, Adf> adfs, Library library, int level, Integer maxLevel) {
+        EvaluationCounters.dataAccessOperation(original.getClass()); //counted as the unfused nodes
+        operand1.count();
+        operand2.count();
+        double val1 = operand1.value(ignoreCurrent, evaluationParams);
+        double val2 = operand2.value(ignoreCurrent, evaluationParams);
+        switch (operator) {
+            case ADD:
+                return val1 + val2;
+            case SUBTRACT:
+                return val1 - val2;
+            case MULTIPLY:
+                return val1 * val2;
+            default:
+                if (operand2.isIntegerZero()) {
+                    return 1;
+                }
+                return val1 / val2;
+        }
+    }
+
+    @Override
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    @Override
+    public Integer getId() {
+        return this.id;
+    }
+
+    @Override
+    public String asLanguageString(int level, Integer maxLevel) {
+        return original.asLanguageString(level, maxLevel);
+    }
+
+    @Override
+    public Primitive newInstance(List<String> series) {
+        throw new UnsupportedOperationException("Cannot instantiate superinstruction with newInstance");
+    }
+
+    @Override
+    public GP_TYPES getReturnType() {
+        return GP_TYPES.NUMBER;
+    }
+
+    @Override
+    public void setParams(String[] paramVals) {
+    }
+
+    @Override
+    public Primitive simplify() {
+        return original.simplify();
+    }
+}
@@ -25,8 +25,10 @@
 package com.infoblazer.gp.evolution.model;
 
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
+import com.infoblazer.gp.application.fitness.EvaluationCost;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
 import com.infoblazer.gp.evolution.primitives.*;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import com.infoblazer.gp.evolution.primitives.functions.AdfImpl;
 import com.infoblazer.gp.evolution.primitives.functions.Function;
@@ -36,11 +38,13 @@ import com.infoblazer.gp.evolution.primitives.terminals.TerminalTrue;
 import com.infoblazer.gp.evolution.primitives.terminals.Variable;
 import com.infoblazer.gp.evolution.selectionstrategy.AbstractSelectionStrategy;
 import com.infoblazer.gp.evolution.selectionstrategy.SelectionStrategy;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by David on 5/24/2015.
@@ -58,6 +62,10 @@ public abstract class AbstractProgram implements Program {
     private Integer maxAdfNodeCount;
     private Integer maxAdfDepth;
     private Integer depth;
+    private int[] libraryKeys; //library entries the root reaches directly, filled in with the metrics
+    private int[] adfLibraryKeys;
+    private transient int[] primitiveCounts; //by EvaluationCost class index, which differs between processes
+    private transient int[] adfPrimitiveCounts;
 
 
     public Integer getId() {
@@ -109,7 +117,7 @@ public abstract class AbstractProgram implements Program {
                                               Integer remainingDepth, Integer maxDepth, GrowMethod growMethod, boolean functionsOnly,
                                               Function forceFunction, boolean noVariables) {
         Primitive expr = null;
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         FunctionSet actualFunctionSet = functionSet;
         if (arityFunctionSet != null) {
             actualFunctionSet = arityFunctionSet;
@@ -215,7 +223,7 @@ public abstract class AbstractProgram implements Program {
      * @return
      */
     private static Primitive chooseRandom(PrimitiveSet primitiveSet, List<String> series, GP_TYPES returnType, Class excludeClass) {
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         Primitive primitive = null;
         int tries = 0;
         int maxAttempts = primitiveSet.getItems().length * 2;
@@ -430,6 +438,8 @@ public abstract class AbstractProgram implements Program {
         int check1Depth = AbstractSelectionStrategy.addPrimitives(primitivesTmp, root, null);
         depth = check1Depth;
         nodeCount = primitivesTmp.size();
+        libraryKeys = collectLibraryKeys(primitivesTmp, new ArrayList<>());
+        primitiveCounts = EvaluationCost.count(primitivesTmp, null);
 
     }
 
@@ -438,6 +448,8 @@ public abstract class AbstractProgram implements Program {
         Integer totalNodeSize = null;
         Integer maxNodeSize = null;
         Integer maxDepth = null;
+        List<Integer> keys = new ArrayList<>();
+        int[] counts = null;
 
         if (adfs != null) {
             totalNodeSize = 0;
@@ -457,6 +469,8 @@ public abstract class AbstractProgram implements Program {
                     }
                     adf.setNodeCount(nodeSize);
                     totalNodeSize += nodeSize;
+                    collectLibraryKeys(primitivesTmp, keys);
+                    counts = EvaluationCost.count(primitivesTmp, counts);
 
                 }
         }
@@ -464,6 +478,59 @@ public abstract class AbstractProgram implements Program {
         totalAdfNodeCount = totalNodeSize;
         maxAdfDepth = maxDepth;
         maxAdfNodeCount = maxNodeSize;
+        adfLibraryKeys = keys.stream().mapToInt(Integer::intValue).toArray();
+        adfPrimitiveCounts = counts == null ? new int[0] : counts;
+    }
+
+    /**
+     * @return the number of primitives of each class in the root and the ADFs, indexed by EvaluationCost, or null if
+     * the metrics have not been calculated in this process
+     */
+    public int[] getPrimitiveCounts() {
+        if (primitiveCounts == null || (adfs != null && adfPrimitiveCounts == null)) {
+            return null;
+        }
+        if (adfPrimitiveCounts == null) {
+            return primitiveCounts;
+        }
+        int[] counts = Arrays.copyOf(primitiveCounts, Math.max(primitiveCounts.length, adfPrimitiveCounts.length));
+        for (int i = 0; i < adfPrimitiveCounts.length; i++) {
+            counts[i] += adfPrimitiveCounts[i];
+        }
+        return counts;
+    }
+
+    private static int[] collectLibraryKeys(List<Primitive> primitives, List<Integer> keys) {
+        for (Primitive primitive : primitives) {
+            if (primitive instanceof AatImpl) {
+                keys.add(((AatImpl) primitive).getLibaryKey());
+            }
+        }
+        return keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the library keys of the AATs in the root and the ADFs, one per AAT, or null if the metrics have not
+     * been calculated since they could have changed
+     */
+    public int[] getLibraryKeys() {
+        if (libraryKeys == null || (adfs != null && adfLibraryKeys == null)) {
+            return null;
+        }
+        int[] keys = new int[libraryKeys.length + (adfLibraryKeys == null ? 0 : adfLibraryKeys.length)];
+        System.arraycopy(libraryKeys, 0, keys, 0, libraryKeys.length);
+        if (adfLibraryKeys != null) {
+            System.arraycopy(adfLibraryKeys, 0, keys, libraryKeys.length, adfLibraryKeys.length);
+        }
+        return keys;
+    }
+
+    /**
+     * Set the library keys of the AATs in the root and the ADFs, for a program whose AATs were rekeyed
+     */
+    public void setLibraryKeys(int[] keys) {
+        libraryKeys = keys;
+        adfLibraryKeys = new int[0];
     }
 
     public boolean hasValidFitness(Double maxOverride) {
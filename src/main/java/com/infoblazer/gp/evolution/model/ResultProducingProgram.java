@@ -44,6 +44,8 @@ public class ResultProducingProgram extends AbstractProgram {
 
     private final static Logger logger = Logger.getLogger(ResultProducingProgram.class.getName());
 
+    private transient double[] windowFitness; //DyFor fitness per training window, not copied
+
 
     public static ResultProducingProgram generateProgram(FunctionSet functionSet, TerminalSet terminalSet,Map<String,FunctionSet> aritySet, String[] adfArities,  List<String> series,
                                                          int maxDepth, int maxSize, int regimes, GrowMethod growMethod, GP_TYPES returnType) {
@@ -69,5 +71,12 @@ public class ResultProducingProgram extends AbstractProgram {
         return program;
     }
 
+    public double[] getWindowFitness() {
+        return windowFitness;
+    }
+
+    public void setWindowFitness(double[] windowFitness) {
+        this.windowFitness = windowFitness;
+    }
 
 }
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.primitives;
+
+/**
+ * Read only prefix of a series, the values up to the current evaluation position.
+ * Replaces copying the prefix into a new array at every position, length() plays the part of the array length.
+ * Backed by a double or, in single precision mode, a float column. Missing values are kept apart from the column, so a
+ * primitive can return null for them as it did when reading the boxed series, and get fails on them as unboxing did.
+ */
+public final class SeriesView {
+
+    private final double[] values;
+    private final float[] floatValues;
+    private final boolean[] missing; //null if the series has no missing values
+    private int length;
+
+    public SeriesView(double[] values, boolean[] missing) {
+        this.values = values;
+        this.floatValues = null;
+        this.missing = missing;
+        this.length = values.length;
+    }
+
+    public SeriesView(float[] values, boolean[] missing) {
+        this.values = null;
+        this.floatValues = values;
+        this.missing = missing;
+        this.length = values.length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @throws NullPointerException for a missing value, as unboxing it from the series did
+     */
+    public double get(int i) {
+        if (i >= length) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+        if (missing != null && missing[i]) {
+            throw new NullPointerException();
+        }
+        return floatValues == null ? values[i] : floatValues[i];
+    }
+
+    /**
+     * @return the value, null if it is missing
+     */
+    public Double getValue(int i) {
+        if (missing != null && i < length && missing[i]) {
+            return null;
+        }
+        return get(i);
+    }
+
+    public static double[] toDoubleColumn(Double[] series) {
+        double[] column = new double[series.length];
+        for (int i = 0; i < series.length; i++) {
+            column[i] = series[i] == null ? Double.NaN : series[i];
+        }
+        return column;
+    }
+
+    public static float[] toFloatColumn(Double[] series) {
+        float[] column = new float[series.length];
+        for (int i = 0; i < series.length; i++) {
+            column[i] = series[i] == null ? Float.NaN : series[i].floatValue();
+        }
+        return column;
+    }
+
+    /**
+     * @return which values of the series are null, or null if none are
+     */
+    public static boolean[] toMissing(Double[] series) {
+        boolean[] missing = null;
+        for (int i = 0; i < series.length; i++) {
+            if (series[i] == null) {
+                if (missing == null) {
+                    missing = new boolean[series.length];
+                }
+                missing[i] = true;
+            }
+        }
+        return missing;
+    }
+}
@@ -24,7 +24,7 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
@@ -52,6 +52,13 @@ public class AatImpl extends AbstractFunction implements Aat {
         return this.libaryKey;
     }
 
+    /**
+     * point at another library entry, used when a program moves to a different library
+     */
+    public void setLibaryKey(Integer libaryKey) {
+        this.libaryKey = libaryKey;
+    }
+
 
     public AatImpl() {
 
@@ -104,7 +111,7 @@ public class AatImpl extends AbstractFunction implements Aat {
     @Override
     public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> parameters, Map<String, Adf> adfs, Library library, int level, Integer maxLevel) {
 
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         Object result;
         if (level > maxLevel) {
             logger.debug("Hit max level evaluating AAT. Returning true/1");
@@ -24,7 +24,7 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionSet;
 import com.infoblazer.gp.evolution.primitives.Primitive;
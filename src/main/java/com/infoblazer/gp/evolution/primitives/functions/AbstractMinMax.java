@@ -24,10 +24,11 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 
 import java.util.Map;
 
@@ -48,14 +49,14 @@ public abstract class AbstractMinMax extends AbstractFunction {
     }
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel)  {
-        EvaluationLogger.dataAccessOperation();
-        Double[] series = (Double[]) evaluationParams.get(seriesCode);
+        EvaluationCounters.dataAccessOperation(this);
+        SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
 
         Number window = (Number) parameters[0].evaluate(ignoreCurrent,regime,evaluationParams, adfs,library,level+1,maxLevel);
 
-        int endPos =  series.length-1; // offset 0 is end pos
-        if (endPos== series.length-1 && ignoreCurrent){
-            endPos = series.length-2;
+        int endPos =  series.length()-1; // offset 0 is end pos
+        if (endPos== series.length()-1 && ignoreCurrent){
+            endPos = series.length()-2;
         }
         if (endPos<0){
             endPos = 0;
@@ -72,10 +73,10 @@ public abstract class AbstractMinMax extends AbstractFunction {
 
 
 
-        double result = series[startPos];
+        double result = series.get(startPos);
         for (int i = startPos+1;i<=endPos;i++)  {
-            if (compareMinMax(series[i],result)) {
-                result = series[i];
+            if (compareMinMax(series.get(i),result)) {
+                result = series.get(i);
 
             }
         }
@@ -26,9 +26,10 @@ package com.infoblazer.gp.evolution.primitives.functions;
 
 import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.terminals.*;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by David on 5/22/2014.
@@ -51,6 +52,10 @@ public abstract class AbstractPrimitive implements Primitive {
         return this.name;
     }
 
+    public String getSeriesCode() {
+        return this.seriesCode;
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -134,7 +139,7 @@ public abstract class AbstractPrimitive implements Primitive {
     }
 
     protected String randomSeries(List<String> series) {
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         int i = random.nextInt(series.size());
         return  series.get(i);
     }
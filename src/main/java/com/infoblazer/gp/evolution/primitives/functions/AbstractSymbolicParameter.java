@@ -24,15 +24,16 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionContext;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.terminals.SymbolicParameter;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by David on 6/21/2014.
@@ -63,7 +64,7 @@ public abstract class AbstractSymbolicParameter implements SymbolicParameter {
 
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String, Adf> adfs,Library library,int  level,Integer maxLevel) {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         return evaluationParams.get(name);
     }
 
@@ -96,7 +97,7 @@ public abstract class AbstractSymbolicParameter implements SymbolicParameter {
     }
 
     public static SymbolicParameter buildParmeter(String name,GP_TYPES gp_types) {
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         if (gp_types==GP_TYPES.BOOLEAN) {
             return new SymbolicParameterBoolean(name);
         }else if (gp_types==GP_TYPES.NUMBER){
@@ -24,7 +24,7 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
@@ -66,7 +66,7 @@ public class Add extends AbstractFunction {
 
     @Override
     public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> evaluationParams, Map<String, Adf> adfs,Library library, int level, Integer maxLevel)  {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         Number val1 = (Number) parameters[0].evaluate(ignoreCurrent, regime, evaluationParams, adfs,library, level + 1, maxLevel);
         Number val2 = (Number) parameters[1].evaluate(ignoreCurrent, regime, evaluationParams, adfs,library, level + 1, maxLevel);
         return val1.doubleValue() + val2.doubleValue();
@@ -24,7 +24,7 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionSet;
@@ -112,7 +112,7 @@ public class AdfImpl extends AbstractFunction implements Adf {
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, final Map<String, Adf> adfs,
                            Library library, int  level,Integer maxLevel)  {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         if (logger.isTraceEnabled()) {
             logger.trace("entering evaluate");
         }
@@ -24,7 +24,7 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
@@ -46,7 +46,7 @@ public class And extends AbstractFunction {
 
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String, Adf> adfs,Library library,int  level,Integer maxLevel)  {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         Boolean result  = (Boolean) parameters[0].evaluate(ignoreCurrent,regime,evaluationParams, adfs,library,level+1,maxLevel);
         if (result) {
             result = (Boolean) parameters[1].evaluate(ignoreCurrent, regime, evaluationParams, adfs,library,level+1,maxLevel);
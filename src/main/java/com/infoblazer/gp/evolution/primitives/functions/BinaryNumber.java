@@ -24,7 +24,7 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
@@ -100,7 +100,7 @@ public class BinaryNumber extends AbstractFunction {
 
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel)  {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
            StringBuilder binaryString = new StringBuilder();
            for (int i = 0; i < parameters.length; i++) {
                Boolean val = (Boolean) parameters[i].evaluate(ignoreCurrent, regime, evaluationParams, adfs,library,level+1,maxLevel);
@@ -24,11 +24,12 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
@@ -64,19 +65,19 @@ public class MovingAverage extends AbstractFunction {
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel)   {
 
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
 
         Double result = 0.0d; //don't pentalize with null return
-        Double[] series = (Double[]) evaluationParams.get(seriesCode);
+        SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
         Number numericOffset = 0 ;// (Number) parameters[0].evaluate(ignoreCurrent,regime,evaluationParams, adfs);
         Number window = (Number) parameters[0].evaluate(ignoreCurrent,regime,evaluationParams, adfs,library,level+1,maxLevel);
 
-        int endPos =  series.length-Math.abs(numericOffset.intValue())-1; // offset 0 is end pos
+        int endPos =  series.length()-Math.abs(numericOffset.intValue())-1; // offset 0 is end pos
         if (endPos<0){
             endPos = 0;
         }
-        if (endPos== series.length-1 && ignoreCurrent){
-            endPos = series.length-2;
+        if (endPos== series.length()-1 && ignoreCurrent){
+            endPos = series.length()-2;
         }
         int startPos = endPos-Math.abs(window.intValue());    //window 0 = endpos only. window 1 = 2 values
         if (startPos<0){
@@ -86,7 +87,7 @@ public class MovingAverage extends AbstractFunction {
 
         double total = 0.0d;
         for (int i = startPos;i<=endPos;i++)  {
-            total = total + series[i];
+            total = total + series.get(i);
         }
         result = total / (endPos - startPos+1);
 
@@ -24,11 +24,13 @@
 
 package com.infoblazer.gp.evolution.primitives.functions;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
+import com.infoblazer.gp.application.fitness.NodeBudgetExceededException;
 import com.infoblazer.gp.evolution.model.AbstractProgram;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
@@ -73,23 +75,25 @@ public class OffsetValue extends AbstractFunction {
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String, Adf> adfs,Library library,int level,Integer maxLevel)  {
 //predicting next value so offset can be 0, looking at current days reading
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         Double returnVal = 0.0d; //don't penalize with null return
 
        try {
-           Double[] series = (Double[]) evaluationParams.get(seriesCode);
+           SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
            Number numericOffset = (Number) parameters[0].evaluate(ignoreCurrent, regime, evaluationParams, adfs, library, level + 1, maxLevel);
            int offset = Math.abs(numericOffset.intValue());
 
-           if (offset > series.length - 1) {
-               offset = series.length - 1;
+           if (offset > series.length() - 1) {
+               offset = series.length() - 1;
            }
            if (!ignoreCurrent || offset != 0) {
-               int pos = series.length - offset - 1;
+               int pos = series.length() - offset - 1;
                if (pos >= 0) {
-                   returnVal = series[pos];
+                   returnVal = series.getValue(pos);
                }
            }
+       } catch (NodeBudgetExceededException e) {
+           throw e; //aborts the whole evaluation
        }catch (Exception e){
            e.printStackTrace();
        }
@@ -36,6 +36,11 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractTerminal implements Terminal {
     protected String seriesCode;
+
+    public String getSeriesCode() {
+        return this.seriesCode;
+    }
+
     public static TerminalSet addAll(Terminal[]... sets){
 
         int elements = 0;
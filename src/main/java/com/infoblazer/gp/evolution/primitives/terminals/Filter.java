@@ -24,12 +24,13 @@
 
 package com.infoblazer.gp.evolution.primitives.terminals;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionContext;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
@@ -85,10 +86,10 @@ public class Filter extends AbstractTerminal implements Terminal {
 
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel) {
-        EvaluationLogger.dataAccessOperation();
-        Double[] series = (Double[]) evaluationParams.get(seriesCode);
+        EvaluationCounters.dataAccessOperation(this);
+        SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
 
-        int endPos =  series.length-1; // offset 0 is end pos
+        int endPos =  series.length()-1; // offset 0 is end pos
         if (endPos<0){
             endPos = 0;
         }
@@ -100,11 +101,11 @@ public class Filter extends AbstractTerminal implements Terminal {
 
         double minimum = Double.MAX_VALUE;
         for (int i = startPos;i<endPos;i++)  {
-            if (series[i]<minimum){
-                minimum = series[i];
+            if (series.get(i)<minimum){
+                minimum = series.get(i);
             }
         }
-        Double val =  series[endPos];
+        Double val =  series.get(endPos);
         Double pctChange = 100*(val-minimum)/minimum;
 
         return pctChange>=threshold;
@@ -24,12 +24,13 @@
 
 package com.infoblazer.gp.evolution.primitives.terminals;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionContext;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
@@ -83,14 +84,14 @@ public class MV extends AbstractTerminal implements Terminal {
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel) {
 
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
 
 
-        Double[] series = (Double[]) evaluationParams.get(seriesCode);
+        SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
 
 
 
-        int endPos =  series.length-1; // offset 0 is end pos
+        int endPos =  series.length()-1; // offset 0 is end pos
         if (endPos<0){
             endPos = 0;
         }
@@ -103,9 +104,9 @@ public class MV extends AbstractTerminal implements Terminal {
 
         double total = 0.0d;
         for (int i = startPos;i<endPos;i++)  {
-            total = total + series[i];
+            total = total + series.get(i);
         }
-        Double val =  series[endPos];
+        Double val =  series.get(endPos);
         Double avg = total / (endPos - startPos);
         Double result = val-avg ;
 
@@ -24,11 +24,12 @@
 
 package com.infoblazer.gp.evolution.primitives.terminals;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionContext;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import org.apache.log4j.Logger;
 import org.springframework.context.annotation.Scope;
@@ -85,20 +86,20 @@ public class OffsetValueFixed extends AbstractTerminal implements Terminal {
 
     @Override
     public Object evaluate(boolean ignoreCurrent, Integer regime, Map<String, Object> evaluationParams, Map<String, Adf> adfs, Library library, int level, Integer maxLevel) {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         Double returnVal = 0.0d; //don't penalize with null return
 
-        Double[] series = (Double[]) evaluationParams.get(seriesCode);
+        SeriesView series = (SeriesView) evaluationParams.get(seriesCode);
         if (series==null){
             logger.error("Could not find seriescode " + seriesCode + " in function parameters");
         }
         int offset = value;
 
 
-        int pos = series.length - offset-1 ;
+        int pos = series.length() - offset-1 ;
 
         if (pos >= 0) {
-            returnVal = series[pos];
+            returnVal = series.getValue(pos);
         }
         return returnVal;
 
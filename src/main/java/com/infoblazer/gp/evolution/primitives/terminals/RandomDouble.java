@@ -24,18 +24,19 @@
 
 package com.infoblazer.gp.evolution.primitives.terminals;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionContext;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by David on 5/24/2014.
@@ -61,7 +62,7 @@ public class RandomDouble extends AbstractTerminal implements Terminal {
 
 
     public RandomDouble() {
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         value = random.nextDouble();
     }
 
@@ -78,7 +79,7 @@ public class RandomDouble extends AbstractTerminal implements Terminal {
     private Double value;
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel) {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         return value;
     }
     @Override
@@ -24,18 +24,19 @@
 
 package com.infoblazer.gp.evolution.primitives.terminals;
 
-import com.infoblazer.gp.application.data.service.EvaluationLogger;
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.primitives.FunctionContext;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
 import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by David on 5/24/2014.
@@ -81,11 +82,11 @@ public class RandomInteger extends AbstractTerminal  implements Terminal {
     private Integer value;
     @Override
     public Object evaluate(boolean ignoreCurrent,Integer regime,Map<String, Object> evaluationParams, Map<String,Adf> adfs,Library library,int  level,Integer maxLevel) {
-        EvaluationLogger.dataAccessOperation();
+        EvaluationCounters.dataAccessOperation(this);
         return value;
     }
     public RandomInteger(Integer lowRange, Integer highRange) {
-          Random random = new Random();
+          SplittableRandom random = GpRandom.current();
         this.lowRange = lowRange;
         this.highRange = highRange;
         value = random.nextInt(highRange - lowRange + 1) + lowRange;
@@ -112,7 +113,7 @@ public class RandomInteger extends AbstractTerminal  implements Terminal {
     }
     @Override
     public void setParams(String[] paramVals) {
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         this.lowRange = Integer.valueOf(paramVals[0]);
         this.highRange = Integer.valueOf(paramVals[1]);
         value = random.nextInt(highRange - lowRange + 1) + lowRange;
@@ -24,8 +24,13 @@
 
 package com.infoblazer.gp.evolution.selectionstrategy;
 
-import com.infoblazer.gp.application.data.model.FitnessEvaluation;
+import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
 import com.infoblazer.gp.application.fitness.FitnessEvaluator;
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.library.LibraryEdits;
+import com.infoblazer.gp.evolution.library.LibraryReferences;
+import com.infoblazer.gp.evolution.library.RegimeLibrary;
+import com.infoblazer.gp.evolution.library.ResultLibrary;
 import com.infoblazer.gp.evolution.model.*;
 import com.infoblazer.gp.evolution.primitives.FunctionSet;
 import com.infoblazer.gp.evolution.primitives.GP_TYPES;
@@ -33,22 +38,25 @@ import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.TerminalSet;
 import com.infoblazer.gp.evolution.primitives.functions.BinaryNumber;
 import com.infoblazer.gp.evolution.primitives.functions.Function;
+import com.infoblazer.gp.evolution.utils.EvaluationPool;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Created by David on 8/7/2014.
  */
 public abstract class AbstractSelectionStrategy implements SelectionStrategy {
     public static final int CROSSOVER_ATTEMPTS = 5;
-    protected Random random = new Random();
     @Autowired
     protected Compression compression;
     @Autowired
@@ -96,6 +104,17 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
     @Value("${useAverageFitnessSelector:#{false}}")
     private Boolean useAverageFitnessSelector;  //usually default of false is used, take best fitness
 
+    @Autowired
+    private ResultLibrary resultLibrary;
+    @Autowired
+    private RegimeLibrary regimeLibrary;
+    @Autowired
+    private EvaluationPool evaluationPool; //with a pool the children are evaluated after the generation is produced
+
+    @Value("${parallelOffspring:#{false}}")
+    private Boolean parallelOffspring; //with a pool, produce children in rounds of tasks that each choose a batch of children
+    private OffspringRounds offspringRounds; //kept between generations for the children left over
+
 
     public void setFitnessEvaluator(FitnessEvaluator fitnessEvaluator) {
         this.fitnessEvaluator = fitnessEvaluator;
@@ -181,28 +200,41 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
             }
 
 
-            FitnessEvaluation fitnessEvaluation = fitnessEvaluator.calculateProgramFitness(windowStart, windowEnd, maxDepth, eliteRP, eliteRegime, direction);
-            eliteRP.setFitness(fitnessEvaluation.getFitness());
+            double fitness = fitnessEvaluator.calculateProgramFitness(windowStart, windowEnd, maxDepth, eliteRP, eliteRegime, direction);
+            eliteRP.setFitness(fitness);
             eliteRP.calculateMetrics();
             nextGenerationRP.add(eliteRP);
             if (eliteRegime != null) {
                 eliteRegime.calculateMetrics();
-                eliteRegime.setFitness(fitnessEvaluation.getFitness());
+                eliteRegime.setFitness(fitness);
                 nextGenerationRG.add(eliteRegime);
             }
         }
 
 
         //initially add the same number of individuals as the last generation. Then resize population
+        OffspringEvaluator offspringEvaluator = new OffspringEvaluator(fitnessEvaluator, evaluationPool.getPool(), windowStart, windowEnd,
+                maxDepth, direction);
         Boolean nodeLimitReached = false;
         int totalRPNodes = 0;
         int totalRGNodes = 0;
         int nextResultId = 1;//need to set this before fitness calculation, dyfor uses this.
         int nextRegimeId = 1;
+        OffspringRounds rounds = null;
+        if (parallelOffspring && evaluationPool.getPool() != null) {
+            rounds = startOffspringRounds(growMethod, population, predictedRegime);
+        }
         while (needPopulation(maxTotalNodes, nextGenerationRP, nextGenerationRG,
                 targetRpPopulationSize, targetRGPopulationSize, nodeLimitReached)) {
 
-            Population newChildren = chooseChildren(growMethod, population, predictedRegime);
+            Population newChildren;
+            if (rounds == null) {
+                newChildren = chooseChildren(growMethod, population, predictedRegime, false);
+            } else {
+                int resultNeeded = (targetRpPopulationSize == null ? population.getRPLength() : targetRpPopulationSize) - nextGenerationRP.size();
+                int regimeNeeded = (targetRGPopulationSize == null ? population.getRGLength() : targetRGPopulationSize) - nextGenerationRG.size();
+                newChildren = rounds.next(resultNeeded, regimeNeeded);
+            }
 
             if (newChildren != null) {
                 if (newChildren.getResultPopulation() != null) {
@@ -212,25 +244,23 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
 
                             RegimeDetectionProgram regimeDetectionProgram = fittestRegimeDetectionProgram;
                             if (regimes > 1) {
-                                double rnd = random.nextDouble()*100;
+                                double rnd = random().nextDouble()*100;
                                 if (rnd < fourWayPct)
                                     regimeDetectionProgram = (RegimeDetectionProgram) runTournament(population.getRegimePopulation(), tournamentSize);
                             }
 
-                            FitnessEvaluation fitnessEvaluation = fitnessEvaluator.calculateProgramFitness(windowStart, windowEnd, maxDepth,
-                                    child, regimeDetectionProgram, direction); //was
-                            child.setFitness(fitnessEvaluation.getFitness());
                             child.calculateMetrics();
                             child.calculateAdfMetrics(regimes);
 
                             totalRPNodes += child.getNodeCount() + null2Zero(child.getTotalAdfNodeCount());
                             nodeLimitReached = checkNodeLimit(maxTotalNodes, totalRPNodes + totalRGNodes);
                             if (child.getNodeCount() > maxSize || child.getDepth() > maxDepth) {
-                                child.setFitness(direction.getMinFitness());
+                                offspringEvaluator.reject(child, child, regimeDetectionProgram);
                             } else if (child.getMaxAdfNodeCount() != null &&
                                     (child.getMaxAdfNodeCount() > maxSize || child.getMaxAdfDepth() > maxDepth)) {
-                                child.setFitness(direction.getMinFitness());
+                                offspringEvaluator.reject(child, child, regimeDetectionProgram);
                             } else {
+                                offspringEvaluator.accept(child, child, regimeDetectionProgram);
                                 nextGenerationRP.add(child);
                                 nextResultId++;
                             }
@@ -243,27 +273,25 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
                         if (child != null) {
                             if (targetRGPopulationSize == null || nextGenerationRG.size() < targetRGPopulationSize) {
                                 child.setId(nextRegimeId);
-                                double rnd = random.nextDouble()*100;
+                                double rnd = random().nextDouble()*100;
                                 ResultProducingProgram resultProducingProgram = null;
                                 if (rnd < fourWayPct) {
                                     resultProducingProgram = (ResultProducingProgram) runTournament(population.getResultPopulation(), tournamentSize);
                                 } else {
                                     resultProducingProgram = fittestResultProducingProgram;
                                 }
-                                FitnessEvaluation fitnessEvaluation = fitnessEvaluator.calculateProgramFitness(windowStart, windowEnd, maxDepth,
-                                        resultProducingProgram, child, direction);
-                                child.setFitness(fitnessEvaluation.getFitness());
                                 child.calculateMetrics();
                                 child.calculateAdfMetrics(regimes);
 
                                 totalRGNodes += child.getNodeCount() + null2Zero(child.getTotalAdfNodeCount());
                                 nodeLimitReached = checkNodeLimit(maxTotalNodes, totalRPNodes + totalRGNodes);
                                 if (child.getNodeCount() > maxSize || child.getDepth() > maxDepth) {
-                                    child.setFitness(direction.getMinFitness());
+                                    offspringEvaluator.reject(child, resultProducingProgram, child);
                                 } else if (child.getMaxAdfNodeCount() != null &&
                                         (child.getMaxAdfNodeCount() > maxSize || child.getMaxAdfDepth() > maxDepth)) {
-                                    child.setFitness(direction.getMinFitness());
+                                    offspringEvaluator.reject(child, resultProducingProgram, child);
                                 } else {
+                                    offspringEvaluator.accept(child, resultProducingProgram, child);
                                     nextGenerationRG.add(child);
                                     nextRegimeId++;
                                 }
@@ -275,12 +303,304 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
 
         }
 
+        if (rounds != null) {
+            rounds.carryOver();
+        }
+        offspringEvaluator.complete();
         Population newPopulation = new Population(nextGenerationRP, nextGenerationRG);
 
         fitnessEvaluator.afterGeneration(newPopulation, direction, generation, trainingGenerations, maxDepth, windowEnd, lastPredictionTrainingRound);
         return newPopulation;
     }
 
+    @Override
+    public Population steadyStateGeneration(int generation, int trainingGenerations, GrowMethod growMethod, Population population,
+                                            Integer windowStart, Integer windowEnd, Integer predictedRegime,
+                                            boolean lastPredictionTrainingRound) {
+        final SharedPrograms<ResultProducingProgram> resultPrograms = new SharedPrograms<>(population.getResultPopulation());
+        final SharedPrograms<RegimeDetectionProgram> regimePrograms = new SharedPrograms<>(
+                regimes > 1 ? population.getRegimePopulation() : new ArrayList<RegimeDetectionProgram>());
+        final Population shared = new Population(resultPrograms, regimePrograms);
+        final ResultProducingProgram fittestResultProducingProgram = (ResultProducingProgram) ResultProducingProgram.findFittest(resultPrograms, direction);
+        final RegimeDetectionProgram fittestRegimeDetectionProgram = regimes > 1 ?
+                (RegimeDetectionProgram) RegimeDetectionProgram.findFittest(regimePrograms, direction) : null;
+        final AtomicInteger replacements = new AtomicInteger();
+        final AtomicInteger regimeReplacements = new AtomicInteger();
+        final Runnable worker = () -> {
+            while (replacements.get() < resultPrograms.size() || regimeReplacements.get() < regimePrograms.size()) {
+                steadyStateStep(shared, resultPrograms, regimePrograms, replacements, regimeReplacements, fittestResultProducingProgram,
+                        fittestRegimeDetectionProgram, growMethod, windowStart, windowEnd, predictedRegime);
+            }
+        };
+
+        ForkJoinPool pool = evaluationPool.getPool();
+        if (pool == null) {
+            worker.run();
+        } else {
+            SplittableRandom parent = GpRandom.current();
+            List<ForkJoinTask<?>> workers = new ArrayList<>();
+            for (int i = 0; i < pool.getParallelism(); i++) {
+                final SplittableRandom random = parent.split(); //split in worker order, not in the order workers start
+                workers.add(pool.submit(() -> GpRandom.runWith(random, worker)));
+            }
+            for (ForkJoinTask<?> task : workers) {
+                task.join();
+            }
+        }
+
+        Population newPopulation = new Population(new ArrayList<>(resultPrograms), new ArrayList<>(regimePrograms));
+        fitnessEvaluator.afterGeneration(newPopulation, direction, generation, trainingGenerations, maxDepth, windowEnd, lastPredictionTrainingRound);
+        return newPopulation;
+    }
+
+    /**
+     * Produce children from the shared population, evaluate them and put them in place of poor programs. Each child is
+     * evaluated against a partner chosen as in selectionNextGeneration, but only the child gets the fitness. Every child
+     * takes one of the replacements of its population, also when it is over the size limits and dropped, so limits that
+     * reject every child still end the generation.
+     */
+    private void steadyStateStep(Population shared, SharedPrograms<ResultProducingProgram> resultPrograms,
+                                 SharedPrograms<RegimeDetectionProgram> regimePrograms, AtomicInteger replacements,
+                                 AtomicInteger regimeReplacements, ResultProducingProgram fittestResultProducingProgram,
+                                 RegimeDetectionProgram fittestRegimeDetectionProgram, GrowMethod growMethod, Integer windowStart,
+                                 Integer windowEnd, Integer predictedRegime) {
+        Population newChildren = chooseChildren(growMethod, shared, predictedRegime, true);
+        if (newChildren == null) {
+            return;
+        }
+        if (newChildren.getResultPopulation() != null) {
+            for (ResultProducingProgram child : newChildren.getResultPopulation()) {
+                if (child == null || replacements.getAndIncrement() >= resultPrograms.size() || !withinLimits(child)) {
+                    continue;
+                }
+                RegimeDetectionProgram regimeDetectionProgram = fittestRegimeDetectionProgram;
+                if (regimes > 1 && random().nextDouble() * 100 < fourWayPct) {
+                    regimeDetectionProgram = (RegimeDetectionProgram) runTournament(regimePrograms, tournamentSize);
+                }
+                int slot = resultPrograms.claimPoor(tournamentSize, direction, random());
+                child.setId(slot + 1); //dyfor uses the id to pick the program window
+                child.setFitness(fitnessEvaluator.evaluateFitness(child, regimeDetectionProgram, windowStart, windowEnd, maxDepth, direction));
+                resultPrograms.replace(slot, child);
+            }
+        }
+        if (regimes > 1 && newChildren.getRegimePopulation() != null) {
+            for (RegimeDetectionProgram child : newChildren.getRegimePopulation()) {
+                if (child == null || regimeReplacements.getAndIncrement() >= regimePrograms.size() || !withinLimits(child)) {
+                    continue;
+                }
+                ResultProducingProgram resultProducingProgram = fittestResultProducingProgram;
+                if (random().nextDouble() * 100 < fourWayPct) {
+                    resultProducingProgram = (ResultProducingProgram) runTournament(resultPrograms, tournamentSize);
+                }
+                int slot = regimePrograms.claimPoor(tournamentSize, direction, random());
+                child.setId(slot + 1);
+                child.setFitness(fitnessEvaluator.evaluateFitness(resultProducingProgram, child, windowStart, windowEnd, maxDepth, direction));
+                regimePrograms.replace(slot, child);
+            }
+        }
+    }
+
+    /**
+     * The rounds of the last generation, with the children it left over, unless they were produced for another regime or
+     * pool
+     */
+    private OffspringRounds startOffspringRounds(GrowMethod growMethod, Population population, Integer predictedRegime) {
+        ForkJoinPool pool = evaluationPool.getPool();
+        if (offspringRounds != null && (offspringRounds.pool != pool || !Objects.equals(offspringRounds.predictedRegime, predictedRegime))) {
+            offspringRounds.release(); //the entries of the children dropped retire once this generation is counted
+            offspringRounds = null;
+        }
+        if (offspringRounds == null) {
+            offspringRounds = new OffspringRounds(pool, predictedRegime);
+        }
+        offspringRounds.startGeneration(growMethod, population);
+        return offspringRounds;
+    }
+
+    /**
+     * Children produced by parallel tasks, handed out in task order. A round runs while the calling thread waits, so the
+     * population is only read while tasks run. Each task gets a stream split from the calling thread's in task order. Its
+     * library changes are collected and published in task order once every task has finished, so a task reads the
+     * libraries as they were when the round started plus its own changes. A seed and pool size always produce the same
+     * children and libraries.
+     * A round makes as many calls as the children still needed of each population take, at the children per call seen
+     * so far. Children left over when the generation is full are handed out first in the next one, holding their library
+     * entries until then.
+     */
+    private class OffspringRounds {
+        private final ForkJoinPool pool;
+        private final Integer predictedRegime;
+        private GrowMethod growMethod;
+        private Population population;
+        private final List<Population> produced = new ArrayList<>();
+        private int next = 0;
+        private final List<int[]> heldResultKeys = new ArrayList<>();
+        private final List<int[]> heldRegimeKeys = new ArrayList<>();
+        private int calls = 0;
+        private int resultChildren = 0;
+        private int regimeChildren = 0;
+
+        private OffspringRounds(ForkJoinPool pool, Integer predictedRegime) {
+            this.pool = pool;
+            this.predictedRegime = predictedRegime;
+        }
+
+        /**
+         * Produce further rounds from population. The entries held for the children carried over are released, they only
+         * retire once the population of this generation is counted if no child that joins it or is carried over again
+         * acquires them.
+         */
+        private void startGeneration(GrowMethod growMethod, Population population) {
+            this.growMethod = growMethod;
+            this.population = population;
+            release();
+        }
+
+        private void release() {
+            for (int[] keys : heldResultKeys) {
+                resultLibrary.release(keys);
+            }
+            for (int[] keys : heldRegimeKeys) {
+                regimeLibrary.release(keys);
+            }
+            heldResultKeys.clear();
+            heldRegimeKeys.clear();
+        }
+
+        /**
+         * Keep the children not handed out for the next generation, acquiring their library entries
+         */
+        private void carryOver() {
+            produced.subList(0, next).clear();
+            next = 0;
+            for (Population children : produced) {
+                if (children != null) {
+                    hold(children.getResultPopulation(), resultLibrary, heldResultKeys);
+                    hold(children.getRegimePopulation(), regimeLibrary, heldRegimeKeys);
+                }
+            }
+        }
+
+        private void hold(List<? extends AbstractProgram> children, Library library, List<int[]> held) {
+            if (children != null) {
+                for (AbstractProgram child : children) {
+                    if (child != null) {
+                        int[] keys = LibraryReferences.keys(child);
+                        library.acquire(keys);
+                        held.add(keys);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param resultNeeded result children still needed
+         * @param regimeNeeded regime children still needed
+         */
+        private Population next(int resultNeeded, int regimeNeeded) {
+            if (next == produced.size()) {
+                produced.clear();
+                next = 0;
+                produceRound(resultNeeded, regimeNeeded);
+            }
+            return produced.get(next++);
+        }
+
+        /**
+         * @return the calls to chooseChildren expected to produce the children needed, at least one
+         */
+        private int callsFor(int resultNeeded, int regimeNeeded) {
+            //before any round, crossover makes two children of each population and the other operators one
+            double perCall = 1 + crossoverPct / 100d;
+            double resultPerCall = calls == 0 ? perCall : (double) resultChildren / calls;
+            double regimePerCall = calls == 0 ? perCall : (double) regimeChildren / calls;
+            int needed = 1;
+            if (resultNeeded > 0 && resultPerCall > 0) {
+                needed = Math.max(needed, (int) Math.ceil(resultNeeded / resultPerCall));
+            }
+            if (regimeNeeded > 0 && regimePerCall > 0) {
+                needed = Math.max(needed, (int) Math.ceil(regimeNeeded / regimePerCall));
+            }
+            return needed;
+        }
+
+        private void produceRound(int resultNeeded, int regimeNeeded) {
+            int tasks = pool.getParallelism();
+            final int batchSize = Math.max(1, (callsFor(resultNeeded, regimeNeeded) + tasks - 1) / tasks);
+            SplittableRandom parent = GpRandom.current();
+            List<ForkJoinTask<List<Population>>> batches = new ArrayList<>();
+            List<LibraryEdits> resultEdits = new ArrayList<>();
+            List<LibraryEdits> regimeEdits = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                final SplittableRandom random = parent.split();
+                final LibraryEdits taskResultEdits = new LibraryEdits();
+                final LibraryEdits taskRegimeEdits = new LibraryEdits();
+                resultEdits.add(taskResultEdits);
+                regimeEdits.add(taskRegimeEdits);
+                final GrowMethod growMethod = this.growMethod;
+                final Population population = this.population;
+                batches.add(pool.submit(() -> {
+                    List<Population> batch = new ArrayList<>();
+                    resultLibrary.collect(taskResultEdits, () -> regimeLibrary.collect(taskRegimeEdits, () ->
+                            GpRandom.runWith(random, () -> {
+                                for (int j = 0; j < batchSize; j++) {
+                                    batch.add(chooseChildren(growMethod, population, predictedRegime, false));
+                                }
+                            })));
+                    return batch;
+                }));
+            }
+            List<List<Population>> results = new ArrayList<>();
+            for (ForkJoinTask<List<Population>> batch : batches) {
+                results.add(batch.join());
+            }
+            for (int i = 0; i < tasks; i++) { //only once no task reads the libraries
+                List<Population> batch = results.get(i);
+                List<AbstractProgram> taskResultChildren = new ArrayList<>();
+                List<AbstractProgram> taskRegimeChildren = new ArrayList<>();
+                for (Population children : batch) {
+                    if (children != null) {
+                        addChildren(taskResultChildren, children.getResultPopulation());
+                        addChildren(taskRegimeChildren, children.getRegimePopulation());
+                    }
+                }
+                resultLibrary.publish(resultEdits.get(i), taskResultChildren);
+                regimeLibrary.publish(regimeEdits.get(i), taskRegimeChildren);
+                produced.addAll(batch);
+                calls += batch.size();
+                resultChildren += taskResultChildren.size();
+                regimeChildren += taskRegimeChildren.size();
+            }
+            logger.debug("Produced " + produced.size() + " offspring batches in " + tasks + " tasks");
+        }
+
+        private void addChildren(List<AbstractProgram> programs, List<? extends AbstractProgram> children) {
+            if (children != null) {
+                for (AbstractProgram child : children) {
+                    if (child != null) {
+                        programs.add(child);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean withinLimits(AbstractProgram child) {
+        child.calculateMetrics();
+        child.calculateAdfMetrics(regimes);
+        if (child.getNodeCount() > maxSize || child.getDepth() > maxDepth) {
+            return false;
+        }
+        return child.getMaxAdfNodeCount() == null || (child.getMaxAdfNodeCount() <= maxSize && child.getMaxAdfDepth() <= maxDepth);
+    }
+
+    /**
+     * @return the selection stream of the current thread
+     */
+    protected static SplittableRandom random() {
+        return GpRandom.operator("selection");
+    }
+
     abstract protected AbstractProgram runTournament(List<? extends AbstractProgram> programs, int participantCount);
 
     private Integer null2Zero(Integer val) {
@@ -306,7 +626,8 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
     private Population chooseChildren(
             GrowMethod growMethod,
             Population population,
-            Integer predictedRegime
+            Integer predictedRegime,
+            boolean copyReproduction
     ) {
         Population result = null;
 
@@ -317,7 +638,7 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
         double mutationBracket = (mutationPct / 100d) + crossoverBracket;
         double compressBracket = (compressionPct / 100d) + mutationBracket;
         double expandBracket = (expansionPct / 100d) + compressBracket;
-        Double selectionRoll = random.nextDouble();
+        Double selectionRoll = random().nextDouble();
         if (selectionRoll <= crossoverBracket) { //crossover
             logger.debug("selected Crossover");
             result = crossOver(population, predictedRegime);
@@ -347,6 +668,11 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
         } else {//reproduction
             logger.debug("selected reproduction");
             Winners winners = selectWinners(population);
+            if (copyReproduction) { //the winners stay in the population, the copies get their own id and fitness
+                RegimeDetectionProgram regimeDetectionProgram = winners.getRegimeDetectionProgram();
+                winners = new Winners(GpUtils.getKyroInstance().copy(winners.getResultProducingProgram()),
+                        regimeDetectionProgram == null ? null : GpUtils.getKyroInstance().copy(regimeDetectionProgram));
+            }
             result = new Population(winners);
 
         }
@@ -473,7 +799,7 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
     }
 
     public static Primitive getStrongType(List<Primitive> primitives, GP_TYPES returnType) {
-        Random random = new Random();
+        SplittableRandom random = GpRandom.current();
         Primitive primitive = null;
         if (primitives.size() > 0) {
             int counter = 0;
@@ -492,4 +818,55 @@ public abstract class AbstractSelectionStrategy implements SelectionStrategy {
     }
 
 
+
+    /**
+     * Population list shared by the steady state workers. Slots are read and replaced atomically, and a slot chosen for
+     * replacement is claimed until its child is in place so two workers never replace the same program.
+     */
+    private static class SharedPrograms<T extends AbstractProgram> extends AbstractList<T> {
+        private final AtomicReferenceArray<T> programs;
+        private final AtomicIntegerArray claimed;
+
+        private SharedPrograms(List<T> programs) {
+            this.programs = new AtomicReferenceArray<>(programs.size());
+            for (int i = 0; i < programs.size(); i++) {
+                this.programs.set(i, programs.get(i));
+            }
+            this.claimed = new AtomicIntegerArray(programs.size());
+        }
+
+        @Override
+        public T get(int index) {
+            return programs.get(index);
+        }
+
+        @Override
+        public int size() {
+            return programs.length();
+        }
+
+        /**
+         * @return the least fit of participantCount unclaimed slots drawn at random, now claimed by the caller
+         */
+        private int claimPoor(int participantCount, Direction direction, SplittableRandom random) {
+            while (true) {
+                int loser = -1;
+                for (int i = 0; i < participantCount; i++) {
+                    int candidate = random.nextInt(size());
+                    if (claimed.get(candidate) == 0 && (loser < 0 ||
+                            Boolean.TRUE.equals(AbstractFitnessEvaluator.isFitter(get(loser).getFitness(), get(candidate).getFitness(), direction)))) {
+                        loser = candidate;
+                    }
+                }
+                if (loser >= 0 && claimed.compareAndSet(loser, 0, 1)) {
+                    return loser;
+                }
+            }
+        }
+
+        private void replace(int index, T program) {
+            programs.set(index, program);
+            claimed.set(index, 0);
+        }
+    }
 }
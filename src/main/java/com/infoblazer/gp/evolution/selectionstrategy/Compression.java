@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.evolution.selectionstrategy;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
@@ -34,10 +35,12 @@ import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
 import com.infoblazer.gp.evolution.primitives.functions.BinaryNumber;
 import com.infoblazer.gp.evolution.primitives.functions.Function;
 import com.infoblazer.gp.evolution.primitives.terminals.AbstractTerminal;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -46,8 +49,8 @@ import java.util.*;
  * Created by David on 8/23/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class Compression {
-    private final Random random = new Random();
     @Value("${minimumCompressionSize:#{null}}")
     private Integer minimumCompressionSize ; //= 200;
     @Autowired
@@ -81,7 +84,7 @@ public class Compression {
 
                 //Don't add adfs as that is another technique
                 //By now the node list should be buit.
-                int crossoverPoint = random.nextInt(primitives.size());
+                int crossoverPoint = random().nextInt(primitives.size());
                 int crossoverAttempts = 0;
                 Primitive crossoverPrimitive = null;
                 while (crossoverAttempts <= AbstractSelectionStrategy.CROSSOVER_ATTEMPTS
@@ -96,7 +99,7 @@ public class Compression {
                            crossoverPrimitive = null;
                        }
                    }
-                    crossoverPoint = random.nextInt(primitives.size());
+                    crossoverPoint = random().nextInt(primitives.size());
                     crossoverAttempts++;
                 }
                 if (crossoverAttempts <= AbstractSelectionStrategy.CROSSOVER_ATTEMPTS) {
@@ -141,4 +144,7 @@ public class Compression {
 
     }
 
+    private static SplittableRandom random() {
+        return GpRandom.operator("compression");
+    }
 }
@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.evolution.selectionstrategy;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
@@ -33,10 +34,12 @@ import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.functions.Aat;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import com.infoblazer.gp.evolution.primitives.functions.BinaryNumber;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -45,6 +48,7 @@ import java.util.*;
  * Created by David on 8/23/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class CrossOver {
     private final static Logger logger = Logger.getLogger(CrossOver.class.getName());
     @Autowired
@@ -53,7 +57,6 @@ public class CrossOver {
     private RegimeLibrary regimeLibrary;
     @Value("${freezeRegimes:#{false}}")
     protected Boolean freezeRegimes;
-    private Random random = new Random();
 
     public Pair<AbstractProgram> doCrossOver(final AbstractProgram parent1, final AbstractProgram parent2, final int maxDepth,
                                              final int maxSize, SelectionStrategy.Direction direction, int regimes, boolean isRegimeDection,
@@ -68,7 +71,7 @@ public class CrossOver {
 
         int selectedBranch = 0 ; // 0 = rp, 1 = adf 50/50 probablity of crossover
         if (copy1.getAdfs()!=null){
-           selectedBranch =random.nextInt(2);
+           selectedBranch =random().nextInt(2);
         }
         if (selectedBranch==0) {
             //System.out.println("crossoverRPB");
@@ -103,7 +106,7 @@ public class CrossOver {
 
         while ((!oneTreeCheck && onetreeCount < AbstractSelectionStrategy.CROSSOVER_ATTEMPTS)
                 || (crossoverPrimitive1 == null || crossoverPrimitive1 instanceof BinaryNumber)) {
-            int crossoverPoint1 = random.nextInt(primitives1.size());
+            int crossoverPoint1 = random().nextInt(primitives1.size());
             crossoverPrimitive1 = primitives1.get(crossoverPoint1); //noADF
 
             crossoverPrimitive2 = AbstractSelectionStrategy.getStrongType(primitives2, crossoverPrimitive1.getReturnType()); //this may be nukk
@@ -193,7 +196,7 @@ public class CrossOver {
                 int randomizer = primitives1.size();
                 int crossoverPoint1 = 0; //shouldnt be
                 if (randomizer > 0) {
-                    crossoverPoint1 = random.nextInt(randomizer);
+                    crossoverPoint1 = random().nextInt(randomizer);
                 }
                 //There are regime dependent implementiaotn of AAT
 
@@ -225,15 +228,25 @@ public class CrossOver {
                     int depth1 = AbstractSelectionStrategy.addPrimitives(primitivesTmp, copy1, null);
 
 
+                    //other tasks may be producing offspring from the same entries, publish only over the versions copied
+                    Primitive expected2 = targetPrimitive2;
                     if (AbstractSelectionStrategy.checkSize(maxDepth, maxSize, depth1, primitivesTmp.size())) {
-                        library.setPrimitive(regime, copy1, copy1.getId());
+                        if (library.replacePrimitive(regime, targetPrimitive1, copy1, copy1.getId())) {
+                            if (copy1.getId().equals(copy2.getId())) {
+                                expected2 = copy1;
+                            }
+                        } else {
+                            logger.debug("Skipping crossver1, entry changed meanwhile");
+                        }
                     } else {
                         logger.debug("Skipping crossver1, too large:");
                     }
                  primitivesTmp = new ArrayList<Primitive>();
                     int depth2 = AbstractSelectionStrategy.addPrimitives(primitivesTmp, copy2, null);
                     if (AbstractSelectionStrategy.checkSize(maxDepth, maxSize, depth2, primitivesTmp.size())) {
-                        library.setPrimitive(regime, copy2, copy2.getId());
+                        if (!library.replacePrimitive(regime, expected2, copy2, copy2.getId())) {
+                            logger.debug("Skipping crossver2, entry changed meanwhile");
+                        }
                     } else {
                         logger.debug("Skipping crossver2, too large:");
                     }
@@ -335,7 +348,7 @@ public class CrossOver {
     private AdfCrossoverSelect findAdfCrossover(Map<Integer, List<Primitive>[]> adfMap, int regime) {
         AdfCrossoverSelect adfCrossoverSelect = new AdfCrossoverSelect();
         int totalRegimeSize = findAdfRegimeSize(adfMap, regime);
-        int selectionPoint = random.nextInt(totalRegimeSize);
+        int selectionPoint = random().nextInt(totalRegimeSize);
 
         int totalSize = 0;
         for (Map.Entry<Integer, List<Primitive>[]> entry : adfMap.entrySet()) {
@@ -361,5 +374,7 @@ public class CrossOver {
         return totalSize;
     }
 
-
+    private static SplittableRandom random() {
+        return GpRandom.operator("crossover");
+    }
 }
@@ -24,16 +24,19 @@
 
 package com.infoblazer.gp.evolution.selectionstrategy;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
 import com.infoblazer.gp.evolution.model.*;
 import com.infoblazer.gp.evolution.primitives.Primitive;
 import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -42,6 +45,7 @@ import java.util.*;
  * Created by David on 8/23/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class Expansion {
     @Value("${freezeRegimes:#{false}}")
     private Boolean freezeRegimes;
@@ -49,7 +53,6 @@ public class Expansion {
     private ResultLibrary resultLibrary;
     @Autowired
     private RegimeLibrary regimeLibrary;
-    private Random random = new Random();
     private static final Logger logger = Logger.getLogger(Expansion.class.getName());
 
     public Population expand(Winners winners, int regimes, int maxDepth, Integer predictedRegime) {
@@ -72,7 +75,7 @@ public class Expansion {
         AbstractSelectionStrategy.addPrimitivesTyped(primitives, copy.getRoot(), AatImpl.class);
 
         if (!primitives.isEmpty()) {  //not a single terminal program
-            int crossoverPoint = random.nextInt(primitives.size());
+            int crossoverPoint = random().nextInt(primitives.size());
             AatImpl aat = (AatImpl) primitives.get(crossoverPoint);
             if (!aat.isModified()) {
                 Library library;
@@ -84,7 +87,7 @@ public class Expansion {
                 } else {
                     randomRegime = predictedRegime; // chosen current regime
                     if (!freezeRegimes || predictedRegime == null) {
-                        randomRegime = random.nextInt(regimes); //or choose random implemenation
+                        randomRegime = random().nextInt(regimes); //or choose random implemenation
                     }
                 }
 
@@ -108,4 +111,7 @@ public class Expansion {
 
     }
 
+    private static SplittableRandom random() {
+        return GpRandom.operator("expansion");
+    }
 }
@@ -24,6 +24,7 @@
 
 package com.infoblazer.gp.evolution.selectionstrategy;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.evolution.library.Library;
 import com.infoblazer.gp.evolution.library.RegimeLibrary;
 import com.infoblazer.gp.evolution.library.ResultLibrary;
@@ -35,28 +36,30 @@ import com.infoblazer.gp.evolution.primitives.functions.Aat;
 import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
 import com.infoblazer.gp.evolution.primitives.functions.Adf;
 import com.infoblazer.gp.evolution.primitives.functions.BinaryNumber;
+import com.infoblazer.gp.evolution.utils.GpRandom;
 import com.infoblazer.gp.evolution.utils.GpUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Created by David on 8/23/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class Mutation {
     private final static Logger logger = Logger.getLogger(Mutation.class.getName());
     @Value("${freezeRegimes:#{false}}")
     protected Boolean freezeRegimes;
     @Value("${regimeSelection:#{true}}")
     protected Boolean regimeSelection;  // always use reproduction on regimes
-    private Random random = new Random();
     @Autowired
     private ResultLibrary resultLibrary;
     @Autowired
@@ -72,7 +75,7 @@ public class Mutation {
         if (!isRegimeCrossover ||regimeSelection ) {
             int selectedBranch = 0; // 0 = rp, 1 = adf 50/50 probablity of crossover
             if (copy.getAdfs() != null) {
-                selectedBranch = random.nextInt(2);
+                selectedBranch = random().nextInt(2);
             }
             if (selectedBranch == 0) {
                 mutateRP(functionSet, terminalSet, series, growMethod, maxInitDepth, maxDepth, copy, isRegimeCrossover, predictedRegime);
@@ -99,7 +102,7 @@ public class Mutation {
         AbstractSelectionStrategy.addPrimitives(primitives, copy.getRoot(), null);
         //Result producting branch
         while (crossOverPrimitive == null || crossOverPrimitive instanceof BinaryNumber) {   //todo if instance of aat, mutate aat in a regime dependent matter
-            int crossoverPoint = random.nextInt(primitives.size());
+            int crossoverPoint = random().nextInt(primitives.size());
             crossOverPrimitive = primitives.get(crossoverPoint);
 
         }
@@ -137,12 +140,15 @@ public class Mutation {
                 int randomizer = primitives.size();
                 int crossoverPoint = 0; //shouldnt be
                 if (randomizer > 0) {
-                    crossoverPoint = random.nextInt(randomizer);
+                    crossoverPoint = random().nextInt(randomizer);
                     crossOverPrimitive = primitives.get(crossoverPoint); //noADF
                     Primitive newPrimitive = AbstractProgram.generatePrimitive(crossOverPrimitive.getReturnType(), functionSet, null,terminalSet, series,
                             maxInitDepth, maxInitDepth,growMethod, false, null, false);
                     AbstractProgram.replace(libraryCopy,crossOverPrimitive,newPrimitive,0,maxDepth);
-                    libraryPrimitives[regime] = libraryCopy;
+                    //publish a new version, evaluations may be reading the old one and other tasks mutating it
+                    if (!library.replacePrimitive(regime, libraryPrimitives[regime], libraryCopy, key)) {
+                        logger.debug("Skipping mutation, library entry " + key + " changed meanwhile");
+                    }
                 }
             }
         }
@@ -175,7 +181,7 @@ public class Mutation {
             boolean found = false;
             if (!freezeRegimes || predictedRegime == null || regime == predictedRegime) {
                 //choose a new crossover point as this
-                int crossOverADF = random.nextInt(adfList[regime].size());
+                int crossOverADF = random().nextInt(adfList[regime].size());
                 Primitive crossOverPrimitive = adfList[regime].get(crossOverADF);
                 Primitive newPrimitive = AbstractProgram.generatePrimitive(crossOverPrimitive.getReturnType(),
                         copy.getAdfs().get(0).getFunctionSet(),null, copy.getAdfs().get(0).getTerminalSet(), series, maxInitDepth,maxInitDepth, growMethod, false, null, false);
@@ -194,4 +200,7 @@ public class Mutation {
 
     }
 
+    private static SplittableRandom random() {
+        return GpRandom.operator("mutation");
+    }
 }
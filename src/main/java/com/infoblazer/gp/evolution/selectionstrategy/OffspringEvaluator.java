@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.selectionstrategy;
+
+import com.infoblazer.gp.application.fitness.FitnessEvaluator;
+import com.infoblazer.gp.evolution.model.AbstractProgram;
+import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fitness of the children produced in one generation, or of the initial population. Without a pool each child is
+ * evaluated as it is produced. With a pool, or an evaluator that evaluates in batches, children are queued while the
+ * generation is produced and evaluated together in {@link #complete()}. The fitness is then applied in the order the
+ * children were produced, so tournaments within the generation see the fitness of the previous one and the result does
+ * not depend on the number of threads.
+ */
+public class OffspringEvaluator {
+
+    private final FitnessEvaluator fitnessEvaluator;
+    private final ForkJoinPool pool;
+    private final boolean queued;
+    private final Integer windowStart;
+    private final Integer windowEnd;
+    private final int maxDepth;
+    private final SelectionStrategy.Direction direction;
+    private final List<Pairing> pending = new ArrayList<>();
+
+    public OffspringEvaluator(FitnessEvaluator fitnessEvaluator, ForkJoinPool pool, Integer windowStart, Integer windowEnd, int maxDepth,
+                       SelectionStrategy.Direction direction) {
+        this.fitnessEvaluator = fitnessEvaluator;
+        this.pool = pool;
+        this.queued = pool != null || fitnessEvaluator.evaluatesInBatches();
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.maxDepth = maxDepth;
+        this.direction = direction;
+    }
+
+    /**
+     * A child kept for the next generation, evaluated with the given pair of programs
+     */
+    public void accept(AbstractProgram child, ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram) {
+        if (!queued) {
+            child.setFitness(fitnessEvaluator.calculateProgramFitness(windowStart, windowEnd, maxDepth, resultProducingProgram,
+                    regimeDetectionProgram, direction));
+        } else {
+            pending.add(new Pairing(child, resultProducingProgram, regimeDetectionProgram));
+        }
+    }
+
+    /**
+     * A child over the size limits. It is only evaluated when evaluating as produced, as it always was, which sets the
+     * fitness of its partner. Queued, its partner keeps the fitness it has.
+     */
+    public void reject(AbstractProgram child, ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram) {
+        if (!queued) {
+            fitnessEvaluator.calculateProgramFitness(windowStart, windowEnd, maxDepth, resultProducingProgram, regimeDetectionProgram, direction);
+        }
+        child.setFitness(direction.getMinFitness());
+    }
+
+    /**
+     * Evaluate the queued children, if any, and apply their fitness in production order. A program paired more than once keeps the
+     * fitness of its last pairing, as when evaluating serially.
+     */
+    public void complete() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ResultProducingProgram> resultProducingPrograms = new ArrayList<>(pending.size());
+        List<RegimeDetectionProgram> regimeDetectionPrograms = new ArrayList<>(pending.size());
+        for (Pairing pairing : pending) {
+            resultProducingPrograms.add(pairing.resultProducingProgram);
+            regimeDetectionPrograms.add(pairing.regimeDetectionProgram);
+        }
+        double[] evaluations = fitnessEvaluator.evaluateFitness(resultProducingPrograms, regimeDetectionPrograms, windowStart, windowEnd,
+                maxDepth, direction, pool);
+        for (int i = 0; i < pending.size(); i++) {
+            double fitness = evaluations[i];
+            Pairing pairing = pending.get(i);
+            pairing.resultProducingProgram.setFitness(fitness);
+            if (pairing.regimeDetectionProgram != null) {
+                pairing.regimeDetectionProgram.setFitness(fitness);
+            }
+            pairing.child.setFitness(fitness);
+        }
+        pending.clear();
+    }
+
+    private static class Pairing {
+        private final AbstractProgram child;
+        private final ResultProducingProgram resultProducingProgram;
+        private final RegimeDetectionProgram regimeDetectionProgram;
+
+        private Pairing(AbstractProgram child, ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram) {
+            this.child = child;
+            this.resultProducingProgram = resultProducingProgram;
+            this.regimeDetectionProgram = regimeDetectionProgram;
+        }
+    }
+}
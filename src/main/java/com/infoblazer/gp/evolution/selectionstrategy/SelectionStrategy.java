@@ -92,5 +92,21 @@ public interface SelectionStrategy {
                                       Integer predictedRegime,
                             boolean lastTrainingThisGeneration);
 
+    /**
+     * Steady state alternative to selectionNextGeneration. Workers repeatedly select parents, produce a child, evaluate
+     * it and replace a poor program in place, until as many result programs and regime programs have been produced as each
+     * population holds. Children over the size limits count without replacing anything.
+     *
+     * @return the population after one logical generation of replacements
+     */
+    Population steadyStateGeneration(int generation,
+                                     int trainingGenerations,
+                                     GrowMethod growMethod,
+                                     Population population,
+                                     Integer windowStart,
+                                     Integer windowEnd,
+                                     Integer predictedRegime,
+                                     boolean lastTrainingThisGeneration);
+
 
 }
@@ -24,10 +24,12 @@
 
 package com.infoblazer.gp.evolution.selectionstrategy;
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
 import com.infoblazer.gp.evolution.model.*;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -36,6 +38,7 @@ import java.util.*;
  * Created by David on 8/7/2014.
  */
 @Component
+@Scope(RunScope.NAME)
 public class TournamentSelectionStrategy extends AbstractSelectionStrategy implements SelectionStrategy {
     private final static Logger logger = Logger.getLogger(TournamentSelectionStrategy.class.getName());
 
@@ -72,7 +75,7 @@ public class TournamentSelectionStrategy extends AbstractSelectionStrategy imple
         }
         int added = 0;
         while  (addedSet.size() < participantCount) {
-            int p = random.nextInt(programs.size());
+            int p = random().nextInt(programs.size());
             if (programs.size()<participantCount || !addedSet.contains(p)) {
                 participants[added] = programs.get(p);
                 addedSet.add(p);
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.utils;
+
+/**
+ * Approximations of the transcendental functions used by the fast math primitives. Only used on the fitness path when
+ * fastMath is set, reported fitness and predictions use java.lang.Math.
+ * <p>
+ * Maximum errors, measured by FastMathBenchmark and checked by FastMathTest in the test sources:
+ * <ul>
+ * <li>sin, cos: absolute error below 3e-7 for |x| &lt;= 1e6, java.lang.Math outside that range</li>
+ * <li>exp: relative error below 1e-14 for normal results</li>
+ * <li>log: absolute error below 1e-12 for positive normal doubles, java.lang.Math for subnormals</li>
+ * <li>pow: exp(y log(x)) for positive finite x, relative error below 1e-12 * max(1, |y log(x)|), java.lang.Math otherwise</li>
+ * </ul>
+ * Special values (NaN, infinities, zero) give the same results as java.lang.Math.
+ * Square root is not approximated, Math.sqrt is already a single instruction on current JVMs.
+ */
+public final class FastMath {
+
+    private static final int SIN_BITS = 12;
+    private static final int SIN_SIZE = 1 << SIN_BITS;
+    private static final int SIN_MASK = SIN_SIZE - 1;
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double SIN_INDEX = SIN_SIZE / TWO_PI;
+    private static final double SIN_RANGE = 1e6;
+    private static final double SIN_OFFSET = (double) SIN_SIZE * (1 << 20); //whole periods, larger than SIN_RANGE * SIN_INDEX
+    private static final double[] SIN_TABLE = new double[SIN_SIZE + 1];
+
+    private static final int EXP_BITS = 10;
+    private static final int EXP_SIZE = 1 << EXP_BITS;
+    private static final double EXP_INDEX = EXP_SIZE / Math.log(2);
+    private static final double LN2_HI = 6.93147180369123816490e-01 / EXP_SIZE;
+    private static final double LN2_LO = 1.90821492927058770002e-10 / EXP_SIZE;
+    private static final double EXP_OVERFLOW = 709.782712893384;
+    private static final double EXP_UNDERFLOW = -745.1332191019412;
+    private static final double[] EXP_TABLE = new double[EXP_SIZE];
+
+    private static final int LOG_BITS = 8;
+    private static final int LOG_SIZE = 1 << LOG_BITS;
+    private static final double LN2 = Math.log(2);
+    private static final double[] LOG_TABLE = new double[LOG_SIZE];
+    private static final double[] LOG_CENTER = new double[LOG_SIZE];
+    private static final double[] LOG_INVERSE = new double[LOG_SIZE];
+    private static final long MANTISSA = 0x000FFFFFFFFFFFFFL;
+    private static final long ONE_EXPONENT = 0x3FF0000000000000L;
+
+    static {
+        for (int i = 0; i <= SIN_SIZE; i++) {
+            SIN_TABLE[i] = Math.sin(i * TWO_PI / SIN_SIZE);
+        }
+        for (int i = 0; i < EXP_SIZE; i++) {
+            EXP_TABLE[i] = Math.pow(2, i / (double) EXP_SIZE);
+        }
+        for (int i = 0; i < LOG_SIZE; i++) {
+            LOG_CENTER[i] = 1 + (i + 0.5) / LOG_SIZE;
+            LOG_INVERSE[i] = 1 / LOG_CENTER[i];
+            LOG_TABLE[i] = Math.log(LOG_CENTER[i]);
+        }
+    }
+
+    private FastMath() {
+    }
+
+    /**
+     * Table lookup with linear interpolation, 4096 entries per period
+     */
+    public static double sin(double x) {
+        if (!(x >= -SIN_RANGE && x <= SIN_RANGE)) {
+            return Math.sin(x); //also NaN
+        }
+        double position = x * SIN_INDEX + SIN_OFFSET; //positive, so the cast truncates like floor
+        long whole = (long) position;
+        int index = (int) (whole & SIN_MASK);
+        double fraction = position - whole;
+        double low = SIN_TABLE[index];
+        return low + (SIN_TABLE[index + 1] - low) * fraction;
+    }
+
+    public static double cos(double x) {
+        if (!(x >= -SIN_RANGE && x <= SIN_RANGE)) {
+            return Math.cos(x);
+        }
+        return sin(x + Math.PI / 2);
+    }
+
+    /**
+     * exp(x) = 2^(k / 1024) exp(r), |r| &lt;= ln(2) / 2048. 2^(k / 1024) from a table and the exponent bits, exp(r) by a
+     * cubic polynomial.
+     */
+    public static double exp(double x) {
+        if (x > EXP_OVERFLOW) {
+            return Double.POSITIVE_INFINITY;
+        } else if (x < EXP_UNDERFLOW) {
+            return 0d;
+        } else if (x != x) {
+            return x;
+        }
+        double kd = Math.rint(x * EXP_INDEX);
+        long k = (long) kd;
+        double r = (x - kd * LN2_HI) - kd * LN2_LO;
+        double p = EXP_TABLE[(int) (k & (EXP_SIZE - 1))] * (1 + r * (1 + r * (0.5 + r * (1d / 6))));
+        long power = k >> EXP_BITS;
+        if (power > -1022 && power < 1023) {
+            return p * Double.longBitsToDouble((power + 1023) << 52);
+        }
+        return Math.scalb(p, (int) power);
+    }
+
+    /**
+     * log(x) = e ln(2) + log(c) + log(m / c), where m in [1,2) is the mantissa and c the center of the table interval
+     * holding m, |m / c - 1| &lt; 1 / 512. log(m / c) by a degree 4 polynomial.
+     */
+    public static double log(double x) {
+        if (!(x >= Double.MIN_NORMAL && x < Double.POSITIVE_INFINITY)) {
+            return Math.log(x); //zero, negative, subnormal, infinite or NaN
+        }
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = (int) (bits >>> 52) - 1023;
+        int index = (int) ((bits >>> (52 - LOG_BITS)) & (LOG_SIZE - 1));
+        double m = Double.longBitsToDouble((bits & MANTISSA) | ONE_EXPONENT);
+        double r = (m - LOG_CENTER[index]) * LOG_INVERSE[index];
+        double series = r * (1 - r * (0.5 - r * (1d / 3 - r * 0.25)));
+        return exponent * LN2 + LOG_TABLE[index] + series;
+    }
+
+    public static double pow(double x, double y) {
+        if (x > 0 && x < Double.POSITIVE_INFINITY && y == y && !Double.isInfinite(y)) {
+            return exp(y * log(x));
+        }
+        return Math.pow(x, y);
+    }
+}
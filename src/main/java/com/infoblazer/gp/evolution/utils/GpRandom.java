@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.utils;
+
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Random stream of the current thread, used by the helpers that build programs. Work that must come out the same
+ * whichever thread runs it installs its own stream, split from a parent in a fixed order, with {@link #runWith}.
+ * <p>
+ * Streams form a tree: the run's stream is seeded by the seed setting, trials, islands and workers split theirs from
+ * the stream that starts them, and each operator draws from its own stream split from the thread's stream the first
+ * time it is used. So a run with the same seed and worker count draws the same numbers, and an operator consuming
+ * more numbers does not shift the others.
+ * <p>
+ * A thread without a stream gets an unseeded one. In a seeded run that is logged as an error, since whatever it draws
+ * will not repeat.
+ */
+public class GpRandom {
+    private final static Logger logger = Logger.getLogger(GpRandom.class.getName());
+
+    private static final ThreadLocal<Streams> current = new ThreadLocal<Streams>();
+    private static volatile boolean seededRun = false;
+
+    public static SplittableRandom current() {
+        return streams().random;
+    }
+
+    /**
+     * @return the stream of the named operator in the current thread's stream
+     */
+    public static SplittableRandom operator(String name) {
+        Streams streams = streams();
+        return streams.operators.computeIfAbsent(name, key -> streams.random.split());
+    }
+
+    /**
+     * @return a stream seeded by seed, or by the time if seed is null
+     */
+    public static SplittableRandom seeded(Long seed) {
+        if (seed == null) {
+            return new SplittableRandom();
+        }
+        seededRun = true;
+        return new SplittableRandom(seed);
+    }
+
+    private static Streams streams() {
+        Streams streams = current.get();
+        if (streams == null) {
+            if (seededRun) {
+                logger.error("Thread " + Thread.currentThread().getName() + " draws from an unseeded stream in a seeded run, "
+                        + "install one with runWith");
+            }
+            streams = new Streams(new SplittableRandom());
+            current.set(streams);
+        }
+        return streams;
+    }
+
+    /**
+     * @return the action run for each index with its own stream, split from the named operator's stream in index order.
+     * An index draws the same numbers whichever thread runs it, however many numbers the others draw.
+     */
+    public static IntConsumer withStreams(String operator, int count, IntConsumer action) {
+        SplittableRandom parent = operator(operator);
+        SplittableRandom[] randoms = new SplittableRandom[count];
+        for (int i = 0; i < count; i++) {
+            randoms[i] = parent.split();
+        }
+        return index -> runWith(randoms[index], () -> action.accept(index));
+    }
+
+    /**
+     * Run the action with random as the current thread's stream, then restore the previous one
+     */
+    public static void runWith(SplittableRandom random, Runnable action) {
+        callWith(random, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Call the action with random as the current thread's stream, then restore the previous one
+     */
+    public static <T> T callWith(SplittableRandom random, Supplier<T> action) {
+        Streams previous = current.get();
+        current.set(new Streams(random));
+        try {
+            return action.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+    private static class Streams {
+        private final SplittableRandom random;
+        private final Map<String, SplittableRandom> operators = new HashMap<>();
+
+        private Streams(SplittableRandom random) {
+            this.random = random;
+        }
+    }
+}
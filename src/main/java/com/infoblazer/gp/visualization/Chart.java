@@ -25,10 +25,12 @@
 package com.infoblazer.gp.visualization;
 
 
+import com.infoblazer.gp.RunScope;
 import com.infoblazer.gp.visualization.model.ChartModel;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 
@@ -36,6 +38,7 @@ import org.springframework.stereotype.Component;
  * Created by David on 4/19/2015.
  */
 @Component
+@Scope(RunScope.NAME)
 public class Chart {
     private final static Logger logger = Logger.getLogger(Chart.class.getName());
 
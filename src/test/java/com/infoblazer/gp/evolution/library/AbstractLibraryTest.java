@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.library;
+
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+import com.infoblazer.gp.evolution.primitives.terminals.TerminalOne;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Nothing a child produced during the generation can reach may be retired before the new population is counted
+ */
+public class AbstractLibraryTest {
+
+    private final Library library = new ResultLibrary();
+
+    @Test
+    public void entryAddedAndDroppedInTheGenerationStaysForItsChild() {
+        Integer leaf = library.add(entry(constant(), constant()));
+        Integer parent = library.add(entry(constant(), constant()));
+        library.setPrimitive(0, aat(leaf), parent); //acquires leaf
+        library.setPrimitive(0, constant(), parent); //releases it back to zero
+
+        evaluate(); //a child holding leaf directly is evaluated after the edits
+        assertNotNull(library.getPrimitiveById(leaf));
+
+        library.acquire(new int[]{leaf, parent}); //the child joins the population
+        library.releaseUnreferenced();
+        evaluate();
+        assertNotNull(library.getPrimitiveById(leaf));
+    }
+
+    @Test
+    public void entryReleasedByAnEditStaysForAQueuedChild() {
+        Integer leaf = library.add(entry(constant(), constant()));
+        Integer parent = library.add(entry(aat(leaf), constant()));
+        library.acquire(new int[]{parent}); //the previous population
+        library.releaseUnreferenced();
+
+        library.setPrimitive(0, constant(), parent); //leaf only referenced by a queued child now
+        evaluate();
+        assertNotNull(library.getPrimitiveById(leaf));
+
+        library.releaseUnreferenced(); //the child was dropped
+        evaluate();
+        assertNull(library.getPrimitiveById(leaf));
+        assertNotNull(library.getPrimitiveById(parent));
+    }
+
+    @Test
+    public void retiredEntryReleasesWhatItReferences() {
+        Integer leaf = library.add(entry(constant(), constant()));
+        Integer middle = library.add(entry(aat(leaf), constant()));
+        Integer root = library.add(entry(aat(middle), aat(leaf)));
+        library.acquire(new int[]{root});
+        library.releaseUnreferenced();
+        assertEquals(3, (int) library.getSize());
+
+        library.release(new int[]{root});
+        library.releaseUnreferenced();
+        evaluate();
+        assertNull(library.getPrimitiveById(root));
+        assertNull(library.getPrimitiveById(middle));
+        assertNull(library.getPrimitiveById(leaf));
+        assertEquals(0, (int) library.getSize());
+    }
+
+    @Test
+    public void retiredEntryStaysWhileAnEvaluationRuns() {
+        Integer leaf = library.add(entry(constant(), constant()));
+        long epoch = library.enterEpoch();
+        library.releaseUnreferenced();
+        assertNotNull(library.getPrimitiveById(leaf));
+        assertEquals(0, (int) library.getSize()); //retired, not yet removed
+        library.exitEpoch(epoch);
+        assertNull(library.getPrimitiveById(leaf));
+    }
+
+    @Test
+    public void collectedEditsPublishInTaskOrder() throws Exception {
+        Integer entry = library.add(entry(constant(), constant()));
+        Primitive original = library.getPrimitiveById(entry)[0];
+        Primitive first = constant();
+        Primitive second = constant();
+        LibraryEdits firstEdits = new LibraryEdits();
+        LibraryEdits secondEdits = new LibraryEdits();
+        ResultProducingProgram child = new ResultProducingProgram();
+
+        //the second task finishes first, the order of publishing decides
+        Thread secondTask = new Thread(() -> library.collect(secondEdits, () ->
+                assertTrue(library.replacePrimitive(0, original, second, entry))));
+        secondTask.start();
+        secondTask.join();
+        library.collect(firstEdits, () -> {
+            assertTrue(library.replacePrimitive(0, original, first, entry));
+            assertSame(first, library.getPrimitiveById(entry)[0]); //the task sees its own edit
+            Integer added = library.add(entry(aat(entry), constant()));
+            assertTrue(added < 0);
+            child.setRoot(aat(added));
+        });
+        assertSame(original, library.getPrimitiveById(entry)[0]); //nothing published yet
+
+        library.publish(firstEdits, Collections.singletonList(child));
+        library.publish(secondEdits, Collections.<ResultProducingProgram>emptyList());
+        assertSame(first, library.getPrimitiveById(entry)[0]);
+        Integer key = ((AatImpl) child.getRoot()).getLibaryKey();
+        assertTrue(key > 0);
+        assertNotNull(library.getPrimitiveById(key));
+        assertEquals(key, library.getPrimitiveById(key)[0].getId());
+    }
+
+    /**
+     * an evaluation starting and finishing, which removes what was retired before it
+     */
+    private void evaluate() {
+        library.exitEpoch(library.enterEpoch());
+    }
+
+    private static Primitive[] entry(Primitive... regimes) {
+        return regimes;
+    }
+
+    private static Primitive constant() {
+        return new TerminalOne();
+    }
+
+    private static AatImpl aat(Integer key) {
+        AatImpl aat = new AatImpl(key);
+        aat.setReturnType(GP_TYPES.NUMBER);
+        return aat;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.linker;
+
+import com.infoblazer.gp.application.data.service.EvaluationCounters;
+import com.infoblazer.gp.evolution.library.Library;
+import com.infoblazer.gp.evolution.library.ResultLibrary;
+import com.infoblazer.gp.evolution.primitives.GP_TYPES;
+import com.infoblazer.gp.evolution.primitives.Primitive;
+import com.infoblazer.gp.evolution.primitives.SeriesView;
+import com.infoblazer.gp.evolution.primitives.TerminalSet;
+import com.infoblazer.gp.evolution.primitives.functions.AatImpl;
+import com.infoblazer.gp.evolution.primitives.functions.AbstractFunction;
+import com.infoblazer.gp.evolution.primitives.functions.AdfImpl;
+import com.infoblazer.gp.evolution.primitives.functions.Add;
+import com.infoblazer.gp.evolution.primitives.functions.Cos;
+import com.infoblazer.gp.evolution.primitives.functions.Multiply;
+import com.infoblazer.gp.evolution.primitives.functions.Sin;
+import com.infoblazer.gp.evolution.primitives.functions.Subtract;
+import com.infoblazer.gp.evolution.primitives.functions.SymbolicParameterNumeric;
+import com.infoblazer.gp.evolution.primitives.terminals.OffsetValueFixed;
+import com.infoblazer.gp.evolution.primitives.terminals.RandomDouble;
+import com.infoblazer.gp.evolution.primitives.terminals.Terminal;
+import com.infoblazer.gp.evolution.utils.GpUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A linked program must evaluate to the same values as the program it was linked from, at every time point.
+ */
+public class ProgramLinkerTest {
+
+    private static final int LEVEL = 1;
+    private static final int MAX_LEVEL = 30;
+    private static final int POINTS = 40;
+
+    private final Random random = new Random(7);
+    private final ProgramLinker linker = new ProgramLinker();
+    private final Library library = new ResultLibrary();
+    private Map<String, Object> params;
+    private List<SeriesView> views;
+
+    @Before
+    public void setUp() {
+        double[] a = new double[POINTS];
+        double[] b = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            a[i] = random.nextGaussian();
+            b[i] = random.nextDouble() * 10;
+        }
+        views = Arrays.asList(new SeriesView(a, null), new SeriesView(b, null));
+        params = new HashMap<>();
+        params.put("a", views.get(0));
+        params.put("b", views.get(1));
+        params.put("serieslist", Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void sharedSubexpressionsEvaluateLikeTheProgram() {
+        ReflectionTestUtils.setField(linker, "commonSubexpressions", true);
+        for (int program = 0; program < 50; program++) {
+            Primitive subtree = function(new Add(), tree(2), tree(2));
+            //the same subtree at several places, as crossover and mutation produce them
+            Primitive root = function(new Multiply(), function(new Add(), subtree, tree(2)),
+                    function(new Subtract(), GpUtils.getKyroInstance().copy(subtree), function(new Sin(), subtree)));
+            LinkedProgram linked = linker.link(root, library, LEVEL, MAX_LEVEL, false);
+            assertTrue(linked.forRegime(0) instanceof SharedSubexpressionScope);
+            assertSameValues(root, linked, 0);
+        }
+    }
+
+    @Test
+    public void inlinedCallsEvaluateLikeTheProgram() {
+        ReflectionTestUtils.setField(linker, "inlineCalls", true);
+        ReflectionTestUtils.setField(linker, "inlineNodeLimit", 1000);
+        for (int program = 0; program < 20; program++) {
+            Integer leaf = library.add(new Primitive[]{tree(2), tree(2)});
+            Integer nested = library.add(new Primitive[]{function(new Add(), tree(1), aat(leaf)),
+                    function(new Multiply(), aat(leaf), tree(1))});
+
+            AdfImpl adf = new AdfImpl(2);
+            adf.setName("adf0");
+            adf.setSymbolicParameters(new TerminalSet(new Terminal[]{
+                    new SymbolicParameterNumeric("arg0"), new SymbolicParameterNumeric("arg1")}));
+            adf.initializeRoots(2);
+            adf.setRoot(function(new Add(), function(new Multiply(), new SymbolicParameterNumeric("arg0"),
+                    new OffsetValueFixed("a", 0)), function(new Sin(), new SymbolicParameterNumeric("arg1"))), 0);
+            adf.setRoot(function(new Subtract(), new SymbolicParameterNumeric("arg1"), aat(leaf)), 1);
+            adf.setParameters(new Primitive[]{tree(1), aat(nested)});
+
+            Primitive root = function(new Add(), adf, aat(nested));
+            //past the max level AATs evaluate to their constant, inlined or not
+            for (int maxLevel : new int[]{MAX_LEVEL, 3, 2, 1}) {
+                LinkedProgram linked = linker.link(root, library, LEVEL, maxLevel, false);
+                for (int regime = 0; regime < 2; regime++) {
+                    assertSameValues(root, linked, regime, maxLevel);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void substitutedNodesCountAsTheirPrimitives() {
+        ReflectionTestUtils.setField(linker, "superinstructions", 100);
+        ReflectionTestUtils.setField(linker, "fastMath", true);
+        new EvaluationCounters().setCounting(true);
+        List<Primitive> roots = new ArrayList<>();
+        for (int program = 0; program < 50; program++) {
+            Primitive root = function(new Sin(), function(new Add(), tree(3), function(new Cos(), tree(3))));
+            roots.add(root);
+            linker.link(root, library, LEVEL, MAX_LEVEL, true); //profiles the patterns to fuse
+        }
+        assertTrue(linker.selectSuperinstructions());
+        for (Primitive root : roots) {
+            LinkedProgram linked = linker.link(root, library, LEVEL, MAX_LEVEL, true);
+            EvaluationCounters.getAndResetByPrimitive();
+            evaluateAllPoints(root);
+            Map<String, Long> expected = EvaluationCounters.getAndResetByPrimitive();
+            evaluateAllPoints(linked.forRegime(0));
+            assertEquals(expected, EvaluationCounters.getAndResetByPrimitive());
+        }
+    }
+
+    private void evaluateAllPoints(Primitive primitive) {
+        for (int point = 0; point < POINTS; point++) {
+            for (SeriesView view : views) {
+                view.setLength(point + 1);
+            }
+            primitive.evaluate(true, 0, params, null, library, LEVEL, MAX_LEVEL);
+        }
+    }
+
+    private static AatImpl aat(Integer key) {
+        AatImpl aat = new AatImpl(key);
+        aat.setReturnType(GP_TYPES.NUMBER);
+        return aat;
+    }
+
+    private void assertSameValues(Primitive root, LinkedProgram linked, int regime) {
+        assertSameValues(root, linked, regime, MAX_LEVEL);
+    }
+
+    private void assertSameValues(Primitive root, LinkedProgram linked, int regime, int maxLevel) {
+        for (int point = 0; point < POINTS; point++) {
+            for (SeriesView view : views) {
+                view.setLength(point + 1);
+            }
+            Object expected = root.evaluate(true, regime, params, null, library, LEVEL, maxLevel);
+            Object actual = linked.forRegime(regime).evaluate(true, regime, params, null, library, LEVEL, maxLevel);
+            assertEquals("point " + point + " regime " + regime + " max level " + maxLevel,
+                    ((Number) expected).doubleValue(), ((Number) actual).doubleValue(), 0);
+        }
+    }
+
+    /**
+     * random numeric tree over the series and constants
+     */
+    private Primitive tree(int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            if (random.nextBoolean()) {
+                return new OffsetValueFixed(random.nextBoolean() ? "a" : "b", random.nextInt(3));
+            }
+            return new RandomDouble();
+        }
+        switch (random.nextInt(5)) {
+            case 0:
+                return function(new Add(), tree(depth - 1), tree(depth - 1));
+            case 1:
+                return function(new Subtract(), tree(depth - 1), tree(depth - 1));
+            case 2:
+                return function(new Multiply(), tree(depth - 1), tree(depth - 1));
+            case 3:
+                return function(new Sin(), tree(depth - 1));
+            default:
+                return function(new Cos(), tree(depth - 1));
+        }
+    }
+
+    private static Primitive function(AbstractFunction function, Primitive... parameters) {
+        function.setParameters(parameters);
+        return function;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.selectionstrategy;
+
+import com.infoblazer.gp.application.data.model.FitnessEvaluation;
+import com.infoblazer.gp.application.data.model.PointPrediction;
+import com.infoblazer.gp.application.fitness.AbstractFitnessEvaluator;
+import com.infoblazer.gp.application.fitness.EvaluationCost;
+import com.infoblazer.gp.evolution.model.RegimeDetectionProgram;
+import com.infoblazer.gp.evolution.model.ResultProducingProgram;
+import com.infoblazer.gp.evolution.utils.GpRandom;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * With a pool, offspring fitness must come out the same whatever the number of threads, applied only once the generation
+ * is produced. Without one, children are evaluated as they are produced.
+ */
+public class OffspringEvaluatorTest {
+
+    private static final int PROGRAMS = 40;
+
+    @Test
+    public void poolSizeDoesNotChangeFitness() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            double[] serial = evaluateGeneration(single);
+            for (int run = 0; run < 5; run++) {
+                assertArrayEquals(serial, evaluateGeneration(pool), 0);
+            }
+        } finally {
+            single.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void fitnessIsAppliedOnlyOnComplete() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            CountingEvaluator evaluator = new CountingEvaluator();
+            OffspringEvaluator offspringEvaluator = new OffspringEvaluator(evaluator, pool, 0, 10, 10, SelectionStrategy.Direction.ASCENDING);
+            ResultProducingProgram partner = program(1, 5.0);
+            RegimeDetectionProgram child = regime(2, null);
+            ResultProducingProgram rejected = program(3, null);
+
+            offspringEvaluator.accept(child, partner, child);
+            offspringEvaluator.reject(rejected, rejected, child);
+            assertEquals(5.0, partner.getFitness(), 0); //tournaments still see the previous generation
+            assertEquals(0, evaluator.calls.get());
+            assertEquals(SelectionStrategy.Direction.ASCENDING.getMinFitness(), rejected.getFitness(), 0);
+
+            offspringEvaluator.complete();
+            assertEquals(1, evaluator.calls.get()); //the rejected child is not evaluated
+            assertEquals(child.getFitness(), partner.getFitness(), 0);
+            assertEquals(102, child.getFitness(), 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void withoutPoolChildrenAreEvaluatedAsProduced() {
+        CountingEvaluator evaluator = new CountingEvaluator();
+        OffspringEvaluator offspringEvaluator = new OffspringEvaluator(evaluator, null, 0, 10, 10, SelectionStrategy.Direction.ASCENDING);
+        ResultProducingProgram partner = program(1, 5.0);
+        RegimeDetectionProgram child = regime(2, null);
+        RegimeDetectionProgram rejected = regime(3, null);
+
+        offspringEvaluator.accept(child, partner, child);
+        assertEquals(1, evaluator.calls.get());
+        assertEquals(102, partner.getFitness(), 1);
+        assertEquals(child.getFitness(), partner.getFitness(), 0);
+
+        offspringEvaluator.reject(rejected, partner, rejected);
+        assertEquals(2, evaluator.calls.get()); //evaluated as it always was, setting its partner's fitness
+        assertEquals(103, partner.getFitness(), 1);
+        assertEquals(SelectionStrategy.Direction.ASCENDING.getMinFitness(), rejected.getFitness(), 0);
+
+        offspringEvaluator.complete();
+        assertEquals(2, evaluator.calls.get());
+    }
+
+    /**
+     * @return the fitness of every program after a generation whose partners are paired more than once
+     */
+    private static double[] evaluateGeneration(ForkJoinPool pool) {
+        ResultProducingProgram[] programs = new ResultProducingProgram[PROGRAMS];
+        RegimeDetectionProgram[] regimes = new RegimeDetectionProgram[PROGRAMS / 4];
+        for (int i = 0; i < regimes.length; i++) {
+            regimes[i] = regime(i + 1, 0.0);
+        }
+        GpRandom.runWith(GpRandom.seeded(7L), () -> {
+            OffspringEvaluator offspringEvaluator = new OffspringEvaluator(new CountingEvaluator(), pool, 0, 10, 10,
+                    SelectionStrategy.Direction.ASCENDING);
+            for (int i = 0; i < PROGRAMS; i++) {
+                programs[i] = program(i + 1, null);
+                offspringEvaluator.accept(programs[i], programs[i], regimes[i % regimes.length]);
+            }
+            offspringEvaluator.complete();
+        });
+        double[] fitness = new double[PROGRAMS + regimes.length];
+        for (int i = 0; i < PROGRAMS; i++) {
+            fitness[i] = programs[i].getFitness();
+        }
+        for (int i = 0; i < regimes.length; i++) {
+            fitness[PROGRAMS + i] = regimes[i].getFitness(); //its last pairing
+        }
+        return fitness;
+    }
+
+    private static ResultProducingProgram program(int id, Double fitness) {
+        ResultProducingProgram program = new ResultProducingProgram();
+        program.setId(id);
+        program.setFitness(fitness);
+        return program;
+    }
+
+    private static RegimeDetectionProgram regime(int id, Double fitness) {
+        RegimeDetectionProgram program = new RegimeDetectionProgram();
+        program.setId(id);
+        program.setFitness(fitness);
+        return program;
+    }
+
+    /**
+     * fitness from the pairing and the evaluation's random stream
+     */
+    private static class CountingEvaluator extends AbstractFitnessEvaluator {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingEvaluator() {
+            setEvaluationCost(new EvaluationCost());
+        }
+
+        @Override
+        public double evaluateFitness(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                      Integer windowStart, Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+            calls.incrementAndGet();
+            return resultProducingProgram.getId() * 100 + regimeDetectionProgram.getId() + GpRandom.current().nextDouble();
+        }
+
+        @Override
+        public FitnessEvaluation evaluate(ResultProducingProgram program, RegimeDetectionProgram regimeDetectionProgram, Integer windowStart,
+                                          Integer windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PointPrediction predictAt(ResultProducingProgram resultProducingProgram, RegimeDetectionProgram regimeDetectionProgram,
+                                         int position, int maxDepth) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isApproximateFitness() {
+            return false;
+        }
+
+        @Override
+        public Double approximateRankCorrelation(List<ResultProducingProgram> programs, RegimeDetectionProgram regimeDetectionProgram,
+                                                 int windowStart, int windowEnd, int maxDepth, SelectionStrategy.Direction direction) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.utils;
+
+import java.util.Random;
+
+/**
+ * Compares throughput and maximum error of FastMath against java.lang.Math.
+ * Run from the test classes with java com.infoblazer.gp.evolution.utils.FastMathBenchmark [samples]
+ * Each function is timed in its own loop so the JIT compiles the calls directly.
+ */
+public class FastMathBenchmark {
+
+    private enum Function {SIN, COS, EXP, LOG, POW}
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        Random random = new Random(42);
+        double[] angles = new double[samples];
+        double[] exponents = new double[samples];
+        double[] positives = new double[samples];
+        double[] powers = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            angles[i] = (random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(4));
+            exponents[i] = (random.nextDouble() * 2 - 1) * 50;
+            positives[i] = random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+            powers[i] = (random.nextDouble() * 2 - 1) * 5;
+        }
+
+        for (int round = 0; round < ROUNDS; round++) { //warm up every loop before timing any of them
+            for (Function function : Function.values()) {
+                double[] x = function == Function.SIN || function == Function.COS ? angles
+                        : function == Function.EXP ? exponents : positives;
+                time(function, false, x, powers);
+                time(function, true, x, powers);
+            }
+        }
+
+        System.out.println(String.format("%-5s %12s %12s %8s %12s", "", "exact ns/op", "fast ns/op", "speedup", "max error"));
+        report(Function.SIN, angles, null);
+        report(Function.COS, angles, null);
+        report(Function.EXP, exponents, null);
+        report(Function.LOG, positives, null);
+        report(Function.POW, positives, powers);
+    }
+
+    /**
+     * Max error is relative for exp and pow, absolute otherwise
+     */
+    private static void report(Function function, double[] x, double[] y) {
+        double maxError = 0;
+        for (int i = 0; i < x.length; i++) {
+            double expected = evaluate(function, false, x[i], y == null ? 0 : y[i]);
+            double error = Math.abs(evaluate(function, true, x[i], y == null ? 0 : y[i]) - expected);
+            if (function == Function.EXP || function == Function.POW) {
+                error = error / Math.abs(expected);
+            }
+            maxError = Math.max(maxError, error);
+        }
+        double exactTime = Double.MAX_VALUE;
+        double fastTime = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            exactTime = Math.min(exactTime, time(function, false, x, y));
+            fastTime = Math.min(fastTime, time(function, true, x, y));
+        }
+        System.out.println(String.format("%-5s %12.2f %12.2f %8.2f %12.2e", function.name().toLowerCase(),
+                exactTime, fastTime, exactTime / fastTime, maxError));
+    }
+
+    private static double evaluate(Function function, boolean fast, double x, double y) {
+        switch (function) {
+            case SIN:
+                return fast ? FastMath.sin(x) : Math.sin(x);
+            case COS:
+                return fast ? FastMath.cos(x) : Math.cos(x);
+            case EXP:
+                return fast ? FastMath.exp(x) : Math.exp(x);
+            case LOG:
+                return fast ? FastMath.log(x) : Math.log(x);
+            default:
+                return fast ? FastMath.pow(x, y) : Math.pow(x, y);
+        }
+    }
+
+    /**
+     * @return nanoseconds per call
+     */
+    private static double time(Function function, boolean fast, double[] x, double[] y) {
+        long start = System.nanoTime();
+        double sum = 0;
+        switch (function) {
+            case SIN:
+                if (fast) {
+                    for (double value : x) sum += FastMath.sin(value);
+                } else {
+                    for (double value : x) sum += Math.sin(value);
+                }
+                break;
+            case COS:
+                if (fast) {
+                    for (double value : x) sum += FastMath.cos(value);
+                } else {
+                    for (double value : x) sum += Math.cos(value);
+                }
+                break;
+            case EXP:
+                if (fast) {
+                    for (double value : x) sum += FastMath.exp(value);
+                } else {
+                    for (double value : x) sum += Math.exp(value);
+                }
+                break;
+            case LOG:
+                if (fast) {
+                    for (double value : x) sum += FastMath.log(value);
+                } else {
+                    for (double value : x) sum += Math.log(value);
+                }
+                break;
+            default:
+                if (fast) {
+                    for (int i = 0; i < x.length; i++) sum += FastMath.pow(x[i], y[i]);
+                } else {
+                    for (int i = 0; i < x.length; i++) sum += Math.pow(x[i], y[i]);
+                }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == 42) {
+            System.out.print(""); //keep the result live
+        }
+        return elapsed / (double) x.length;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the error bounds documented on FastMath over random samples, and that special values match java.lang.Math.
+ */
+public class FastMathTest {
+
+    private static final int SAMPLES = 200000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void sinAndCosWithinAbsoluteBound() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = (random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(7));
+            assertTrue("sin " + x, Math.abs(FastMath.sin(x) - Math.sin(x)) < 3e-7);
+            assertTrue("cos " + x, Math.abs(FastMath.cos(x) - Math.cos(x)) < 3e-7);
+        }
+    }
+
+    @Test
+    public void expWithinRelativeBound() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = (random.nextDouble() * 2 - 1) * 700;
+            double expected = Math.exp(x);
+            assertTrue("exp " + x, Math.abs(FastMath.exp(x) - expected) / expected < 1e-14);
+        }
+    }
+
+    @Test
+    public void logWithinAbsoluteBound() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = random.nextDouble() * Math.pow(10, random.nextInt(600) - 300);
+            if (x >= Double.MIN_NORMAL) {
+                assertTrue("log " + x, Math.abs(FastMath.log(x) - Math.log(x)) < 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void powWithinRelativeBound() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+            double y = (random.nextDouble() * 2 - 1) * 5;
+            double expected = Math.pow(x, y);
+            if (x > 0 && expected > 0 && !Double.isInfinite(expected)) {
+                double bound = 1e-12 * Math.max(1, Math.abs(y * Math.log(x)));
+                assertTrue("pow " + x + " " + y, Math.abs(FastMath.pow(x, y) - expected) / expected < bound);
+            }
+        }
+    }
+
+    @Test
+    public void specialValuesMatchMath() {
+        double[] specials = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1e7, -1e7};
+        for (double x : specials) { //outside the table range
+            assertEquals("sin " + x, Math.sin(x), FastMath.sin(x), 0);
+            assertEquals("cos " + x, Math.cos(x), FastMath.cos(x), 0);
+        }
+        double[] nonNormal = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0d, -0d, -1d, Double.MIN_VALUE};
+        for (double x : nonNormal) {
+            assertEquals("log " + x, Math.log(x), FastMath.log(x), 0);
+            for (double y : nonNormal) {
+                assertEquals("pow " + x + " " + y, Math.pow(x, y), FastMath.pow(x, y), 0);
+            }
+        }
+        assertEquals(Math.exp(Double.NaN), FastMath.exp(Double.NaN), 0);
+        assertEquals(Math.exp(Double.POSITIVE_INFINITY), FastMath.exp(Double.POSITIVE_INFINITY), 0);
+        assertEquals(Math.exp(Double.NEGATIVE_INFINITY), FastMath.exp(Double.NEGATIVE_INFINITY), 0);
+        assertEquals(Math.exp(1000), FastMath.exp(1000), 0);
+        assertEquals(Math.exp(-1000), FastMath.exp(-1000), 0);
+    }
+}
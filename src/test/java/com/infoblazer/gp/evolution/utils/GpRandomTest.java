@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2014-2018 David Moskowitz
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.infoblazer.gp.evolution.utils;
+
+import com.infoblazer.gp.application.fitness.EvaluationScheduler;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A seeded run must draw the same numbers however its work is spread over threads
+ */
+public class GpRandomTest {
+
+    private static final long SEED = 42L;
+    private static final int TASKS = 64;
+
+    @Test
+    public void operatorDrawsDoNotShiftOtherStreams() {
+        long[] few = drawAfterOperator(1);
+        long[] many = drawAfterOperator(1000);
+        assertArrayEquals(few, many);
+    }
+
+    @Test
+    public void indexedStreamsDrawTheSameOnAPool() {
+        long[] serial = drawIndexed(null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int run = 0; run < 5; run++) {
+                assertArrayEquals(serial, drawIndexed(pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void runWithRestoresTheThreadStream() {
+        long[] drawn = new long[2];
+        GpRandom.runWith(GpRandom.seeded(SEED), () -> {
+            GpRandom.runWith(new SplittableRandom(1), () -> GpRandom.current().nextLong());
+            drawn[0] = GpRandom.current().nextLong();
+        });
+        drawn[1] = new SplittableRandom(SEED).nextLong();
+        assertEquals(drawn[1], drawn[0]);
+    }
+
+    /**
+     * @return the numbers drawn from the thread's stream and a second operator after an operator drew count numbers
+     */
+    private static long[] drawAfterOperator(int count) {
+        long[] drawn = new long[2];
+        GpRandom.runWith(GpRandom.seeded(SEED), () -> {
+            GpRandom.operator("selection").nextLong(); //operators split in first use order
+            GpRandom.operator("mutation").nextLong();
+            for (int i = 0; i < count; i++) {
+                GpRandom.operator("selection").nextLong();
+            }
+            drawn[0] = GpRandom.current().nextLong();
+            drawn[1] = GpRandom.operator("mutation").nextLong();
+        });
+        return drawn;
+    }
+
+    /**
+     * @return the first number each task drew, tasks drawing unequal amounts
+     */
+    private static long[] drawIndexed(ForkJoinPool pool) {
+        long[] drawn = new long[TASKS];
+        double[] costs = new double[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            costs[i] = i % 7 + 1;
+        }
+        GpRandom.runWith(GpRandom.seeded(SEED), () -> {
+            IntConsumer task = GpRandom.withStreams("evaluation", TASKS, index -> {
+                drawn[index] = GpRandom.current().nextLong();
+                for (int i = 0; i < index * 100; i++) {
+                    GpRandom.current().nextDouble();
+                }
+            });
+            if (pool == null) {
+                for (int i = 0; i < TASKS; i++) {
+                    task.accept(i);
+                }
+            } else {
+                EvaluationScheduler.run(pool, costs, task);
+            }
+        });
+        return drawn;
+    }
+}